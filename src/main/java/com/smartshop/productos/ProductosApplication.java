@@ -2,8 +2,11 @@ package com.smartshop.productos;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+// Habilita las tareas programadas (refresco de cachés en memoria)
+@EnableScheduling
 public class ProductosApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,598 @@
+package com.smartshop.productos.busqueda;
+
+import com.smartshop.productos.dto.ProductoDTO;
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import com.smartshop.productos.event.ProductosCreadosEvent;
+import com.smartshop.productos.event.StockCambiadoEvent;
+import com.smartshop.productos.mapper.ProductoMapper;
+import com.smartshop.productos.projection.ProductoCarruselFila;
+import com.smartshop.productos.repository.ProductoRepository;
+import com.smartshop.productos.repository.util.QuerydslUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Índice invertido en memoria para responder la búsqueda filtrada de productos sin consultar la base de datos.
+ * <p>
+ * Cada producto recibe un número interno (ordinal). Los términos de nombre, descripción y etiquetas apuntan a
+ * listas ordenadas de ordinales ({@code int[]}); la categoría y la disponibilidad se guardan como {@link BitSet}
+ * y el filtro de precio usa un arreglo {@code long[]} de precios en centavos ordenado, recorrido con búsqueda binaria.
+ * El índice se construye al arrancar y se actualiza por producto cuando se confirman cambios.
+ * <p>
+ * Las vistas se vuelcan en lote sin publicar eventos, así que {@code vecesVisto} (y el stock, si algún cambio
+ * llegara sin evento) se refresca aparte cada {@code productos.busqueda.indice-memoria.contadores-ms}; entre
+ * refrescos esos contadores pueden estar desactualizados. Los DTO que se entregan son copias.
+ * <p>
+ * El filtro por nombre busca cada palabra como prefijo de algún término del nombre, la descripción o las etiquetas,
+ * sin distinguir mayúsculas ni acentos; no es idéntico al LIKE de la consulta en base de datos.
+ */
+@Component
+@Slf4j
+public class IndiceProductosEnMemoria {
+
+    // Si la fracción de productos eliminados supera este valor, el índice se reconstruye para liberar memoria
+    private static final double MAXIMA_FRACCION_ELIMINADOS = 0.3;
+
+    private final ProductoRepository productoRepository;
+    private final ProductoMapper productoMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitado;
+
+    // Lecturas concurrentes; las actualizaciones y el reemplazo del índice toman el lock de escritura
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Productos modificados pendientes de reindexar
+    private final ConcurrentLinkedQueue<Long> pendientes = new ConcurrentLinkedQueue<>();
+    // Se solicitó reconstruir el índice completo (por ejemplo, tras una carga masiva)
+    private final AtomicBoolean reconstruccionPendiente = new AtomicBoolean(false);
+
+    private Indice indice = new Indice(0);
+    private volatile boolean listo;
+
+    public IndiceProductosEnMemoria(ProductoRepository productoRepository,
+                                    ProductoMapper productoMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${productos.busqueda.indice-memoria.habilitado:false}") boolean habilitado) {
+        this.productoRepository = productoRepository;
+        this.productoMapper = productoMapper;
+        this.habilitado = habilitado;
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+
+        Gauge.builder("productos.indice.memoria", this, IndiceProductosEnMemoria::bytesEstimados)
+                .description("Memoria estimada del índice de búsqueda en memoria")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("productos.indice.documentos", this, i -> i.leer(Indice::documentosVivos))
+                .description("Productos presentes en el índice de búsqueda en memoria")
+                .register(meterRegistry);
+    }
+
+    //===============================================================================================================================================
+
+    // Indica si el índice está habilitado y ya fue construido
+    public boolean estaListo() {
+        return habilitado && listo;
+    }
+
+    /**
+     * Devuelve copias de todos los productos que cumplen los filtros, en el orden en que se indexaron.
+     */
+    public List<ProductoDTO> buscarProductos(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles) {
+        return leer(i -> i.buscar(nombre, categoriaId, precioMin, precioMax, disponibles).stream()
+                .map(ProductoDTO::copia)
+                .toList());
+    }
+
+    /**
+     * Devuelve una página de los productos que cumplen los filtros, ordenada por el campo indicado (ver QuerydslUtil).
+     */
+    public Page<ProductoDTO> buscarProductosPaginado(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles, Pageable pageable) {
+        Comparator<ProductoDTO> orden = comparadorPara(pageable.getSort());
+
+        // Se ordena y se copia bajo el lock de lectura: el refresco de contadores modifica los DTO indexados
+        return leer(i -> {
+            List<ProductoDTO> coincidencias = i.buscar(nombre, categoriaId, precioMin, precioMax, disponibles);
+            if (orden != null) {
+                coincidencias.sort(orden);
+            }
+
+            int desde = (int) Math.min(pageable.getOffset(), coincidencias.size());
+            int hasta = Math.min(desde + pageable.getPageSize(), coincidencias.size());
+            List<ProductoDTO> pagina = coincidencias.subList(desde, hasta).stream()
+                    .map(ProductoDTO::copia)
+                    .toList();
+            return new PageImpl<>(pagina, pageable, coincidencias.size());
+        });
+    }
+
+    // Memoria aproximada ocupada por el índice, en bytes
+    public long bytesEstimados() {
+        return leer(Indice::bytesEstimados);
+    }
+
+    //===============================================================================================================================================
+
+    // Construcción inicial al arrancar la aplicación
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        if (habilitado) {
+            reconstruir();
+        }
+    }
+
+    // Los cambios confirmados se encolan y se aplican en segundo plano
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        if (!habilitado) {
+            return;
+        }
+        if (evento.esCatalogoCompleto()) {
+            reconstruccionPendiente.set(true);
+        } else {
+            pendientes.add(evento.productoId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearProductos(ProductosCreadosEvent evento) {
+        if (habilitado) {
+            pendientes.addAll(evento.productoIds());
+        }
+    }
+
+    // El stock se guarda en el DTO indexado; se reindexa el producto igual que ante cualquier otro cambio
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarStock(StockCambiadoEvent evento) {
+        if (habilitado) {
+            pendientes.add(evento.productoId());
+        }
+    }
+
+    // Aplica los cambios pendientes: reconstrucción completa o reindexación por producto
+    @Scheduled(fixedDelayString = "${productos.busqueda.indice-memoria.actualizacion-ms:1000}")
+    public void aplicarCambiosPendientes() {
+        if (!habilitado || !listo) {
+            return;
+        }
+
+        try {
+            if (reconstruccionPendiente.getAndSet(false) || leer(Indice::fraccionEliminados) > MAXIMA_FRACCION_ELIMINADOS) {
+                pendientes.clear();
+                reconstruir();
+                return;
+            }
+
+            Set<Long> ids = new HashSet<>();
+            Long id;
+            while ((id = pendientes.poll()) != null) {
+                ids.add(id);
+            }
+            for (Long productoId : ids) {
+                reindexar(productoId);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error al actualizar el índice de búsqueda en memoria", e);
+        }
+    }
+
+    // Refresca stock y veces visto de todos los productos indexados con una sola consulta de tres columnas
+    @Scheduled(fixedDelayString = "${productos.busqueda.indice-memoria.contadores-ms:60000}",
+            initialDelayString = "${productos.busqueda.indice-memoria.contadores-ms:60000}")
+    public void refrescarContadores() {
+        if (!habilitado || !listo) {
+            return;
+        }
+
+        try {
+            List<Object[]> contadores = transactionTemplate.execute(status -> productoRepository.findContadores());
+
+            lock.writeLock().lock();
+            try {
+                for (Object[] fila : contadores) {
+                    indice.actualizarContadores((Long) fila[0], (Integer) fila[1], ((Number) fila[2]).intValue());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            log.error("Error al refrescar los contadores del índice de búsqueda en memoria", e);
+        }
+    }
+
+    //===============================================================================================================================================
+
+    private void reconstruir() {
+        long inicio = System.nanoTime();
+
+        // El índice nuevo se arma fuera del lock y luego reemplaza al anterior
+        Indice nuevo = transactionTemplate.execute(status -> {
+            List<ProductoCarruselFila> filas = productoRepository.findTodosConCategoria();
+
+            Map<Long, List<String>> etiquetasPorProducto = new HashMap<>();
+            for (Object[] par : productoRepository.findNombresEtiquetas()) {
+                etiquetasPorProducto.computeIfAbsent((Long) par[0], k -> new ArrayList<>()).add((String) par[1]);
+            }
+
+            Indice construido = new Indice(filas.size());
+            for (ProductoCarruselFila fila : filas) {
+                construido.agregar(productoMapper.toDto(fila), fila.getCategoriaId(),
+                        etiquetasPorProducto.getOrDefault(fila.getId(), List.of()), false);
+            }
+            construido.ordenarPrecios();
+            return construido;
+        });
+
+        lock.writeLock().lock();
+        try {
+            indice = nuevo;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        listo = true;
+
+        log.info("Índice de búsqueda en memoria construido: {} productos, {} términos, ~{} KB en {} ms.",
+                nuevo.documentosVivos(), nuevo.terminos.size(), nuevo.bytesEstimados() / 1024, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private void reindexar(Long productoId) {
+        // Se leen los datos actuales del producto; si ya no existe, se elimina del índice
+        record Datos(ProductoCarruselFila fila, List<String> etiquetas) {
+        }
+        Datos datos = transactionTemplate.execute(status -> productoRepository.findConCategoriaById(productoId)
+                .map(fila -> new Datos(fila, productoRepository.findNombresEtiquetasByProductoId(productoId)))
+                .orElse(null));
+
+        lock.writeLock().lock();
+        try {
+            if (datos == null) {
+                indice.eliminar(productoId);
+            } else {
+                indice.agregar(productoMapper.toDto(datos.fila()), datos.fila().getCategoriaId(), datos.etiquetas(), true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private <T> T leer(Function<Indice, T> lectura) {
+        lock.readLock().lock();
+        try {
+            return lectura.apply(indice);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Mismos campos que QuerydslUtil. Los nulos van al final en orden ascendente y al principio en descendente, como en PostgreSQL
+    private static Comparator<ProductoDTO> comparadorPara(Sort sort) {
+        Comparator<ProductoDTO> comparador = null;
+        for (Sort.Order order : sort) {
+            if (!QuerydslUtil.esCampoOrdenableProducto(order.getProperty())) {
+                throw new IllegalArgumentException("Campo de ordenamiento no válido: " + order.getProperty());
+            }
+            Comparator<ProductoDTO> siguiente = switch (order.getProperty()) {
+                case "id" -> Comparator.comparing(ProductoDTO::getId);
+                case "nombre" -> Comparator.comparing(ProductoDTO::getNombre, String.CASE_INSENSITIVE_ORDER);
+                case "descripcion" -> Comparator.comparing(ProductoDTO::getDescripcion, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+                case "stock" -> Comparator.comparing(ProductoDTO::getStock, Comparator.nullsLast(Comparator.naturalOrder()));
+                case "vecesVisto" -> Comparator.comparingInt(ProductoDTO::getVecesVisto);
+                case "disponible" -> Comparator.comparing(ProductoDTO::isDisponible);
+                case "fechaCreacion" -> Comparator.comparing(ProductoDTO::getFechaCreacion, Comparator.nullsLast(Comparator.naturalOrder()));
+                default -> Comparator.comparing(ProductoDTO::getPrecio);
+            };
+            if (order.isDescending()) {
+                siguiente = siguiente.reversed();
+            }
+            comparador = comparador == null ? siguiente : comparador.thenComparing(siguiente);
+        }
+        return comparador;
+    }
+
+    // Minúsculas y sin acentos, separado en palabras de letras y dígitos
+    static void tokenizar(String texto, Collection<String> destino) {
+        if (texto == null || texto.isBlank()) {
+            return;
+        }
+        String normalizado = Normalizer.normalize(texto, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        for (String palabra : normalizado.split("[^\\p{L}\\p{N}]+")) {
+            if (!palabra.isEmpty()) {
+                destino.add(palabra);
+            }
+        }
+    }
+
+    //===============================================================================================================================================
+
+    // Lista creciente de ordinales de un término; como los ordinales se asignan en orden creciente, la lista siempre queda ordenada
+    private static final class Postings {
+        private int[] ordinales = new int[4];
+        private int tamanio;
+
+        void agregar(int ordinal) {
+            if (tamanio == ordinales.length) {
+                ordinales = Arrays.copyOf(ordinales, tamanio * 2);
+            }
+            ordinales[tamanio++] = ordinal;
+        }
+
+        void compactar() {
+            if (ordinales.length != tamanio) {
+                ordinales = Arrays.copyOf(ordinales, tamanio);
+            }
+        }
+
+        void marcarEn(BitSet destino) {
+            for (int i = 0; i < tamanio; i++) {
+                destino.set(ordinales[i]);
+            }
+        }
+    }
+
+    // Estructuras del índice; no es seguro para hilos por sí mismo (lo protege el lock de la clase externa)
+    private static final class Indice {
+        private ProductoDTO[] documentos;
+        private long[] precios;                  // Precio en centavos por ordinal
+        private int cantidad;                    // Ordinales asignados (incluye eliminados)
+        private int eliminados;
+
+        private final Map<Long, Integer> ordinalPorId = new HashMap<>();
+        private final BitSet vivos = new BitSet();
+        private final BitSet disponibles = new BitSet();
+        private final Map<Long, BitSet> porCategoria = new HashMap<>();
+        private final TreeMap<String, Postings> terminos = new TreeMap<>();
+
+        // Precios en centavos ordenados de menor a mayor, con el ordinal correspondiente en la misma posición
+        private long[] preciosOrdenados;
+        private int[] ordinalesPorPrecio;
+        private int tamanioPrecios;
+
+        Indice(int capacidad) {
+            int inicial = Math.max(16, capacidad);
+            documentos = new ProductoDTO[inicial];
+            precios = new long[inicial];
+            preciosOrdenados = new long[inicial];
+            ordinalesPorPrecio = new int[inicial];
+        }
+
+        // Agrega o reemplaza un producto. Durante la construcción inicial el orden por precio se calcula una sola vez al final.
+        void agregar(ProductoDTO producto, Long categoriaId, Collection<String> etiquetas, boolean mantenerOrdenPrecios) {
+            eliminar(producto.getId());
+
+            int ordinal = cantidad++;
+            asegurarCapacidad(cantidad);
+
+            long precio = aCentavos(producto.getPrecio(), RoundingMode.HALF_UP);
+            documentos[ordinal] = producto;
+            precios[ordinal] = precio;
+            ordinalPorId.put(producto.getId(), ordinal);
+            vivos.set(ordinal);
+            if (producto.isDisponible()) {
+                disponibles.set(ordinal);
+            }
+            porCategoria.computeIfAbsent(categoriaId, k -> new BitSet()).set(ordinal);
+
+            Set<String> tokens = new HashSet<>();
+            tokenizar(producto.getNombre(), tokens);
+            tokenizar(producto.getDescripcion(), tokens);
+            for (String etiqueta : etiquetas) {
+                tokenizar(etiqueta, tokens);
+            }
+            for (String token : tokens) {
+                terminos.computeIfAbsent(token, k -> new Postings()).agregar(ordinal);
+            }
+
+            if (mantenerOrdenPrecios) {
+                insertarPrecio(precio, ordinal);
+            }
+        }
+
+        // Stock y veces visto no participan en los filtros, así que se actualizan en el mismo DTO sin reindexar
+        void actualizarContadores(Long productoId, Integer stock, int vecesVisto) {
+            Integer ordinal = ordinalPorId.get(productoId);
+            if (ordinal != null) {
+                documentos[ordinal].setStock(stock);
+                documentos[ordinal].setVecesVisto(vecesVisto);
+            }
+        }
+
+        // Marca el producto como eliminado; su ordinal se descarta en la próxima reconstrucción
+        void eliminar(Long productoId) {
+            Integer ordinal = ordinalPorId.remove(productoId);
+            if (ordinal == null) {
+                return;
+            }
+            vivos.clear(ordinal);
+            disponibles.clear(ordinal);
+            documentos[ordinal] = null;
+            eliminados++;
+        }
+
+        void ordenarPrecios() {
+            Integer[] orden = new Integer[cantidad];
+            for (int i = 0; i < cantidad; i++) {
+                orden[i] = i;
+            }
+            Arrays.sort(orden, Comparator.comparingLong(o -> precios[o]));
+            for (int i = 0; i < cantidad; i++) {
+                ordinalesPorPrecio[i] = orden[i];
+                preciosOrdenados[i] = precios[orden[i]];
+            }
+            tamanioPrecios = cantidad;
+            terminos.values().forEach(Postings::compactar);
+        }
+
+        List<ProductoDTO> buscar(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean soloDisponibles) {
+            BitSet candidatos = (BitSet) vivos.clone();
+
+            if (nombre != null && !nombre.isBlank()) {
+                List<String> palabras = new ArrayList<>();
+                tokenizar(nombre, palabras);
+                for (String palabra : palabras) {
+                    candidatos.and(conPrefijo(palabra));
+                }
+            }
+
+            if (categoriaId != null) {
+                candidatos.and(porCategoria.getOrDefault(categoriaId, new BitSet()));
+            }
+
+            if (soloDisponibles != null) {
+                if (soloDisponibles) {
+                    candidatos.and(disponibles);
+                } else {
+                    candidatos.andNot(disponibles);
+                }
+            }
+
+            if (precioMin != null || precioMax != null) {
+                long minimo = precioMin == null ? Long.MIN_VALUE : aCentavos(precioMin, RoundingMode.CEILING);
+                long maximo = precioMax == null ? Long.MAX_VALUE : aCentavos(precioMax, RoundingMode.FLOOR);
+                candidatos.and(enRangoDePrecio(minimo, maximo));
+            }
+
+            List<ProductoDTO> resultado = new ArrayList<>(candidatos.cardinality());
+            for (int o = candidatos.nextSetBit(0); o >= 0; o = candidatos.nextSetBit(o + 1)) {
+                resultado.add(documentos[o]);
+            }
+            return resultado;
+        }
+
+        // Unión de las listas de todos los términos que empiezan con el prefijo
+        private BitSet conPrefijo(String prefijo) {
+            BitSet resultado = new BitSet();
+            NavigableMap<String, Postings> coincidentes = terminos.subMap(prefijo, true, prefijo + Character.MAX_VALUE, true);
+            for (Postings postings : coincidentes.values()) {
+                postings.marcarEn(resultado);
+            }
+            return resultado;
+        }
+
+        // Ordinales con precio dentro de [minimo, maximo], localizados con búsqueda binaria sobre el arreglo ordenado
+        private BitSet enRangoDePrecio(long minimo, long maximo) {
+            BitSet resultado = new BitSet();
+            for (int i = primeraPosicionMayorOIgual(minimo); i < tamanioPrecios && preciosOrdenados[i] <= maximo; i++) {
+                resultado.set(ordinalesPorPrecio[i]);
+            }
+            return resultado;
+        }
+
+        private int primeraPosicionMayorOIgual(long precio) {
+            int bajo = 0;
+            int alto = tamanioPrecios;
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (preciosOrdenados[medio] < precio) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            return bajo;
+        }
+
+        // Inserta el precio en su posición manteniendo el arreglo ordenado (las entradas de productos eliminados se filtran con "vivos")
+        private void insertarPrecio(long precio, int ordinal) {
+            int posicion = primeraPosicionMayorOIgual(precio);
+            System.arraycopy(preciosOrdenados, posicion, preciosOrdenados, posicion + 1, tamanioPrecios - posicion);
+            System.arraycopy(ordinalesPorPrecio, posicion, ordinalesPorPrecio, posicion + 1, tamanioPrecios - posicion);
+            preciosOrdenados[posicion] = precio;
+            ordinalesPorPrecio[posicion] = ordinal;
+            tamanioPrecios++;
+        }
+
+        private void asegurarCapacidad(int requerida) {
+            if (requerida <= documentos.length) {
+                return;
+            }
+            int nueva = Math.max(requerida, documentos.length * 2);
+            documentos = Arrays.copyOf(documentos, nueva);
+            precios = Arrays.copyOf(precios, nueva);
+            preciosOrdenados = Arrays.copyOf(preciosOrdenados, nueva);
+            ordinalesPorPrecio = Arrays.copyOf(ordinalesPorPrecio, nueva);
+        }
+
+        int documentosVivos() {
+            return cantidad - eliminados;
+        }
+
+        double fraccionEliminados() {
+            return cantidad == 0 ? 0 : (double) eliminados / cantidad;
+        }
+
+        // Estimación con referencias comprimidas (4 bytes) y cabeceras de objeto de 16 bytes
+        long bytesEstimados() {
+            long bytes = 16L + 4L * documentos.length      // documentos
+                    + 16L + 8L * precios.length                // precios por ordinal
+                    + 16L + 8L * preciosOrdenados.length       // precios ordenados
+                    + 16L + 4L * ordinalesPorPrecio.length;    // ordinales por precio
+
+            // Mapa de IDs a ordinales: entrada, Long e Integer
+            bytes += ordinalPorId.size() * (32L + 16L + 16L);
+
+            // Conjuntos de bits
+            bytes += (vivos.size() + disponibles.size()) / 8;
+            for (BitSet bits : porCategoria.values()) {
+                bytes += 16L + bits.size() / 8;
+            }
+
+            // Términos: entrada del TreeMap, String, Postings y su arreglo
+            for (Map.Entry<String, Postings> entrada : terminos.entrySet()) {
+                bytes += 40L + 40L + entrada.getKey().length() + 24L + 16L + 4L * entrada.getValue().ordinales.length;
+            }
+
+            // Documentos: objeto ProductoDTO y sus textos
+            for (int o = vivos.nextSetBit(0); o >= 0; o = vivos.nextSetBit(o + 1)) {
+                ProductoDTO producto = documentos[o];
+                bytes += 64L + largoTexto(producto.getNombre()) + largoTexto(producto.getDescripcion())
+                        + largoTexto(producto.getImagenUrl()) + largoTexto(producto.getNombreCategoria());
+            }
+            return bytes;
+        }
+
+        private static long largoTexto(String texto) {
+            return texto == null ? 0 : 40L + texto.length();
+        }
+
+        private static long aCentavos(BigDecimal precio, RoundingMode redondeo) {
+            return precio.movePointRight(2).setScale(0, redondeo).longValueExact();
+        }
+    }
+}
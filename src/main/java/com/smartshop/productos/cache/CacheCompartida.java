@@ -0,0 +1,28 @@
+package com.smartshop.productos.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Nivel compartido de la caché de productos (común a todas las réplicas).
+ * Además de guardar entradas, difunde las invalidaciones para que cada réplica descarte su copia local.
+ * <p>
+ * Se puede conectar una implementación basada en un almacén externo declarando un bean de este tipo;
+ * {@link CacheCompartidaEnMemoria} es la implementación embebida para pruebas y ejecución local.
+ */
+public interface CacheCompartida {
+
+    Optional<ProductoCacheado> obtener(Long productoId);
+
+    void guardar(Long productoId, ProductoCacheado producto, Duration ttl);
+
+    // Elimina la entrada y avisa a todas las réplicas suscritas
+    void invalidar(Long productoId);
+
+    // Elimina todas las entradas y avisa a todas las réplicas suscritas
+    void invalidarTodo();
+
+    // Registra un oyente de invalidaciones; recibe null cuando se invalida todo
+    void suscribir(Consumer<Long> oyente);
+}
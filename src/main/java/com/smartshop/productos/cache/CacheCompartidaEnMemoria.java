@@ -0,0 +1,61 @@
+package com.smartshop.productos.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Nivel compartido embebido en el mismo proceso. Sirve como sustituto del almacén externo en pruebas
+ * y en ejecución local: guarda entradas con vencimiento y entrega las invalidaciones a los oyentes registrados.
+ */
+@Component
+@ConditionalOnProperty(name = "productos.cache.productos.compartida", havingValue = "memoria")
+public class CacheCompartidaEnMemoria implements CacheCompartida {
+
+    private record Entrada(ProductoCacheado producto, long venceEnNanos) {
+    }
+
+    private final ConcurrentHashMap<Long, Entrada> entradas = new ConcurrentHashMap<>();
+    private final List<Consumer<Long>> oyentes = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Optional<ProductoCacheado> obtener(Long productoId) {
+        Entrada entrada = entradas.get(productoId);
+        if (entrada == null) {
+            return Optional.empty();
+        }
+        if (entrada.venceEnNanos() - System.nanoTime() <= 0) {
+            entradas.remove(productoId, entrada);
+            return Optional.empty();
+        }
+        return Optional.of(entrada.producto());
+    }
+
+    @Override
+    public void guardar(Long productoId, ProductoCacheado producto, Duration ttl) {
+        entradas.put(productoId, new Entrada(producto, System.nanoTime() + ttl.toNanos()));
+    }
+
+    @Override
+    public void invalidar(Long productoId) {
+        entradas.remove(productoId);
+        oyentes.forEach(oyente -> oyente.accept(productoId));
+    }
+
+    @Override
+    public void invalidarTodo() {
+        entradas.clear();
+        oyentes.forEach(oyente -> oyente.accept(null));
+    }
+
+    @Override
+    public void suscribir(Consumer<Long> oyente) {
+        oyentes.add(oyente);
+    }
+}
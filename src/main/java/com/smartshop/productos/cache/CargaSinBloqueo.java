@@ -0,0 +1,53 @@
+package com.smartshop.productos.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Carga de entradas de Caffeine fuera del bloqueo del mapa.
+ * <p>
+ * {@code Cache.get(clave, cargador)} ejecuta el cargador dentro de {@code ConcurrentHashMap.compute}, que sincroniza
+ * sobre el nodo del mapa: si el cargador hace E/S (base de datos, caché compartida), un hilo virtual queda fijado a su
+ * hilo de plataforma mientras espera. Aquí se publica primero un futuro vacío y se carga fuera del mapa; los demás
+ * hilos que piden la misma clave esperan ese futuro, así que las cargas concurrentes se siguen agrupando en una sola.
+ */
+public final class CargaSinBloqueo {
+
+    private CargaSinBloqueo() {
+    }
+
+    /**
+     * Devuelve el valor de la clave, cargándolo en el hilo actual si nadie lo está cargando. Un valor nulo no se
+     * guarda; si la carga falla, la entrada se descarta y la excepción llega a todos los que la esperaban.
+     */
+    public static <K, V> V obtener(AsyncCache<K, V> cache, K clave, Function<K, V> cargador) {
+        CompletableFuture<V> existente = cache.getIfPresent(clave);
+        if (existente == null) {
+            CompletableFuture<V> nuevo = new CompletableFuture<>();
+            existente = cache.asMap().putIfAbsent(clave, nuevo);
+            if (existente == null) {
+                try {
+                    V valor = cargador.apply(clave);
+                    // Caffeine elimina la entrada si el futuro se completa con null o con error
+                    nuevo.complete(valor);
+                    return valor;
+                } catch (RuntimeException | Error e) {
+                    nuevo.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+
+        try {
+            return existente.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.smartshop.productos.cache;
+
+import com.smartshop.productos.dto.CarruselDTO;
+import com.smartshop.productos.dto.CategoriaDTO;
+import com.smartshop.productos.dto.ProductoDTO;
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import com.smartshop.productos.event.ProductosCreadosEvent;
+import com.smartshop.productos.exception.NoHayCategoriasSuficientesException;
+import com.smartshop.productos.mapper.ProductoMapper;
+import com.smartshop.productos.projection.CategoriaProductoCount;
+import com.smartshop.productos.projection.ProductoCarruselFila;
+import com.smartshop.productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Mantiene en memoria el conjunto de categorías elegibles para carruseles junto con sus productos más recientes.
+ * El conjunto se refresca en segundo plano (de forma periódica y cuando cambian los productos), de modo que
+ * cada solicitud solo elige carruseles al azar sin consultar la base de datos.
+ */
+@Component
+@Slf4j
+public class CarruselPool {
+
+    private final ProductoRepository productoRepository;
+    private final ProductoMapper productoMapper;
+    private final RegistroCategorias registroCategorias;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer tiempoRefresco;
+
+    // Cantidad de carruseles que se devuelven en cada solicitud
+    private final int cantidadCarruseles;
+    // Cantidad de productos por carrusel; también es el mínimo de productos disponibles para que una categoría sea elegible
+    private final int productosPorCarrusel;
+    // Antigüedad máxima permitida de la instantánea antes de forzar un refresco síncrono
+    private final Duration antiguedadMaxima;
+
+    // Evita que dos hilos refresquen al mismo tiempo; quien espera el lock reutiliza la instantánea que dejó el anterior
+    private final ReentrantLock refrescoLock = new ReentrantLock();
+    // Indica que hubo cambios en productos desde el último refresco
+    private final AtomicBoolean cambiosPendientes = new AtomicBoolean(false);
+
+    // Instantánea inmutable publicada para las lecturas
+    private volatile Instantanea instantanea;
+
+    // Contenido del pool en un momento dado
+    private record Instantanea(List<CarruselDTO> carruseles, Instant generadaEn) {
+    }
+
+    public CarruselPool(ProductoRepository productoRepository,
+                        ProductoMapper productoMapper,
+                        RegistroCategorias registroCategorias,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${productos.carrusel.cantidad:3}") int cantidadCarruseles,
+                        @Value("${productos.carrusel.productos-por-carrusel:10}") int productosPorCarrusel,
+                        @Value("${productos.carrusel.antiguedad-maxima:5m}") Duration antiguedadMaxima) {
+        this.productoRepository = productoRepository;
+        this.productoMapper = productoMapper;
+        this.registroCategorias = registroCategorias;
+        this.cantidadCarruseles = cantidadCarruseles;
+        this.productosPorCarrusel = productosPorCarrusel;
+        this.antiguedadMaxima = antiguedadMaxima;
+
+        // El refresco solo lee datos
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+
+        this.tiempoRefresco = Timer.builder("productos.carrusel.refresco")
+                .description("Duración del refresco del pool de carruseles")
+                .register(meterRegistry);
+
+        Gauge.builder("productos.carrusel.antiguedad", this, CarruselPool::antiguedadSegundos)
+                .description("Segundos transcurridos desde el último refresco del pool de carruseles")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    //===============================================================================================================================================
+
+    /**
+     * Elige al azar los carruseles a mostrar a partir de la instantánea en memoria.
+     */
+    public List<CarruselDTO> seleccionar() {
+        Instantanea actual = instantanea;
+
+        // Si no hay instantánea o superó la antigüedad máxima, se refresca antes de responder
+        if (actual == null || estaVencida(actual)) {
+            actual = refrescarSiVencida();
+        }
+
+        List<CarruselDTO> disponibles = actual.carruseles();
+        if (disponibles.size() < cantidadCarruseles) {
+            log.warn("Se encontraron {} categorías con al menos {} productos disponibles. Se requieren {}.", disponibles.size(), productosPorCarrusel, cantidadCarruseles);
+            throw new NoHayCategoriasSuficientesException("No hay suficientes categorías con productos disponibles.");
+        }
+
+        // Fisher-Yates parcial sobre los índices: solo se barajan las primeras posiciones necesarias
+        int[] indices = new int[disponibles.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<CarruselDTO> seleccionados = new ArrayList<>(cantidadCarruseles);
+        for (int i = 0; i < cantidadCarruseles; i++) {
+            int j = i + random.nextInt(indices.length - i);
+            int tmp = indices[i];
+            indices[i] = indices[j];
+            indices[j] = tmp;
+            seleccionados.add(disponibles.get(indices[i]));
+        }
+        return seleccionados;
+    }
+
+    //===============================================================================================================================================
+
+    // Carga inicial del pool al arrancar la aplicación
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        refrescarSinPropagar();
+    }
+
+    // Refresco periódico en segundo plano
+    @Scheduled(fixedDelayString = "${productos.carrusel.refresco-ms:60000}", initialDelayString = "${productos.carrusel.refresco-ms:60000}")
+    public void refrescoProgramado() {
+        refrescarSinPropagar();
+    }
+
+    // Agrupa los cambios de productos recibidos en un solo refresco
+    @Scheduled(fixedDelayString = "${productos.carrusel.espera-cambios-ms:5000}")
+    public void refrescarSiHayCambios() {
+        if (cambiosPendientes.getAndSet(false)) {
+            refrescarSinPropagar();
+        }
+    }
+
+    // Se marca el pool como desactualizado cuando se confirma un cambio en productos
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        cambiosPendientes.set(true);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearProductos(ProductosCreadosEvent evento) {
+        cambiosPendientes.set(true);
+    }
+
+    //===============================================================================================================================================
+
+    /**
+     * Reconstruye el pool desde la base de datos y publica la nueva instantánea.
+     */
+    private Instantanea refrescar() {
+        refrescoLock.lock();
+        try {
+            Instantanea nueva = tiempoRefresco.record(() -> transactionTemplate.execute(status -> construirInstantanea()));
+            instantanea = nueva;
+            log.info("Pool de carruseles refrescado con {} categorías elegibles.", nueva.carruseles().size());
+            return nueva;
+        } finally {
+            refrescoLock.unlock();
+        }
+    }
+
+    // Refresco síncrono solicitado por una lectura; si otro hilo ya refrescó mientras se esperaba el lock, se reutiliza su resultado
+    private Instantanea refrescarSiVencida() {
+        refrescoLock.lock();
+        try {
+            Instantanea actual = instantanea;
+            if (actual != null && !estaVencida(actual)) {
+                return actual;
+            }
+            return refrescar();
+        } finally {
+            refrescoLock.unlock();
+        }
+    }
+
+    private void refrescarSinPropagar() {
+        try {
+            refrescar();
+        } catch (RuntimeException e) {
+            // Se conserva la instantánea anterior; las lecturas la refrescarán cuando supere la antigüedad máxima
+            log.error("Error al refrescar el pool de carruseles", e);
+        }
+    }
+
+    private Instantanea construirInstantanea() {
+        // Obtiene los IDs de categorías con suficientes productos disponibles para llenar un carrusel
+        List<Long> categoriaIds = productoRepository.findCategoriasConMinimoProductosDisponibles(productosPorCarrusel)
+                .stream()
+                .map(CategoriaProductoCount::getCategoriaId)
+                .toList();
+
+        if (categoriaIds.isEmpty()) {
+            return new Instantanea(List.of(), Instant.now());
+        }
+
+        // Una sola consulta trae los productos más recientes de todas las categorías elegibles junto con los datos de su categoría
+        Map<Long, List<ProductoCarruselFila>> filasPorCategoria = productoRepository
+                .findTopNPorCategorias(categoriaIds, productosPorCarrusel)
+                .stream()
+                .collect(Collectors.groupingBy(ProductoCarruselFila::getCategoriaId, LinkedHashMap::new, Collectors.toList()));
+
+        List<CarruselDTO> carruseles = new ArrayList<>(filasPorCategoria.size());
+        filasPorCategoria.forEach((categoriaId, filas) -> {
+            // El nodo completo (con subcategorías) sale del registro; si aún no está, se arma con los datos de la fila
+            ProductoCarruselFila primera = filas.get(0);
+            CategoriaDTO categoria = registroCategorias.buscar(categoriaId)
+                    .orElseGet(() -> new CategoriaDTO(categoriaId, primera.getNombreCategoria(), primera.getDescripcionCategoria(), List.of()));
+            List<ProductoDTO> productos = filas.stream()
+                    .map(productoMapper::toDto)
+                    .toList();
+            carruseles.add(new CarruselDTO(categoria, productos));
+        });
+
+        return new Instantanea(List.copyOf(carruseles), Instant.now());
+    }
+
+    private boolean estaVencida(Instantanea actual) {
+        return actual.generadaEn().plus(antiguedadMaxima).isBefore(Instant.now());
+    }
+
+    private double antiguedadSegundos() {
+        Instantanea actual = instantanea;
+        return actual == null ? Double.NaN : Duration.between(actual.generadaEn(), Instant.now()).toMillis() / 1000.0;
+    }
+}
@@ -0,0 +1,89 @@
+package com.smartshop.productos.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartshop.productos.dto.FiltroProductos;
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import com.smartshop.productos.event.ProductosCreadosEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caché de totales de la búsqueda de productos, indexada por la combinación normalizada de filtros.
+ * Se vacía cuando se confirma un cambio en productos; la expiración acota la desactualización cuando
+ * el cambio ocurre en otra réplica. Un contador de generaciones evita que un conteo que empezó antes de la
+ * invalidación se guarde después de ella.
+ */
+@Component
+@Slf4j
+public class ConteoProductosCache {
+
+    private final Cache<FiltroProductos, Long> conteos;
+    // Se incrementa en cada invalidación; los totales calculados en una generación anterior no se guardan
+    private final AtomicLong generacion = new AtomicLong();
+
+    public ConteoProductosCache(MeterRegistry meterRegistry,
+                                @Value("${productos.cache.conteos.tamanio-maximo:10000}") long tamanioMaximo,
+                                @Value("${productos.cache.conteos.expiracion:10m}") Duration expiracion) {
+        this.conteos = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(expiracion)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, conteos, "productos.conteos");
+    }
+
+    // Generación actual: se lee antes de consultar la base de datos y se pasa a guardar()
+    public long generacion() {
+        return generacion.get();
+    }
+
+    // Devuelve el total en caché para el filtro o lo calcula con el contador indicado
+    public long obtener(FiltroProductos filtro, Supplier<Long> contador) {
+        FiltroProductos clave = filtro.normalizado();
+        Long total = conteos.getIfPresent(clave);
+        if (total != null) {
+            return total;
+        }
+        long generacionInicial = generacion.get();
+        total = contador.get();
+        guardar(clave, total, generacionInicial);
+        return total;
+    }
+
+    // Guarda un total ya conocido (por ejemplo, cuando la primera página no se llenó), calculado en la generación indicada
+    public void guardar(FiltroProductos filtro, long total, long generacionInicial) {
+        FiltroProductos clave = filtro.normalizado();
+        // Un total calculado antes de una invalidación no se guarda: reflejaría datos anteriores al cambio
+        if (generacion.get() != generacionInicial) {
+            return;
+        }
+        conteos.put(clave, total);
+        // Si la invalidación llegó entre la comprobación y el put, se descarta lo que se acaba de guardar
+        if (generacion.get() != generacionInicial) {
+            conteos.invalidate(clave);
+        }
+    }
+
+    // Cualquier cambio en productos puede alterar los totales de cualquier filtro
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        generacion.incrementAndGet();
+        conteos.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearProductos(ProductosCreadosEvent evento) {
+        generacion.incrementAndGet();
+        conteos.invalidateAll();
+    }
+}
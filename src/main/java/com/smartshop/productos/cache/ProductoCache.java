@@ -0,0 +1,251 @@
+package com.smartshop.productos.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import com.smartshop.productos.event.StockCambiadoEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Caché de productos de dos niveles: uno local acotado (Caffeine) y uno compartido opcional ({@link CacheCompartida}).
+ * <p>
+ * Lectura: local → compartido → base de datos; cada nivel se completa con lo que encuentran los niveles inferiores.
+ * Escritura: al confirmarse un cambio (incluido un cambio de stock) se elimina el producto de ambos niveles y el nivel compartido difunde la
+ * invalidación al resto de las réplicas. Las métricas se publican por nivel (etiqueta {@code nivel}).
+ */
+@Component
+@Slf4j
+public class ProductoCache {
+
+    private static final String NOMBRE_CACHE = "productos.detalle";
+    private static final int FRANJAS_GENERACION = 1024;
+
+    private final AsyncCache<Long, ProductoCacheado> local;
+    private final CacheCompartida compartida;
+    private final Duration ttlCompartida;
+
+    // Generación por franja de IDs más una del catálogo completo: una carga solo se guarda en el nivel compartido
+    // si ninguna invalidación de su producto llegó mientras se leía (como en RespuestasCacheFilter)
+    private final AtomicLongArray generaciones = new AtomicLongArray(FRANJAS_GENERACION);
+    private final AtomicLong generacionCatalogo = new AtomicLong();
+
+    private final Counter aciertosCompartida;
+    private final Counter fallosCompartida;
+    private final Counter erroresCompartida;
+
+    public ProductoCache(MeterRegistry meterRegistry,
+                         ObjectProvider<CacheCompartida> cacheCompartida,
+                         @Value("${productos.cache.productos.tamanio-maximo:10000}") long tamanioMaximo,
+                         @Value("${productos.cache.productos.expiracion-local:5m}") Duration expiracionLocal,
+                         @Value("${productos.cache.productos.expiracion-compartida:30m}") Duration ttlCompartida) {
+        this.local = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(expiracionLocal)
+                .recordStats()
+                .buildAsync();
+        this.compartida = cacheCompartida.getIfAvailable();
+        this.ttlCompartida = ttlCompartida;
+
+        CaffeineCacheMetrics.monitor(meterRegistry, local.synchronous(), NOMBRE_CACHE, Tags.of("nivel", "local"));
+
+        // Mismos nombres que las métricas de Caffeine para poder comparar ambos niveles
+        Tags compartidaTags = Tags.of("cache", NOMBRE_CACHE, "nivel", "compartida");
+        this.aciertosCompartida = Counter.builder("cache.gets").tags(compartidaTags).tag("result", "hit").register(meterRegistry);
+        this.fallosCompartida = Counter.builder("cache.gets").tags(compartidaTags).tag("result", "miss").register(meterRegistry);
+        this.erroresCompartida = Counter.builder("cache.errors").tags(compartidaTags)
+                .description("Errores al acceder al nivel compartido; la caché sigue funcionando solo con el nivel local")
+                .register(meterRegistry);
+
+        // Las invalidaciones de otras réplicas llegan por el nivel compartido
+        if (compartida != null) {
+            compartida.suscribir(this::invalidarLocal);
+        }
+    }
+
+    //===============================================================================================================================================
+
+    /**
+     * Devuelve una copia del producto, buscándolo primero en los niveles de caché y luego con el cargador indicado.
+     */
+    public Optional<ProductoCacheado> obtener(Long productoId, Function<Long, Optional<ProductoCacheado>> cargador) {
+        // Las cargas concurrentes del mismo ID se agrupan en una sola, sin hacer E/S dentro del bloqueo del mapa
+        ProductoCacheado producto = CargaSinBloqueo.obtener(local, productoId, id -> {
+            long generacion = generacion(id);
+            return obtenerDeCompartida(id)
+                    .orElseGet(() -> cargador.apply(id)
+                            .map(cargado -> {
+                                guardarEnCompartida(id, cargado, generacion);
+                                return cargado;
+                            })
+                            .orElse(null));
+        });
+        return Optional.ofNullable(producto).map(ProductoCacheado::copia);
+    }
+
+    /**
+     * Devuelve copias de los productos indicados que existan, en el orden de los IDs. Los que no están en ningún
+     * nivel se cargan juntos con una sola llamada al cargador de lote.
+     */
+    public Map<Long, ProductoCacheado> obtenerVarios(Collection<Long> productoIds, Function<Set<Long>, Map<Long, ProductoCacheado>> cargadorLote) {
+        Map<Long, ProductoCacheado> encontrados = new HashMap<>();
+        Map<Long, Long> faltantes = new LinkedHashMap<>();
+        for (Long id : productoIds) {
+            // Las cargas individuales en curso no se esperan: esos IDs se cargan en el lote
+            CompletableFuture<ProductoCacheado> enLocal = local.getIfPresent(id);
+            ProductoCacheado producto = enLocal != null && enLocal.isDone() && !enLocal.isCompletedExceptionally() ? enLocal.join() : null;
+            if (producto != null) {
+                encontrados.put(id, producto);
+            } else {
+                faltantes.put(id, generacion(id));
+            }
+        }
+
+        Set<Long> sinCompartida = new LinkedHashSet<>();
+        faltantes.forEach((id, generacion) -> obtenerDeCompartida(id).ifPresentOrElse(producto -> {
+            encontrados.put(id, producto);
+            guardarEnLocal(id, producto, generacion);
+        }, () -> sinCompartida.add(id)));
+
+        if (!sinCompartida.isEmpty()) {
+            cargadorLote.apply(sinCompartida).forEach((id, producto) -> {
+                encontrados.put(id, producto);
+                guardarEnLocal(id, producto, faltantes.get(id));
+                guardarEnCompartida(id, producto, faltantes.get(id));
+            });
+        }
+
+        Map<Long, ProductoCacheado> resultado = new LinkedHashMap<>();
+        for (Long id : productoIds) {
+            ProductoCacheado producto = encontrados.get(id);
+            if (producto != null) {
+                resultado.put(id, producto.copia());
+            }
+        }
+        return resultado;
+    }
+
+    //===============================================================================================================================================
+
+    // Se invalida después del commit para que ninguna lectura vuelva a cargar la versión anterior
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        invalidar(evento.productoId());
+    }
+
+    // La entrada incluye el stock, así que también se invalida cuando solo cambia la cantidad
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarStock(StockCambiadoEvent evento) {
+        invalidar(evento.productoId());
+    }
+
+    //===============================================================================================================================================
+
+    // Un ID null invalida todo el catálogo
+    private void invalidar(Long productoId) {
+        avanzarGeneracion(productoId);
+        if (compartida == null) {
+            invalidarLocal(productoId);
+            return;
+        }
+        try {
+            // El nivel compartido avisa a todas las réplicas, incluida esta
+            if (productoId == null) {
+                compartida.invalidarTodo();
+            } else {
+                compartida.invalidar(productoId);
+            }
+        } catch (RuntimeException e) {
+            erroresCompartida.increment();
+            log.error("No se pudo difundir la invalidación del producto {}", productoId, e);
+            invalidarLocal(productoId);
+        }
+    }
+
+    private void invalidarLocal(Long productoId) {
+        avanzarGeneracion(productoId);
+        if (productoId == null) {
+            local.synchronous().invalidateAll();
+        } else {
+            local.synchronous().invalidate(productoId);
+        }
+    }
+
+    private Optional<ProductoCacheado> obtenerDeCompartida(Long productoId) {
+        if (compartida == null) {
+            return Optional.empty();
+        }
+        try {
+            Optional<ProductoCacheado> producto = compartida.obtener(productoId);
+            (producto.isPresent() ? aciertosCompartida : fallosCompartida).increment();
+            return producto;
+        } catch (RuntimeException e) {
+            erroresCompartida.increment();
+            log.warn("Error al leer el producto {} del nivel compartido", productoId, e);
+            return Optional.empty();
+        }
+    }
+
+    // Para cargas hechas fuera de CargaSinBloqueo (en lote): sin futuro en curso, la invalidación no las descartaría
+    private void guardarEnLocal(Long productoId, ProductoCacheado producto, long generacionInicial) {
+        if (generacion(productoId) != generacionInicial) {
+            return;
+        }
+        local.asMap().putIfAbsent(productoId, CompletableFuture.completedFuture(producto));
+        if (generacion(productoId) != generacionInicial) {
+            local.synchronous().invalidate(productoId);
+        }
+    }
+
+    // No guarda si el producto se invalidó durante la carga; si la invalidación llega mientras se escribe, se borra lo escrito
+    private void guardarEnCompartida(Long productoId, ProductoCacheado producto, long generacionInicial) {
+        if (compartida == null || generacion(productoId) != generacionInicial) {
+            return;
+        }
+        try {
+            compartida.guardar(productoId, producto, ttlCompartida);
+            if (generacion(productoId) != generacionInicial) {
+                compartida.invalidar(productoId);
+            }
+        } catch (RuntimeException e) {
+            erroresCompartida.increment();
+            log.warn("Error al guardar el producto {} en el nivel compartido", productoId, e);
+        }
+    }
+
+    private long generacion(Long productoId) {
+        return generacionCatalogo.get() + generaciones.get(franja(productoId));
+    }
+
+    private void avanzarGeneracion(Long productoId) {
+        if (productoId == null) {
+            generacionCatalogo.incrementAndGet();
+        } else {
+            generaciones.incrementAndGet(franja(productoId));
+        }
+    }
+
+    private static int franja(Long productoId) {
+        return (int) Math.floorMod(productoId, (long) FRANJAS_GENERACION);
+    }
+}
@@ -0,0 +1,15 @@
+package com.smartshop.productos.cache;
+
+import com.smartshop.productos.dto.ProductoDTO;
+
+/**
+ * Entrada de la caché de productos: el DTO y el ID de su categoría (que el DTO no expone).
+ * ProductoDTO es mutable, por eso la caché entrega siempre una copia.
+ */
+public record ProductoCacheado(ProductoDTO producto, Long categoriaId) {
+
+    // Copia defensiva para que quien recibe el DTO pueda modificarlo sin alterar la caché
+    public ProductoCacheado copia() {
+        return new ProductoCacheado(producto.copia(), categoriaId);
+    }
+}
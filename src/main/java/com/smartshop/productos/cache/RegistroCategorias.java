@@ -0,0 +1,189 @@
+package com.smartshop.productos.cache;
+
+import com.smartshop.productos.dto.CategoriaDTO;
+import com.smartshop.productos.event.CategoriasCambiadasEvent;
+import com.smartshop.productos.projection.CategoriaFila;
+import com.smartshop.productos.repository.CategoriaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Árbol de categorías en memoria. Se carga con una sola consulta plana y se publica como una instantánea
+ * inmutable (copy-on-write): las lecturas nunca consultan la base de datos ni ven un árbol a medio armar.
+ * <p>
+ * La versión es un hash del contenido, por lo que es la misma en todas las réplicas con los mismos datos
+ * y sirve como ETag del listado de categorías.
+ */
+@Component
+@Slf4j
+public class RegistroCategorias {
+
+    private final CategoriaRepository categoriaRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AtomicReference<Instantanea> instantanea = new AtomicReference<>();
+    private final ReentrantLock cargaLock = new ReentrantLock();
+
+    // Árbol publicado: raíces, índice por ID y versión del contenido
+    private record Instantanea(List<CategoriaDTO> raices, Map<Long, CategoriaDTO> porId, String version) {
+    }
+
+    public RegistroCategorias(CategoriaRepository categoriaRepository,
+                              PlatformTransactionManager transactionManager,
+                              ApplicationEventPublisher eventPublisher) {
+        this.categoriaRepository = categoriaRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    //===============================================================================================================================================
+
+    // Categorías raíz con todas sus subcategorías
+    public List<CategoriaDTO> raices() {
+        return actual().raices();
+    }
+
+    // Versión del árbol publicado (cambia solo si cambia el contenido)
+    public String version() {
+        return actual().version();
+    }
+
+    // Nodo de la categoría con sus subcategorías
+    public Optional<CategoriaDTO> buscar(Long categoriaId) {
+        return Optional.ofNullable(actual().porId().get(categoriaId));
+    }
+
+    // Nombre de la categoría, o null si no está en la instantánea actual
+    public String nombreCategoria(Long categoriaId) {
+        CategoriaDTO categoria = actual().porId().get(categoriaId);
+        return categoria == null ? null : categoria.nombre();
+    }
+
+    //===============================================================================================================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        recargarSinPropagar();
+    }
+
+    // Las categorías cambian muy poco; se recargan periódicamente y solo se publica una versión nueva si el contenido cambió
+    @Scheduled(fixedDelayString = "${productos.categorias.refresco-ms:300000}", initialDelayString = "${productos.categorias.refresco-ms:300000}")
+    public void recargarProgramado() {
+        recargarSinPropagar();
+    }
+
+    /**
+     * Vuelve a leer la tabla de categorías y publica el nuevo árbol si cambió.
+     */
+    public void recargar() {
+        cargaLock.lock();
+        try {
+            Instantanea nueva = transactionTemplate.execute(status -> construir(categoriaRepository.findTodasPlanas()));
+            Instantanea anterior = instantanea.get();
+            if (anterior == null || !anterior.version().equals(nueva.version())) {
+                instantanea.set(nueva);
+                log.info("Árbol de categorías publicado: {} categorías, versión {}", nueva.porId().size(), nueva.version());
+                if (anterior != null) {
+                    eventPublisher.publishEvent(new CategoriasCambiadasEvent(nueva.version()));
+                }
+            }
+        } finally {
+            cargaLock.unlock();
+        }
+    }
+
+    //===============================================================================================================================================
+
+    // Si todavía no hay árbol (solicitud antes de la carga inicial), se carga de forma síncrona
+    private Instantanea actual() {
+        Instantanea actual = instantanea.get();
+        if (actual != null) {
+            return actual;
+        }
+        cargaLock.lock();
+        try {
+            if (instantanea.get() == null) {
+                recargar();
+            }
+            return instantanea.get();
+        } finally {
+            cargaLock.unlock();
+        }
+    }
+
+    private void recargarSinPropagar() {
+        try {
+            recargar();
+        } catch (RuntimeException e) {
+            // Se conserva el árbol anterior
+            log.error("Error al recargar el árbol de categorías", e);
+        }
+    }
+
+    private static Instantanea construir(List<CategoriaFila> filas) {
+        Map<Long, CategoriaFila> filaPorId = new HashMap<>();
+        Map<Long, List<Long>> hijosPorPadre = new HashMap<>();
+        List<Long> raizIds = new ArrayList<>();
+        MessageDigest digest = sha256();
+
+        // Las filas vienen ordenadas por ID, así que los hijos quedan ordenados y el hash es estable
+        for (CategoriaFila fila : filas) {
+            filaPorId.put(fila.getId(), fila);
+            if (fila.getCategoriaPadreId() == null) {
+                raizIds.add(fila.getId());
+            } else {
+                hijosPorPadre.computeIfAbsent(fila.getCategoriaPadreId(), k -> new ArrayList<>()).add(fila.getId());
+            }
+            digest.update((fila.getId() + "|" + fila.getNombre() + "|" + fila.getDescripcion() + "|" + fila.getCategoriaPadreId() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        Map<Long, CategoriaDTO> porId = new HashMap<>(filaPorId.size() * 2);
+        List<CategoriaDTO> raices = raizIds.stream()
+                .map(id -> construirNodo(id, filaPorId, hijosPorPadre, porId))
+                .toList();
+
+        String version = HexFormat.of().formatHex(digest.digest(), 0, 16);
+        return new Instantanea(raices, Map.copyOf(porId), version);
+    }
+
+    // Arma el nodo de abajo hacia arriba para que cada CategoriaDTO nazca con su lista de subcategorías inmutable
+    private static CategoriaDTO construirNodo(Long id, Map<Long, CategoriaFila> filaPorId, Map<Long, List<Long>> hijosPorPadre,
+                                              Map<Long, CategoriaDTO> porId) {
+        CategoriaFila fila = filaPorId.get(id);
+        List<CategoriaDTO> subcategorias = hijosPorPadre.getOrDefault(id, List.of()).stream()
+                .map(hijoId -> construirNodo(hijoId, filaPorId, hijosPorPadre, porId))
+                .toList();
+        CategoriaDTO nodo = new CategoriaDTO(fila.getId(), fila.getNombre(), fila.getDescripcion(), subcategorias);
+        porId.put(id, nodo);
+        return nodo;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
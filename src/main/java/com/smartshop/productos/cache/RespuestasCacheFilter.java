@@ -0,0 +1,311 @@
+package com.smartshop.productos.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.smartshop.productos.event.CategoriasCambiadasEvent;
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import com.smartshop.productos.event.ProductosCreadosEvent;
+import com.smartshop.productos.event.StockCambiadoEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caché de respuestas ya serializadas para los GET más consultados (árbol de categorías, carruseles y
+ * primera página de cada categoría).
+ * <p>
+ * Guarda los bytes UTF-8 del JSON fuera del heap ({@link ByteBuffer} directos), junto con una variante gzip y
+ * un ETag. Los aciertos se responden sin pasar por Spring Security, el controlador ni Jackson; si el cliente envía
+ * el ETag en {@code If-None-Match} se responde 304. El tamaño total está acotado por peso (W-TinyLFU de Caffeine)
+ * y cada ruta tiene su propio TTL. Las entradas se invalidan con los eventos de cambio de productos y categorías.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+@Slf4j
+public class RespuestasCacheFilter extends OncePerRequestFilter {
+
+    // Por debajo de este tamaño no vale la pena guardar una variante comprimida
+    private static final int MINIMO_PARA_GZIP = 1024;
+
+    // Qué datos invalidan cada respuesta
+    private enum Grupo { CATEGORIAS, PRODUCTOS }
+
+    private record Ruta(PathPattern patron, Grupo grupo, Duration ttl, boolean soloPrimeraPagina) {
+    }
+
+    private record Clave(Grupo grupo, String solicitud) {
+    }
+
+    private record Entrada(ByteBuffer cuerpo, ByteBuffer cuerpoGzip, String etag, String contentType, long ttlNanos) {
+        int peso() {
+            return cuerpo.capacity() + (cuerpoGzip == null ? 0 : cuerpoGzip.capacity());
+        }
+    }
+
+    private final boolean habilitada;
+    private final List<Ruta> rutas;
+    private final Cache<Clave, Entrada> respuestas;
+
+    // Generación por grupo: una respuesta calculada antes de una invalidación no se guarda
+    private final Map<Grupo, AtomicLong> generaciones = new EnumMap<>(Grupo.class);
+
+    public RespuestasCacheFilter(MeterRegistry meterRegistry,
+                                 @Value("${productos.cache.respuestas.habilitada:true}") boolean habilitada,
+                                 @Value("${productos.cache.respuestas.tamanio-maximo-bytes:33554432}") long tamanioMaximoBytes,
+                                 @Value("${productos.cache.respuestas.ttl-categorias:10m}") Duration ttlCategorias,
+                                 @Value("${productos.cache.respuestas.ttl-carruseles:5s}") Duration ttlCarruseles,
+                                 @Value("${productos.cache.respuestas.ttl-listados:1m}") Duration ttlListados) {
+        this.habilitada = habilitada;
+
+        PathPatternParser parser = PathPatternParser.defaultInstance;
+        this.rutas = List.of(
+                new Ruta(parser.parse("/api/v1/categorias/categorias"), Grupo.CATEGORIAS, ttlCategorias, false),
+                // Los carruseles se eligen al azar: un TTL corto mantiene la variedad entre solicitudes
+                new Ruta(parser.parse("/api/v1/productos/carruseles"), Grupo.PRODUCTOS, ttlCarruseles, false),
+                new Ruta(parser.parse("/api/v1/productos/categoria/{categoriaId}"), Grupo.PRODUCTOS, ttlListados, true)
+        );
+
+        for (Grupo grupo : Grupo.values()) {
+            generaciones.put(grupo, new AtomicLong());
+        }
+
+        this.respuestas = Caffeine.newBuilder()
+                .maximumWeight(tamanioMaximoBytes)
+                .weigher((Clave clave, Entrada entrada) -> entrada.peso())
+                .expireAfter(new Expiry<Clave, Entrada>() {
+                    @Override
+                    public long expireAfterCreate(Clave clave, Entrada entrada, long currentTime) {
+                        return entrada.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Clave clave, Entrada entrada, long currentTime, long currentDuration) {
+                        return entrada.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(Clave clave, Entrada entrada, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, respuestas, "productos.respuestas");
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !habilitada || !HttpMethod.GET.matches(request.getMethod()) || buscarRuta(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Ruta ruta = buscarRuta(request);
+        Clave clave = new Clave(ruta.grupo(), claveSolicitud(request));
+
+        Entrada entrada = respuestas.getIfPresent(clave);
+        if (entrada != null) {
+            responderDesdeCache(request, response, entrada);
+            return;
+        }
+
+        long generacion = generaciones.get(ruta.grupo()).get();
+        ContentCachingResponseWrapper envoltorio = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, envoltorio);
+
+        if (esCacheable(envoltorio)) {
+            Entrada nueva = crearEntrada(envoltorio, ruta);
+            // Si hubo una invalidación mientras se calculaba la respuesta, no se guarda para no publicar datos viejos
+            if (generaciones.get(ruta.grupo()).get() == generacion) {
+                respuestas.put(clave, nueva);
+            }
+            envoltorio.setHeader(HttpHeaders.ETAG, nueva.etag());
+            envoltorio.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            envoltorio.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        envoltorio.copyBodyToResponse();
+    }
+
+    //===============================================================================================================================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        invalidar(Grupo.PRODUCTOS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearProductos(ProductosCreadosEvent evento) {
+        invalidar(Grupo.PRODUCTOS);
+    }
+
+    // Los listados y carruseles guardados incluyen el stock de cada producto
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarStock(StockCambiadoEvent evento) {
+        invalidar(Grupo.PRODUCTOS);
+    }
+
+    // Los carruseles incluyen los nodos de categoría, así que también se invalidan
+    @EventListener
+    public void alCambiarCategorias(CategoriasCambiadasEvent evento) {
+        invalidar(Grupo.CATEGORIAS);
+        invalidar(Grupo.PRODUCTOS);
+    }
+
+    //===============================================================================================================================================
+
+    private void invalidar(Grupo grupo) {
+        generaciones.get(grupo).incrementAndGet();
+        respuestas.asMap().keySet().removeIf(clave -> clave.grupo() == grupo);
+    }
+
+    private Ruta buscarRuta(HttpServletRequest request) {
+        PathContainer ruta = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        for (Ruta candidata : rutas) {
+            if (candidata.patron().matches(ruta)) {
+                if (candidata.soloPrimeraPagina()) {
+                    String pagina = request.getParameter("pagina");
+                    if (pagina != null && !pagina.equals("0")) {
+                        return null;
+                    }
+                }
+                return candidata;
+            }
+        }
+        return null;
+    }
+
+    // Ruta más parámetros ordenados, para que el orden en la URL no genere entradas distintas
+    private static String claveSolicitud(HttpServletRequest request) {
+        StringBuilder clave = new StringBuilder(request.getRequestURI());
+        new TreeMap<>(request.getParameterMap()).forEach((nombre, valores) -> {
+            for (String valor : valores) {
+                clave.append('&').append(nombre).append('=').append(valor);
+            }
+        });
+        return clave.toString();
+    }
+
+    private static boolean esCacheable(ContentCachingResponseWrapper respuesta) {
+        String contentType = respuesta.getContentType();
+        return respuesta.getStatus() == HttpStatus.OK.value()
+                && respuesta.getContentSize() > 0
+                && contentType != null
+                && MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+    }
+
+    private static Entrada crearEntrada(ContentCachingResponseWrapper respuesta, Ruta ruta) throws IOException {
+        byte[] cuerpo = respuesta.getContentAsByteArray();
+
+        // Si el controlador ya fijó un ETag (por ejemplo, la versión del árbol de categorías) se respeta
+        String etag = respuesta.getHeader(HttpHeaders.ETAG);
+        if (etag == null) {
+            etag = "\"" + HexFormat.of().formatHex(sha256(cuerpo), 0, 16) + "\"";
+        }
+
+        ByteBuffer gzip = cuerpo.length >= MINIMO_PARA_GZIP ? fueraDelHeap(comprimir(cuerpo)) : null;
+        return new Entrada(fueraDelHeap(cuerpo), gzip, etag, respuesta.getContentType(), ruta.ttl().toNanos());
+    }
+
+    private static void responderDesdeCache(HttpServletRequest request, HttpServletResponse response, Entrada entrada) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, entrada.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && coincideEtag(ifNoneMatch, entrada.etag())) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean usarGzip = entrada.cuerpoGzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        ByteBuffer cuerpo = usarGzip ? entrada.cuerpoGzip() : entrada.cuerpo();
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(entrada.contentType());
+        if (usarGzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(cuerpo.capacity());
+
+        // duplicate(): cada respuesta recorre el buffer compartido con su propia posición
+        OutputStream salida = response.getOutputStream();
+        Channels.newChannel(salida).write(cuerpo.duplicate());
+        salida.flush();
+    }
+
+    // If-None-Match puede traer varios ETags separados por coma, débiles (W/) o "*"
+    static boolean coincideEtag(String ifNoneMatch, String etag) {
+        String fuerte = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.equals("*") || (valor.startsWith("W/") ? valor.substring(2) : valor).equals(fuerte)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ByteBuffer fueraDelHeap(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private static byte[] comprimir(byte[] bytes) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(bytes);
+        }
+        return salida.toByteArray();
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.smartshop.productos.config;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Exclusión mutua entre réplicas para los procesos programados que no deben ejecutarse en todas a la vez
+ * (cálculos nocturnos, purgas), con los bloqueos consultivos de PostgreSQL.
+ * <p>
+ * El bloqueo es de sesión: se toma con {@code pg_try_advisory_lock} y se libera con {@code pg_advisory_unlock} sobre la
+ * misma conexión, que queda reservada mientras dura la tarea (la tarea usa sus propias conexiones y transacciones).
+ * Si la conexión se corta, PostgreSQL libera el bloqueo solo, así que una réplica caída no deja el proceso trabado.
+ */
+@Component
+public class BloqueoEntreReplicas {
+
+    private static final String SQL_TOMAR = "SELECT pg_try_advisory_lock(hashtext(?))";
+    private static final String SQL_LIBERAR = "SELECT pg_advisory_unlock(hashtext(?))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BloqueoEntreReplicas(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    //===============================================================================================================================================
+
+    /**
+     * Ejecuta la tarea si ninguna otra réplica tiene tomado el bloqueo con ese nombre. No espera: si está tomado
+     * devuelve {@code false} sin ejecutarla. Las excepciones de la tarea se propagan después de liberar el bloqueo.
+     */
+    public boolean ejecutarSiLibre(String nombre, Runnable tarea) {
+        Boolean ejecutada = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            if (!consultar(con, SQL_TOMAR, nombre)) {
+                return false;
+            }
+            try {
+                tarea.run();
+                return true;
+            } finally {
+                consultar(con, SQL_LIBERAR, nombre);
+            }
+        });
+        return Boolean.TRUE.equals(ejecutada);
+    }
+
+    private static boolean consultar(Connection con, String sql, String nombre) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setString(1, nombre);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+}
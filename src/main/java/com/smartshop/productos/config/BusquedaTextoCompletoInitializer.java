@@ -0,0 +1,56 @@
+package com.smartshop.productos.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Prepara la búsqueda de texto completo (columna tsvector, índices GIN y extensiones) al arrancar.
+ * Si el script no puede aplicarse (por ejemplo, sin permisos para crear extensiones), la búsqueda
+ * de texto completo queda deshabilitada y se usa la búsqueda por LIKE.
+ */
+@Component
+@Slf4j
+public class BusquedaTextoCompletoInitializer implements ApplicationRunner {
+
+    private static final String SCRIPT = "db/busqueda-productos.sql";
+
+    private final DataSource dataSource;
+    private final boolean habilitada;
+
+    // Indica si el esquema de búsqueda de texto completo quedó listo
+    private volatile boolean disponible;
+
+    public BusquedaTextoCompletoInitializer(DataSource dataSource,
+                                            @Value("${productos.busqueda.texto-completo.habilitada:true}") boolean habilitada) {
+        this.dataSource = dataSource;
+        this.habilitada = habilitada;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!habilitada) {
+            log.info("Búsqueda de texto completo deshabilitada por configuración; se usará la búsqueda por LIKE.");
+            return;
+        }
+
+        try {
+            new ResourceDatabasePopulator(new ClassPathResource(SCRIPT)).execute(dataSource);
+            disponible = true;
+            log.info("Búsqueda de texto completo preparada.");
+        } catch (DataAccessException e) {
+            log.warn("No se pudo preparar la búsqueda de texto completo; se usará la búsqueda por LIKE.", e);
+        }
+    }
+
+    public boolean isDisponible() {
+        return disponible;
+    }
+}
@@ -0,0 +1,44 @@
+package com.smartshop.productos.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Unifica las etiquetas con nombre repetido y crea el índice único {@code uk_etiquetas_nombre} al arrancar,
+ * en bases creadas antes de que la entidad declarara la restricción. Sin él, el etiquetado automático
+ * ({@code ON CONFLICT (nombre)}) falla.
+ */
+@Component
+@Slf4j
+public class EtiquetasUnicasInitializer implements ApplicationRunner {
+
+    private static final String SCRIPT = "db/etiquetas-unicas.sql";
+
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+
+    public EtiquetasUnicasInitializer(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.dataSource = dataSource;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            // En una transacción: el LOCK del script dura hasta que termina la unificación
+            transactionTemplate.executeWithoutResult(status -> new ResourceDatabasePopulator(new ClassPathResource(SCRIPT)).execute(dataSource));
+            log.info("Restricción de nombres de etiqueta únicos preparada.");
+        } catch (DataAccessException e) {
+            log.error("No se pudo preparar la restricción de nombres de etiqueta únicos; el etiquetado automático puede fallar.", e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.smartshop.productos.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crea los hilos de los ejecutores propios de la aplicación (etiquetado, transmisiones, etc.).
+ * <p>
+ * Con {@code spring.threads.virtual.enabled=true} y Java 21 o superior, Spring Boot atiende las solicitudes y las
+ * tareas programadas con hilos virtuales; esta fábrica hace lo mismo con nuestros ejecutores, para que las llamadas
+ * bloqueantes (JPA, JDBC, {@code HttpClient.send}) no ocupen un hilo de plataforma. En otro caso crea hilos de
+ * plataforma daemon, como hasta ahora. El proyecto compila con Java 17, así que {@code Thread.ofVirtual()} se
+ * resuelve por reflexión una sola vez.
+ */
+@Component
+@Slf4j
+public class FabricaHilos {
+
+    // Thread.ofVirtual() (Java 21); nulo si los hilos virtuales no están activos
+    private final MethodHandle deVirtual;
+    private final MethodHandle nombre;
+    private final MethodHandle fabrica;
+
+    public FabricaHilos(Environment environment) {
+        MethodHandle deVirtual = null;
+        MethodHandle nombre = null;
+        MethodHandle fabrica = null;
+        if (Threading.VIRTUAL.isActive(environment)) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                Class<?> tipoConstructor = Class.forName("java.lang.Thread$Builder$OfVirtual");
+                deVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(tipoConstructor));
+                nombre = lookup.findVirtual(tipoConstructor, "name", MethodType.methodType(tipoConstructor, String.class, long.class));
+                fabrica = lookup.findVirtual(Class.forName("java.lang.Thread$Builder"), "factory", MethodType.methodType(ThreadFactory.class));
+            } catch (Throwable e) {
+                log.warn("No se pudieron crear hilos virtuales; los ejecutores usarán hilos de plataforma", e);
+                deVirtual = null;
+            }
+        }
+        this.deVirtual = deVirtual;
+        this.nombre = nombre;
+        this.fabrica = fabrica;
+        log.info("Ejecutores de la aplicación con hilos {}", usaHilosVirtuales() ? "virtuales" : "de plataforma");
+    }
+
+    //===============================================================================================================================================
+
+    public boolean usaHilosVirtuales() {
+        return deVirtual != null;
+    }
+
+    /**
+     * Devuelve una fábrica de hilos numerados con el prefijo indicado ({@code prefijo-1}, {@code prefijo-2}, ...).
+     */
+    public ThreadFactory crear(String prefijo) {
+        if (usaHilosVirtuales()) {
+            try {
+                // Un constructor nuevo por fábrica: los constructores no son seguros entre hilos, las fábricas sí
+                Object constructor = nombre.invoke(deVirtual.invoke(), prefijo + "-", 1L);
+                return (ThreadFactory) fabrica.invoke(constructor);
+            } catch (Throwable e) {
+                throw new IllegalStateException("No se pudo crear la fábrica de hilos virtuales " + prefijo, e);
+            }
+        }
+
+        AtomicInteger numero = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, prefijo + "-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
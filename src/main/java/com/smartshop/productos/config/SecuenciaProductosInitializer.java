@@ -0,0 +1,41 @@
+package com.smartshop.productos.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Prepara la secuencia {@code productos_seq} al arrancar: incremento de 50 (igual al allocationSize de la entidad)
+ * y valor actual por encima del mayor ID de {@code productos}, que antes se generaba con IDENTITY.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class SecuenciaProductosInitializer implements ApplicationRunner {
+
+    private static final String SCRIPT = "db/secuencia-productos.sql";
+
+    private final DataSource dataSource;
+
+    public SecuenciaProductosInitializer(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            new ResourceDatabasePopulator(new ClassPathResource(SCRIPT)).execute(dataSource);
+            log.info("Secuencia de IDs de productos preparada.");
+        } catch (DataAccessException e) {
+            log.error("No se pudo preparar la secuencia de IDs de productos; las altas pueden fallar por IDs duplicados.", e);
+        }
+    }
+}
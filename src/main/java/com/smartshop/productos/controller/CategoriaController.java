@@ -9,6 +9,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -23,13 +24,20 @@ public class CategoriaController {
     @GetMapping("/categorias")
     @Operation(
             summary = "Listar Categorias",
-            description = "Permite consultar todas las categorias (Padre) y sus atributos"
+            description = "Permite consultar todas las categorias (Padre) y sus atributos. Responde 304 si el cliente envía en If-None-Match la versión vigente"
     )
-    public ResponseEntity<List<CategoriaDTO>> listarCategorias(){
+    public ResponseEntity<List<CategoriaDTO>> listarCategorias(WebRequest webRequest){
 
         log.info("Solicitud recibida para obtener listado de Categorias.");
+
+        // Si el cliente ya tiene la versión vigente, Spring responde 304 sin cuerpo
+        String version = categoriaService.versionCategorias();
+        if (webRequest.checkNotModified(version)) {
+            return null;
+        }
+
         List<CategoriaDTO> categorias = categoriaService.listarCategorias();
 
-        return  ResponseEntity.ok(categorias);
+        return  ResponseEntity.ok().eTag(version).body(categorias);
     }
 }
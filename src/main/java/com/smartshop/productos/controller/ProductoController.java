@@ -1,25 +1,41 @@
 package com.smartshop.productos.controller;
 
 import com.smartshop.productos.dto.CarruselDTO;
+import com.smartshop.productos.dto.FiltroProductos;
+import com.smartshop.productos.dto.PaginaCursorDTO;
 import com.smartshop.productos.dto.ProductoDTO;
 import com.smartshop.productos.dto.ProductoDetalleResponse;
+import com.smartshop.productos.dto.ResultadoCargaDTO;
 import com.smartshop.productos.security.annotations.RequiresAuth;
+import com.smartshop.productos.service.CargaProductosService;
+import com.smartshop.productos.service.DetalleProductoService;
+import com.smartshop.productos.service.EtiquetadoService;
+import com.smartshop.productos.service.ExportacionProductosService;
 import com.smartshop.productos.service.ProductoService;
+import com.smartshop.productos.service.TransmisionProductosService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Controlador REST que expone un endpoint para obtener carruseles de productos agrupados por categoría.
@@ -35,6 +51,11 @@ public class ProductoController {
     // Inyección del servicio ProductoService que contiene la lógica de negocio.
     //private final ProductoService productoService;
     private final ProductoService productoService;
+    private final EtiquetadoService etiquetadoService;
+    private final CargaProductosService cargaProductosService;
+    private final ExportacionProductosService exportacionProductosService;
+    private final TransmisionProductosService transmisionProductosService;
+    private final DetalleProductoService detalleProductoService;
 
 
     //===============================================================================================================================================
@@ -105,16 +126,18 @@ public class ProductoController {
             @RequestParam(defaultValue = "0") @Min(0) int pagina,
             @RequestParam(defaultValue = "5") @Min(1) @Max(100) int tamanio,
             @RequestParam(defaultValue = "nombre") String ordenarPor,
-            @RequestParam(defaultValue = "asc") String direccion
+            @RequestParam(defaultValue = "asc") String direccion,
+            // Si es true y no hay filtros, el total se estima con las estadísticas de PostgreSQL (la respuesta lo indica en totalEstimado)
+            @RequestParam(defaultValue = "false") boolean conteoEstimado
     ) {
         // Registramos en el log los parámetros recibidos para trazabilidad
-        log.info("GET /api/v1/productos/filtrar - nombre={}, categoriaId={}, precioMin={}, precioMax={}, disponibles={}, página={}, tamaño={}, ordenarPor={}, direccion={}",
-                nombre, categoriaId, precioMin, precioMax, disponibles, pagina, tamanio, ordenarPor, direccion);
+        log.info("GET /api/v1/productos/filtrar - nombre={}, categoriaId={}, precioMin={}, precioMax={}, disponibles={}, página={}, tamaño={}, ordenarPor={}, direccion={}, conteoEstimado={}",
+                nombre, categoriaId, precioMin, precioMax, disponibles, pagina, tamanio, ordenarPor, direccion, conteoEstimado);
 
         log.info("Petición para buscar productos con filtros y paginación recibida");
 
         Page<ProductoDTO> resultado = productoService.buscarProductosPaginado(
-                nombre, categoriaId, precioMin, precioMax, disponibles, pagina, tamanio, ordenarPor, direccion
+                nombre, categoriaId, precioMin, precioMax, disponibles, pagina, tamanio, ordenarPor, direccion, conteoEstimado
         );
 
         return ResponseEntity.ok(resultado);
@@ -122,6 +145,183 @@ public class ProductoController {
 
     //===============================================================================================================================================
 
+    @GetMapping(value = "/filtrar/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Búsqueda de productos en streaming (SSE) para scroll infinito",
+            description = "Mismos filtros que /filtrar. Envía un evento 'producto' por fila, en orden de ID, a medida que llegan de la base de datos, " +
+                    "y un evento 'fin' al terminar. No calcula el total; para continuar se usa despuesDeId o el encabezado Last-Event-ID"
+    )
+    public SseEmitter transmitirProductosFiltrados(
+            @RequestParam(required = false) String nombre,
+            @RequestParam(required = false) Long categoriaId,
+            @RequestParam(required = false) BigDecimal precioMin,
+            @RequestParam(required = false) BigDecimal precioMax,
+            @RequestParam(required = false) Boolean disponibles,
+            @RequestParam(required = false) Long despuesDeId,
+            @RequestParam(required = false) @Min(1) Integer limite,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long ultimoEventoId
+    ) {
+        // Al reconectarse, el navegador envía el ID del último evento recibido
+        Long desde = despuesDeId != null ? despuesDeId : ultimoEventoId;
+        log.info("GET /api/v1/productos/filtrar/stream (SSE) - nombre={}, categoriaId={}, precioMin={}, precioMax={}, disponibles={}, despuesDeId={}, limite={}",
+                nombre, categoriaId, precioMin, precioMax, disponibles, desde, limite);
+
+        FiltroProductos filtro = new FiltroProductos(nombre, categoriaId, precioMin, precioMax, disponibles);
+        return transmisionProductosService.transmitirEventos(filtro, desde, limite);
+    }
+
+    @GetMapping(value = "/filtrar/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+            summary = "Búsqueda de productos en streaming (NDJSON) para scroll infinito",
+            description = "Mismos filtros que /filtrar. Responde una línea JSON por producto, en orden de ID, enviadas por bloques a medida que " +
+                    "llegan de la base de datos. No calcula el total; para continuar se usa despuesDeId con el último ID recibido"
+    )
+    public ResponseEntity<StreamingResponseBody> transmitirProductosFiltradosNdjson(
+            @RequestParam(required = false) String nombre,
+            @RequestParam(required = false) Long categoriaId,
+            @RequestParam(required = false) BigDecimal precioMin,
+            @RequestParam(required = false) BigDecimal precioMax,
+            @RequestParam(required = false) Boolean disponibles,
+            @RequestParam(required = false) Long despuesDeId,
+            @RequestParam(required = false) @Min(1) Integer limite
+    ) {
+        log.info("GET /api/v1/productos/filtrar/stream (NDJSON) - nombre={}, categoriaId={}, precioMin={}, precioMax={}, disponibles={}, despuesDeId={}, limite={}",
+                nombre, categoriaId, precioMin, precioMax, disponibles, despuesDeId, limite);
+
+        FiltroProductos filtro = new FiltroProductos(nombre, categoriaId, precioMin, precioMax, disponibles);
+        StreamingResponseBody cuerpo = transmisionProductosService.transmitirNdjson(filtro, despuesDeId, limite);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(cuerpo);
+    }
+
+    //===============================================================================================================================================
+
+    @GetMapping("/exportacion")
+    @Operation(
+            summary = "Exporta el catálogo de productos en NDJSON o CSV",
+            description = "Acepta los mismos filtros que la búsqueda de productos. Las filas se envían a medida que se leen de la base de datos " +
+                    "(memoria constante); si el cliente acepta gzip, la respuesta se comprime"
+    )
+    public ResponseEntity<StreamingResponseBody> exportarProductos(
+            @RequestParam(defaultValue = "ndjson") String formato,
+            @RequestParam(required = false) String nombre,
+            @RequestParam(required = false) Long categoriaId,
+            @RequestParam(required = false) BigDecimal precioMin,
+            @RequestParam(required = false) BigDecimal precioMax,
+            @RequestParam(required = false) Boolean disponibles,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        log.info("GET /api/v1/productos/exportacion - formato={}, nombre={}, categoriaId={}, precioMin={}, precioMax={}, disponibles={}",
+                formato, nombre, categoriaId, precioMin, precioMax, disponibles);
+
+        ExportacionProductosService.Formato formatoExportacion = "csv".equalsIgnoreCase(formato)
+                ? ExportacionProductosService.Formato.CSV
+                : ExportacionProductosService.Formato.NDJSON;
+        FiltroProductos filtro = new FiltroProductos(nombre, categoriaId, precioMin, precioMax, disponibles);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+
+        StreamingResponseBody exportacion = exportacionProductosService.exportar(filtro, formatoExportacion);
+        StreamingResponseBody cuerpo = !gzip ? exportacion : salida -> {
+            GZIPOutputStream comprimida = new GZIPOutputStream(salida, 64 * 1024);
+            exportacion.writeTo(comprimida);
+            comprimida.finish();
+        };
+
+        String extension = formatoExportacion == ExportacionProductosService.Formato.CSV ? "csv" : "ndjson";
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(formatoExportacion == ExportacionProductosService.Formato.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"productos." + extension + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return respuesta.body(cuerpo);
+    }
+
+    //===============================================================================================================================================
+
+    @GetMapping("/buscar")
+    @Operation(
+            summary = "Búsqueda de texto completo de productos",
+            description = "Busca el texto en el nombre y la descripción de los productos, sin distinguir acentos y admitiendo prefijos. Los resultados se ordenan por relevancia."
+    )
+    public ResponseEntity<Page<ProductoDTO>> buscarProductosTextoCompleto(
+            @RequestParam String texto,
+            @RequestParam(required = false) Long categoriaId,
+            @RequestParam(required = false) BigDecimal precioMin,
+            @RequestParam(required = false) BigDecimal precioMax,
+            @RequestParam(required = false) Boolean disponibles,
+            @RequestParam(defaultValue = "0") @Min(0) int pagina,
+            @RequestParam(defaultValue = "5") @Min(1) @Max(100) int tamanio
+    ) {
+        log.info("GET /api/v1/productos/buscar - texto={}, categoriaId={}, precioMin={}, precioMax={}, disponibles={}, página={}, tamaño={}",
+                texto, categoriaId, precioMin, precioMax, disponibles, pagina, tamanio);
+
+        Page<ProductoDTO> resultado = productoService.buscarProductosTextoCompleto(
+                texto, categoriaId, precioMin, precioMax, disponibles, pagina, tamanio);
+
+        return ResponseEntity.ok(resultado);
+    }
+
+    //===============================================================================================================================================
+
+    @GetMapping("/filtrar/cursor")
+    @Operation(
+            summary = "Buscar productos con filtros y paginación por cursor",
+            description = "Igual que /filtrar, pero continúa desde el cursor devuelto en la página anterior en lugar de usar número de página. El total solo se calcula si se pide con incluirTotal=true. " +
+                    "ordenarPor admite id, nombre o precio; otro campo responde 400"
+    )
+    public ResponseEntity<PaginaCursorDTO<ProductoDTO>> buscarProductosPorCursor(
+            @RequestParam(required = false) String nombre,
+            @RequestParam(required = false) Long categoriaId,
+            @RequestParam(required = false) BigDecimal precioMin,
+            @RequestParam(required = false) BigDecimal precioMax,
+            @RequestParam(required = false) Boolean disponibles,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") @Min(1) @Max(100) int tamanio,
+            @RequestParam(defaultValue = "nombre") String ordenarPor,
+            @RequestParam(defaultValue = "asc") String direccion,
+            @RequestParam(defaultValue = "false") boolean incluirTotal
+    ) {
+        log.info("GET /api/v1/productos/filtrar/cursor - nombre={}, categoriaId={}, precioMin={}, precioMax={}, disponibles={}, tamaño={}, ordenarPor={}, direccion={}, incluirTotal={}",
+                nombre, categoriaId, precioMin, precioMax, disponibles, tamanio, ordenarPor, direccion, incluirTotal);
+
+        PaginaCursorDTO<ProductoDTO> resultado = productoService.buscarProductosPorCursor(
+                nombre, categoriaId, precioMin, precioMax, disponibles, cursor, tamanio, ordenarPor, direccion, incluirTotal
+        );
+
+        return ResponseEntity.ok(resultado);
+    }
+
+    //===============================================================================================================================================
+
+    @GetMapping("/pagina/seleccionada/cursor")
+    @Operation(
+            summary = "Listar productos con paginación por cursor",
+            description = "Igual que /pagina/seleccionada, pero continúa desde el cursor devuelto en la página anterior en lugar de usar número de página. " +
+                    "ordenarPor admite id, nombre o precio; otro campo responde 400"
+    )
+    public ResponseEntity<PaginaCursorDTO<ProductoDTO>> listarProductosPorCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(100) int tamanio,
+            @RequestParam(defaultValue = "nombre") String ordenarPor,
+            @RequestParam(defaultValue = "asc") String direccion,
+            @RequestParam(defaultValue = "false") boolean incluirTotal
+    ) {
+        log.info("GET /api/v1/productos/pagina/seleccionada/cursor - tamaño={}, ordenarPor={}, direccion={}, incluirTotal={}",
+                tamanio, ordenarPor, direccion, incluirTotal);
+
+        PaginaCursorDTO<ProductoDTO> productos = productoService.buscarProductosPorCursor(
+                null, null, null, null, null, cursor, tamanio, ordenarPor, direccion, incluirTotal);
+
+        return ResponseEntity.ok(productos);
+    }
+
+    //===============================================================================================================================================
+
     @GetMapping("/categoria/{categoriaId}")
     @Operation(
             summary = "Buscar productos por categoria",
@@ -143,7 +343,8 @@ public class ProductoController {
     @SecurityRequirement(name = "BearerAuth") // Indica que este endpoint requiere el esquema BearerAuth
     @Operation(
             summary = "Consultar detalle del producto y buscar los productos similares",
-            description = "Permite consultar los detalles del producto, registrar el historial y consultar  productos similares"
+            description = "Permite consultar los detalles del producto, registrar el historial y consultar  productos similares. " +
+                    "Si los similares no responden a tiempo, se devuelve el producto con la respuesta marcada como parcial"
     )
     public ResponseEntity<ProductoDetalleResponse> verDetalleProducto(
             @PathVariable Long idProducto,
@@ -157,10 +358,25 @@ public class ProductoController {
 
         log.info("GET /api/v1/productos/{idProducto}/detalle idProducto={}, usuarioId={}, pagina={}, tamanio={}",idProducto, usuarioId, pagina, tamanio );
 
-        ProductoDTO producto = productoService.consultarProductoYRecomendar(idProducto, usuarioId);
-        Page<ProductoDTO> recomendaciones = productoService.recomendarProductosSimilares(idProducto, pagina, tamanio);
+        // El producto se carga una vez; la vista y los similares se resuelven en paralelo (ver DetalleProductoService)
+        return ResponseEntity.ok(detalleProductoService.consultarDetalle(idProducto, usuarioId, pagina, tamanio));
+    }
 
-        return ResponseEntity.ok(new ProductoDetalleResponse(producto, recomendaciones));
+    @RequiresAuth
+    @GetMapping("/vistos-recientes")
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Consulta los últimos productos vistos por el usuario",
+            description = "Devuelve los últimos productos distintos que vio el usuario autenticado, del más reciente al más antiguo"
+    )
+    public ResponseEntity<List<ProductoDTO>> consultarUltimosVistos(
+            @RequestParam(defaultValue = "10") @Min(1) @Max(20) int cantidad,
+            @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        // El usuario sale del token: no se puede consultar el historial de otro
+        Long usuarioId = Long.parseLong(userDetails.getUsername());
+        log.info("GET /api/v1/productos/vistos-recientes usuarioId={}, cantidad={}", usuarioId, cantidad);
+        return ResponseEntity.ok(productoService.consultarUltimosVistos(usuarioId, cantidad));
     }
 
     @GetMapping("/recomendaciones")
@@ -183,11 +399,67 @@ public class ProductoController {
     }
 
 
+    @RequiresAuth
+    @PostMapping(value = "/lote", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Alta masiva de productos",
+            description = "Recibe un arreglo JSON o NDJSON (un producto por línea) de productos a crear. Las filas con error se informan " +
+                    "en la respuesta sin detener la carga, junto con la cantidad de productos creados y el rendimiento obtenido"
+    )
+    public ResponseEntity<ResultadoCargaDTO> cargarProductos(HttpServletRequest request) throws IOException {
+        log.info("POST /api/v1/productos/lote contentType={}", request.getContentType());
+        return ResponseEntity.ok(cargaProductosService.cargarProductos(request.getInputStream()));
+    }
+
     @PostMapping("/{id}/etiquetas/ia")
+    @Operation(
+            summary = "Genera las etiquetas de un producto",
+            description = "Extrae frases clave del nombre y la descripción del producto y las guarda como etiquetas"
+    )
     public ResponseEntity<List<String>> generarEtiquetasIA(@PathVariable Long id) {
+        log.info("POST /api/v1/productos/{}/etiquetas/ia", id);
         List<String> etiquetas = productoService.generarEtiquetasAutomaticas(id);
-        System.out.println("Etiquetas fallido");
         return ResponseEntity.ok(etiquetas);
     }
 
+    @RequiresAuth
+    @PostMapping("/{id}/etiquetas/local")
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Genera las etiquetas de un producto sin servicios externos",
+            description = "Extrae frases clave con TF-IDF/RAKE dentro de la aplicación; las etiquetas se guardan con tipo 'local'. " +
+                    "Responde 503 si el extractor local no está habilitado"
+    )
+    public ResponseEntity<List<String>> generarEtiquetasLocales(@PathVariable Long id) {
+        log.info("POST /api/v1/productos/{}/etiquetas/local", id);
+        return ResponseEntity.ok(productoService.generarEtiquetasLocales(id));
+    }
+
+    @RequiresAuth
+    @PostMapping("/etiquetas/local")
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Etiqueta todo el catálogo sin servicios externos",
+            description = "Ejecuta el extractor local sobre todos los productos en paralelo. Devuelve la cantidad de productos procesados, " +
+                    "o 409 si ya hay un etiquetado del catálogo en curso"
+    )
+    public ResponseEntity<Integer> etiquetarCatalogoLocal() {
+        log.info("POST /api/v1/productos/etiquetas/local");
+        return ResponseEntity.ok(etiquetadoService.etiquetarCatalogoLocalmente());
+    }
+
+    @RequiresAuth
+    @PostMapping("/categoria/{categoriaId}/etiquetas/ia")
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Encola el etiquetado de todos los productos de una categoría",
+            description = "Los productos se etiquetan en segundo plano y en lotes. Devuelve la cantidad de productos encolados"
+    )
+    public ResponseEntity<Integer> etiquetarCategoriaIA(@PathVariable Long categoriaId) {
+        log.info("POST /api/v1/productos/categoria/{}/etiquetas/ia", categoriaId);
+        int encolados = etiquetadoService.encolarCategoria(categoriaId);
+        return ResponseEntity.accepted().body(encolados);
+    }
+
 }
@@ -0,0 +1,144 @@
+package com.smartshop.productos.controller;
+
+import com.smartshop.productos.dto.ReservaStockDTO;
+import com.smartshop.productos.dto.ReservaStockRequest;
+import com.smartshop.productos.security.annotations.RequiresAuth;
+import com.smartshop.productos.service.StockService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controlador REST para las operaciones de stock usadas durante el checkout.
+ */
+@RestController
+@RequestMapping("/api/v1/productos")
+@RequiredArgsConstructor
+@Validated
+@Slf4j
+public class StockController {
+
+    private final StockService stockService;
+
+    //===============================================================================================================================================
+
+    @GetMapping("/{id}/stock")
+    @Operation(
+            summary = "Consultar stock",
+            description = "Devuelve el stock actual del producto (ya descontadas las reservas vigentes)"
+    )
+    public ResponseEntity<Integer> obtenerStock(@PathVariable Long id) {
+        log.info("GET /api/v1/productos/{}/stock", id);
+        return ResponseEntity.ok(stockService.obtenerStockDisponible(id));
+    }
+
+    //===============================================================================================================================================
+
+    @GetMapping("/{id}/stock/disponible")
+    @Operation(
+            summary = "Validar disponibilidad",
+            description = "Indica si el producto está disponible y tiene al menos la cantidad indicada"
+    )
+    public ResponseEntity<Boolean> estaDisponible(@PathVariable Long id,
+                                                  @RequestParam(defaultValue = "1") @Min(1) int cantidad) {
+        log.info("GET /api/v1/productos/{}/stock/disponible cantidad={}", id, cantidad);
+        return ResponseEntity.ok(stockService.estaDisponible(id, cantidad));
+    }
+
+    //===============================================================================================================================================
+
+    @RequiresAuth
+    @PatchMapping("/{id}/stock")
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Ajustar stock",
+            description = "Suma (cantidad positiva) o descuenta (cantidad negativa) stock de forma atómica. Responde 409 si el stock no alcanza"
+    )
+    public ResponseEntity<Integer> ajustarStock(@PathVariable Long id, @RequestParam int cantidad) {
+        log.info("PATCH /api/v1/productos/{}/stock cantidad={}", id, cantidad);
+        return ResponseEntity.ok(stockService.ajustarStock(id, cantidad));
+    }
+
+    //===============================================================================================================================================
+
+    @RequiresAuth
+    @PutMapping("/{id}/stock/fragmentos")
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Fragmentar stock",
+            description = "Reparte el stock del producto en varias filas para soportar muchas ventas concurrentes (por ejemplo, en ventas relámpago)"
+    )
+    public ResponseEntity<Void> fragmentarStock(@PathVariable Long id,
+                                                @RequestParam(defaultValue = "8") @Min(1) @Max(64) int fragmentos) {
+        log.info("PUT /api/v1/productos/{}/stock/fragmentos fragmentos={}", id, fragmentos);
+        stockService.fragmentarStock(id, fragmentos);
+        return ResponseEntity.noContent().build();
+    }
+
+    //===============================================================================================================================================
+
+    @RequiresAuth
+    @DeleteMapping("/{id}/stock/fragmentos")
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Unificar stock",
+            description = "Vuelve a guardar el stock del producto en una sola fila"
+    )
+    public ResponseEntity<Void> desfragmentarStock(@PathVariable Long id) {
+        log.info("DELETE /api/v1/productos/{}/stock/fragmentos", id);
+        stockService.desfragmentarStock(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    //===============================================================================================================================================
+
+    @RequiresAuth
+    @PostMapping("/stock/reservas")
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Reservar stock",
+            description = "Reserva varios productos a la vez (todos o ninguno). La reserva vence si no se confirma a tiempo y el stock se devuelve"
+    )
+    public ResponseEntity<ReservaStockDTO> reservar(@Valid @RequestBody ReservaStockRequest request) {
+        log.info("POST /api/v1/productos/stock/reservas items={}", request.items().size());
+        return ResponseEntity.status(HttpStatus.CREATED).body(stockService.reservar(request.items()));
+    }
+
+    //===============================================================================================================================================
+
+    @RequiresAuth
+    @PostMapping("/stock/reservas/{reservaId}/confirmacion")
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Confirmar reserva",
+            description = "Confirma la reserva; el stock queda descontado definitivamente"
+    )
+    public ResponseEntity<Void> confirmarReserva(@PathVariable String reservaId) {
+        log.info("POST /api/v1/productos/stock/reservas/{}/confirmacion", reservaId);
+        stockService.confirmarReserva(reservaId);
+        return ResponseEntity.noContent().build();
+    }
+
+    //===============================================================================================================================================
+
+    @RequiresAuth
+    @DeleteMapping("/stock/reservas/{reservaId}")
+    @SecurityRequirement(name = "BearerAuth")
+    @Operation(
+            summary = "Liberar reserva",
+            description = "Cancela la reserva y devuelve el stock"
+    )
+    public ResponseEntity<Void> liberarReserva(@PathVariable String reservaId) {
+        log.info("DELETE /api/v1/productos/stock/reservas/{}", reservaId);
+        stockService.liberarReserva(reservaId);
+        return ResponseEntity.noContent().build();
+    }
+}
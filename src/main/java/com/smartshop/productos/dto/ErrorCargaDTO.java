@@ -0,0 +1,8 @@
+package com.smartshop.productos.dto;
+
+// Error de una fila de una carga masiva; la fila se numera desde 1 en el orden en que se recibió
+public record ErrorCargaDTO(
+        long fila,
+        String mensaje
+) {
+}
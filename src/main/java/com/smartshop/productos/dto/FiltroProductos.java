@@ -0,0 +1,32 @@
+package com.smartshop.productos.dto;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+// Conjunto de filtros de la búsqueda de productos.
+// Se usa como clave de caché, por eso se normaliza antes de usarlo (texto en minúsculas y sin espacios, precios sin ceros a la derecha).
+public record FiltroProductos(
+        String nombre,
+        Long categoriaId,
+        BigDecimal precioMin,
+        BigDecimal precioMax,
+        Boolean disponibles
+) {
+
+    // Devuelve una copia normalizada, de modo que filtros equivalentes produzcan la misma clave
+    public FiltroProductos normalizado() {
+        String nombreNormalizado = (nombre == null || nombre.isBlank()) ? null : nombre.trim().toLowerCase(Locale.ROOT);
+        return new FiltroProductos(
+                nombreNormalizado,
+                categoriaId,
+                precioMin == null ? null : precioMin.stripTrailingZeros(),
+                precioMax == null ? null : precioMax.stripTrailingZeros(),
+                disponibles
+        );
+    }
+
+    // Indica si no se aplicó ningún filtro (listado completo del catálogo)
+    public boolean sinFiltros() {
+        return (nombre == null || nombre.isBlank()) && categoriaId == null && precioMin == null && precioMax == null && disponibles == null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.smartshop.productos.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+// Producto y cantidad dentro de una reserva de stock
+public record ItemReservaDTO(
+        @NotNull(message = "El id del producto es obligatorio")
+        Long productoId,
+        @NotNull(message = "La cantidad es obligatoria")
+        @Min(value = 1, message = "La cantidad debe ser mayor que cero")
+        Integer cantidad
+) {
+}
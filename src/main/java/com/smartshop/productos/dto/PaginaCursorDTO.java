@@ -0,0 +1,14 @@
+package com.smartshop.productos.dto;
+
+import java.util.List;
+
+// Página de resultados de la paginación por cursor.
+// siguienteCursor es null cuando no hay más resultados; total solo se informa si el cliente lo solicita.
+public record PaginaCursorDTO<T>(
+        List<T> contenido,
+        int tamanio,
+        boolean hayMas,
+        String siguienteCursor,
+        Long total
+) {
+}
@@ -0,0 +1,21 @@
+package com.smartshop.productos.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+// Página de resultados que además indica si el total de elementos es exacto o una estimación del planificador de PostgreSQL.
+public class PaginaProductos<T> extends PageImpl<T> {
+
+    private final boolean totalEstimado;
+
+    public PaginaProductos(List<T> content, Pageable pageable, long total, boolean totalEstimado) {
+        super(content, pageable, total);
+        this.totalEstimado = totalEstimado;
+    }
+
+    public boolean isTotalEstimado() {
+        return totalEstimado;
+    }
+}
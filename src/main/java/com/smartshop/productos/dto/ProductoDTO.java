@@ -104,4 +104,20 @@ public class ProductoDTO {
     public void setImagenUrl(String imagenUrl) {
         this.imagenUrl = imagenUrl;
     }
+
+    // Copia campo a campo; el DTO es mutable y las cachés e índices no deben entregar sus propias instancias
+    public ProductoDTO copia() {
+        return ProductoDTO.builder()
+                .id(id)
+                .nombre(nombre)
+                .descripcion(descripcion)
+                .imagenUrl(imagenUrl)
+                .precio(precio)
+                .stock(stock)
+                .vecesVisto(vecesVisto)
+                .disponible(disponible)
+                .nombreCategoria(nombreCategoria)
+                .fechaCreacion(fechaCreacion)
+                .build();
+    }
 }
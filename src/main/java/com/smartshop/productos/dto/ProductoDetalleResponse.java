@@ -4,9 +4,17 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.data.domain.Page;
 
+import java.util.List;
+
 @Data
 @AllArgsConstructor
 public class ProductoDetalleResponse {
     private ProductoDTO producto;
     private Page<ProductoDTO> recomendaciones;
-}
\ No newline at end of file
+    // Partes de la respuesta que no se completaron a tiempo o fallaron (p. ej. "recomendaciones"); vacía si está completa
+    private List<String> seccionesOmitidas;
+
+    public boolean isParcial() {
+        return !seccionesOmitidas.isEmpty();
+    }
+}
@@ -0,0 +1,12 @@
+package com.smartshop.productos.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Reserva creada; debe confirmarse antes de expiraEn o el stock se devuelve automáticamente
+public record ReservaStockDTO(
+        String id,
+        List<ItemReservaDTO> items,
+        LocalDateTime expiraEn
+) {
+}
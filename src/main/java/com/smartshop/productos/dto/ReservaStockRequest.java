@@ -0,0 +1,13 @@
+package com.smartshop.productos.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+// Solicitud de reserva de varios productos; se reservan todos o ninguno
+public record ReservaStockRequest(
+        @NotEmpty(message = "La reserva debe incluir al menos un producto")
+        List<@Valid ItemReservaDTO> items
+) {
+}
@@ -0,0 +1,14 @@
+package com.smartshop.productos.dto;
+
+import java.util.List;
+
+// Resumen de una carga masiva de productos: filas recibidas, creadas y con error, y rendimiento obtenido
+public record ResultadoCargaDTO(
+        long recibidos,
+        long creados,
+        long conError,
+        List<ErrorCargaDTO> errores,
+        long duracionMs,
+        double productosPorSegundo
+) {
+}
@@ -0,0 +1,33 @@
+package com.smartshop.productos.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Productos vistos junto con un producto en las mismas sesiones de navegación ("quienes vieron esto también vieron").
+// Una fila por producto con los K vecinos ya ordenados de mayor a menor puntaje; la escribe el cálculo periódico de covistas.
+@Entity
+@Table(name = "producto_covistas")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class CovistaProducto {
+
+    @Id
+    @Column(name = "producto_id")
+    private Long productoId;
+
+    @Column(nullable = false, columnDefinition = "bigint[]")
+    private Long[] vecinos;
+
+    @Column(nullable = false, columnDefinition = "real[]")
+    private Float[] puntajes;
+
+    @Column(name = "fecha_calculo", nullable = false)
+    private LocalDateTime fechaCalculo;
+}
@@ -6,7 +6,8 @@ import lombok.*;
 import java.util.Set;
 
 @Entity
-@Table(name = "etiquetas")
+// Nombre único: el etiquetado automático inserta con ON CONFLICT (nombre)
+@Table(name = "etiquetas", uniqueConstraints = @UniqueConstraint(name = "uk_etiquetas_nombre", columnNames = "nombre"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -17,6 +18,7 @@ public class Etiqueta {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(nullable = false)
     private String nombre;
 
     private String tipo; // Ej: "dinámica", "estática", "ia", etc.
@@ -9,7 +9,11 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "historial_navegacion")
+// (id_usuario, fecha DESC): últimas vistas de un usuario sin ordenar todo su historial; (fecha): purga por retención
+@Table(name = "historial_navegacion", indexes = {
+        @Index(name = "idx_historial_usuario_fecha", columnList = "id_usuario, fecha DESC"),
+        @Index(name = "idx_historial_fecha", columnList = "fecha")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -17,8 +17,11 @@ import java.util.Set;
 @Data
 public class Producto {
 
+    // Secuencia con asignación en bloques de 50: Hibernate reserva los IDs en memoria y puede agrupar los INSERT en lotes JDBC
+    // (con IDENTITY cada INSERT debe ejecutarse solo para conocer su ID). Ver SecuenciaProductosInitializer.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "productos_seq")
+    @SequenceGenerator(name = "productos_seq", sequenceName = "productos_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -40,6 +43,10 @@ public class Producto {
     @Column(nullable = true)
     private boolean disponible; // NECESARIO para filtros y disponibilidad
 
+    // Si es true, el stock real está repartido en stock_fragmentos y "stock" es una copia sincronizada periódicamente
+    @Column(name = "stock_fragmentado")
+    private Boolean stockFragmentado;
+
     //private String categoria;
 
     @Column(name = "fecha_creacion", updatable = false)
@@ -130,6 +137,14 @@ public class Producto {
         this.disponible = disponible;
     }
 
+    public Boolean getStockFragmentado() {
+        return stockFragmentado;
+    }
+
+    public void setStockFragmentado(Boolean stockFragmentado) {
+        this.stockFragmentado = stockFragmentado;
+    }
+
     public LocalDateTime getFechaCreacion() {
         return fechaCreacion;
     }
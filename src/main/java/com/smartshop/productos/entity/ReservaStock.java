@@ -0,0 +1,36 @@
+package com.smartshop.productos.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Reserva temporal de stock. El stock se descuenta al reservar y se devuelve si la reserva se libera o vence sin confirmarse.
+@Entity
+@Table(name = "reservas_stock", indexes = @Index(name = "idx_reservas_stock_expira_en", columnList = "expira_en"))
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class ReservaStock {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "expira_en", nullable = false)
+    private LocalDateTime expiraEn;
+
+    // Confirmar o liberar borra los ítems por reserva_id, y el borrado de la reserva verifica la FK sobre esta columna
+    @ElementCollection
+    @CollectionTable(name = "reservas_stock_items", joinColumns = @JoinColumn(name = "reserva_id"),
+            indexes = @Index(name = "idx_reservas_stock_items_reserva", columnList = "reserva_id"))
+    private List<ReservaStockItem> items;
+}
@@ -0,0 +1,32 @@
+package com.smartshop.productos.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Porción del stock de un producto con stock fragmentado. Cada descuento toma un fragmento al azar,
+// de modo que las actualizaciones concurrentes se reparten entre varias filas en vez de bloquear una sola.
+@Entity
+@Table(name = "stock_fragmentos",
+        uniqueConstraints = @UniqueConstraint(name = "uk_stock_fragmentos_producto_fragmento", columnNames = {"producto_id", "fragmento"}))
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class StockFragmento {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Column(nullable = false)
+    private Integer fragmento;
+
+    @Column(nullable = false)
+    private Integer stock;
+}
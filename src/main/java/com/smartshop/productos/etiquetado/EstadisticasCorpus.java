@@ -0,0 +1,188 @@
+package com.smartshop.productos.etiquetado;
+
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import com.smartshop.productos.event.ProductosCreadosEvent;
+import com.smartshop.productos.projection.ProductoTextoFila;
+import com.smartshop.productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Frecuencia de documento de cada término en el texto (nombre + descripción) de los productos, usada por el
+ * {@link ExtractorEtiquetasLocal} para ponderar las palabras con IDF.
+ * <p>
+ * Se calcula en paralelo al arrancar y luego se mantiene de forma incremental: los productos modificados se
+ * encolan al confirmarse el cambio y se aplican periódicamente restando sus términos anteriores y sumando los nuevos.
+ * <p>
+ * Solo existe si el extractor local está en uso (es el de la cola o {@code productos.etiquetas.local.habilitado=true}):
+ * recorrer y tokenizar el catálogo no tiene sentido si nadie va a pedir etiquetas locales.
+ */
+@Component
+@ConditionalOnExpression("'${productos.etiquetas.extractor:huggingface}' == 'local' or ${productos.etiquetas.local.habilitado:false}")
+@Slf4j
+public class EstadisticasCorpus {
+
+    private final ProductoRepository productoRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Términos distintos de cada producto, para poder descontarlos cuando el producto cambia
+    private final Map<Long, String[]> terminosPorProducto = new ConcurrentHashMap<>();
+    // Cantidad de productos que contienen cada término
+    private final Map<String, AtomicInteger> frecuencias = new ConcurrentHashMap<>();
+
+    private final ConcurrentLinkedQueue<Long> pendientes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean reconstruccionPendiente = new AtomicBoolean(false);
+    // Serializa la reconstrucción y las actualizaciones incrementales
+    private final ReentrantLock actualizacionLock = new ReentrantLock();
+    private volatile boolean listo;
+
+    public EstadisticasCorpus(ProductoRepository productoRepository,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.productoRepository = productoRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+
+        Gauge.builder("productos.etiquetas.corpus.terminos", frecuencias, Map::size)
+                .description("Términos distintos del corpus usado por el extractor local de etiquetas")
+                .register(meterRegistry);
+    }
+
+    //===============================================================================================================================================
+
+    // Peso IDF suavizado del término: los términos que aparecen en pocos productos pesan más
+    public double idf(String termino) {
+        AtomicInteger frecuencia = frecuencias.get(termino);
+        int documentos = terminosPorProducto.size();
+        return Math.log((documentos + 1.0) / ((frecuencia == null ? 0 : frecuencia.get()) + 1.0)) + 1.0;
+    }
+
+    public boolean estaListo() {
+        return listo;
+    }
+
+    //===============================================================================================================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        reconstruir();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        // El corpus solo usa nombre y descripción: el propio etiquetado no lo modifica
+        if (evento.soloEtiquetas()) {
+            return;
+        }
+        if (evento.esCatalogoCompleto()) {
+            reconstruccionPendiente.set(true);
+        } else {
+            pendientes.add(evento.productoId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearProductos(ProductosCreadosEvent evento) {
+        pendientes.addAll(evento.productoIds());
+    }
+
+    @Scheduled(fixedDelayString = "${productos.etiquetas.local.actualizacion-ms:5000}")
+    public void aplicarCambiosPendientes() {
+        if (!listo) {
+            return;
+        }
+        try {
+            if (reconstruccionPendiente.getAndSet(false)) {
+                pendientes.clear();
+                reconstruir();
+                return;
+            }
+
+            Set<Long> ids = new HashSet<>();
+            Long id;
+            while ((id = pendientes.poll()) != null) {
+                ids.add(id);
+            }
+            if (!ids.isEmpty()) {
+                actualizar(ids);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error al actualizar las estadísticas del corpus de etiquetas", e);
+        }
+    }
+
+    //===============================================================================================================================================
+
+    private void reconstruir() {
+        long inicio = System.nanoTime();
+
+        actualizacionLock.lock();
+        try {
+            List<ProductoTextoFila> filas = transactionTemplate.execute(status -> productoRepository.findTodosTextos());
+            terminosPorProducto.clear();
+            frecuencias.clear();
+            // La tokenización es lo costoso: se reparte entre todos los núcleos (fork-join del pool común)
+            filas.parallelStream().forEach(this::agregar);
+            listo = true;
+        } catch (RuntimeException e) {
+            log.error("No se pudieron calcular las estadísticas del corpus de etiquetas", e);
+            return;
+        } finally {
+            actualizacionLock.unlock();
+        }
+
+        log.info("Corpus de etiquetas calculado: {} productos, {} términos en {} ms.",
+                terminosPorProducto.size(), frecuencias.size(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private void actualizar(Set<Long> productoIds) {
+        List<ProductoTextoFila> filas = transactionTemplate.execute(status -> productoRepository.findTextosByIdIn(productoIds));
+
+        actualizacionLock.lock();
+        try {
+            // Se descuentan los términos anteriores; los productos que ya no existen no se vuelven a agregar
+            productoIds.forEach(this::quitar);
+            filas.forEach(this::agregar);
+        } finally {
+            actualizacionLock.unlock();
+        }
+    }
+
+    private void agregar(ProductoTextoFila fila) {
+        Set<String> terminos = ExtractorEtiquetasLocal.terminos(fila.getNombre() + ". " + (fila.getDescripcion() == null ? "" : fila.getDescripcion()));
+        String[] distintos = terminos.toArray(String[]::new);
+        for (String termino : distintos) {
+            frecuencias.computeIfAbsent(termino, t -> new AtomicInteger()).incrementAndGet();
+        }
+        terminosPorProducto.put(fila.getId(), distintos);
+    }
+
+    private void quitar(Long productoId) {
+        String[] anteriores = terminosPorProducto.remove(productoId);
+        if (anteriores == null) {
+            return;
+        }
+        for (String termino : anteriores) {
+            frecuencias.computeIfPresent(termino, (t, frecuencia) -> frecuencia.decrementAndGet() <= 0 ? null : frecuencia);
+        }
+    }
+}
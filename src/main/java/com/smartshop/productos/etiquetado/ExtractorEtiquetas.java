@@ -0,0 +1,19 @@
+package com.smartshop.productos.etiquetado;
+
+import java.util.List;
+
+/**
+ * Extrae etiquetas (frases clave) a partir del texto de los productos.
+ * <p>
+ * Trabaja por lotes: recibe varios textos y devuelve una lista de etiquetas por texto, en el mismo orden.
+ * Cada implementación se registra con su nombre de bean; la que usa la cola de etiquetado se elige con la
+ * propiedad {@code productos.etiquetas.extractor}.
+ */
+public interface ExtractorEtiquetas {
+
+    // Devuelve las etiquetas de cada texto; la lista resultante tiene el mismo tamaño y orden que la recibida
+    List<List<String>> extraer(List<String> textos);
+
+    // Valor que se guarda en la columna "tipo" de las etiquetas creadas por este extractor
+    String tipo();
+}
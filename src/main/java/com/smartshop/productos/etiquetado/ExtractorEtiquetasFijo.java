@@ -0,0 +1,45 @@
+package com.smartshop.productos.etiquetado;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Extractor determinista sin llamadas externas, para pruebas y entornos sin acceso a HuggingFace.
+ * <p>
+ * Devuelve las primeras palabras distintas del texto con al menos {@value #LONGITUD_MINIMA} letras, en minúsculas.
+ * Se usa con {@code productos.etiquetas.extractor=fijo}.
+ */
+@Component("fijo")
+public class ExtractorEtiquetasFijo implements ExtractorEtiquetas {
+
+    private static final int LONGITUD_MINIMA = 4;
+    private static final int MAXIMO_ETIQUETAS = 5;
+
+    @Override
+    public List<List<String>> extraer(List<String> textos) {
+        List<List<String>> resultado = new ArrayList<>(textos.size());
+        for (String texto : textos) {
+            Set<String> palabras = new LinkedHashSet<>();
+            for (String palabra : texto.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (palabra.length() >= LONGITUD_MINIMA) {
+                    palabras.add(palabra);
+                    if (palabras.size() == MAXIMO_ETIQUETAS) {
+                        break;
+                    }
+                }
+            }
+            resultado.add(List.copyOf(palabras));
+        }
+        return resultado;
+    }
+
+    @Override
+    public String tipo() {
+        return "prueba";
+    }
+}
@@ -0,0 +1,138 @@
+package com.smartshop.productos.etiquetado;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Extractor que usa el modelo de frases clave de HuggingFace (Inference API).
+ * <p>
+ * Envía todos los textos del lote en una sola solicitud ({@code "inputs": [...]}) con un {@link HttpClient}
+ * compartido, que reutiliza las conexiones entre lotes.
+ */
+@Component("huggingface")
+@Slf4j
+public class ExtractorEtiquetasHuggingFace implements ExtractorEtiquetas {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final URI url;
+    private final String token;
+    private final Duration timeout;
+
+    public ExtractorEtiquetasHuggingFace(ObjectMapper objectMapper,
+                                         @Value("${productos.etiquetas.huggingface.url:https://api-inference.huggingface.co/models/ml6team/keyphrase-extraction-kbir-openkp}") String url,
+                                         @Value("${productos.etiquetas.huggingface.token:}") String token,
+                                         @Value("${productos.etiquetas.huggingface.timeout:30s}") Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.url = URI.create(url);
+        this.token = token;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public List<List<String>> extraer(List<String> textos) {
+        if (textos.isEmpty()) {
+            return List.of();
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(url)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(cuerpo(textos)));
+        if (!token.isBlank()) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al llamar HuggingFace", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Llamada a HuggingFace interrumpida", e);
+        }
+
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Error al llamar HuggingFace: " + response.statusCode() + " - " + response.body());
+        }
+        log.debug("Respuesta de HuggingFace para {} textos: {}", textos.size(), response.body());
+
+        return leerRespuesta(response.body(), textos.size());
+    }
+
+    @Override
+    public String tipo() {
+        return "ia";
+    }
+
+    //===============================================================================================================================================
+
+    private String cuerpo(List<String> textos) {
+        try {
+            // Jackson escapa comillas y saltos de línea de las descripciones
+            return objectMapper.writeValueAsString(Map.of("inputs", textos));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la solicitud a HuggingFace", e);
+        }
+    }
+
+    private List<List<String>> leerRespuesta(String cuerpo, int cantidadTextos) {
+        JsonNode raiz;
+        try {
+            raiz = objectMapper.readTree(cuerpo);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Respuesta de HuggingFace no válida", e);
+        }
+        if (!raiz.isArray()) {
+            throw new IllegalStateException("Respuesta de HuggingFace no válida: " + cuerpo);
+        }
+
+        // Con un solo texto el modelo puede devolver directamente la lista de entidades, sin la lista externa
+        boolean listaUnica = cantidadTextos == 1 && (raiz.isEmpty() || raiz.get(0).isObject());
+        if (!listaUnica && raiz.size() != cantidadTextos) {
+            throw new IllegalStateException("HuggingFace devolvió " + raiz.size() + " resultados para " + cantidadTextos + " textos");
+        }
+
+        List<List<String>> resultado = new ArrayList<>(cantidadTextos);
+        if (listaUnica) {
+            resultado.add(palabras(raiz));
+        } else {
+            raiz.forEach(entidades -> resultado.add(palabras(entidades)));
+        }
+        return resultado;
+    }
+
+    private static List<String> palabras(JsonNode entidades) {
+        Set<String> palabras = new LinkedHashSet<>();
+        for (JsonNode entidad : entidades) {
+            String palabra = entidad.path("word").asText("").trim();
+            if (!palabra.isEmpty()) {
+                palabras.add(palabra);
+            }
+        }
+        return List.copyOf(palabras);
+    }
+}
@@ -0,0 +1,192 @@
+package com.smartshop.productos.etiquetado;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Pattern;
+
+/**
+ * Extractor de frases clave que se ejecuta dentro de la JVM, sin llamadas externas.
+ * <p>
+ * Usa RAKE: el texto se corta en frases candidatas en cada signo de puntuación o palabra vacía, y cada palabra
+ * recibe el puntaje grado/frecuencia dentro del texto. Ese puntaje se multiplica por el IDF de la palabra en el
+ * catálogo ({@link EstadisticasCorpus}), de modo que las palabras comunes a muchos productos pierden peso.
+ * <p>
+ * Los lotes grandes se reparten entre los núcleos con fork-join. Las etiquetas se guardan con tipo {@code "local"}.
+ * Se registra con las mismas condiciones que {@link EstadisticasCorpus}.
+ */
+@Component("local")
+@ConditionalOnExpression("'${productos.etiquetas.extractor:huggingface}' == 'local' or ${productos.etiquetas.local.habilitado:false}")
+public class ExtractorEtiquetasLocal implements ExtractorEtiquetas {
+
+    private static final Pattern SEPARADOR_FRASES = Pattern.compile("[\\p{Punct}¿¡«»“”…]+|\\s[-–—]\\s");
+    private static final Pattern SEPARADOR_PALABRAS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MAXIMO_PALABRAS_POR_FRASE = 3;
+    // Textos por tarea a partir de los cuales ya no conviene seguir dividiendo el trabajo
+    private static final int UMBRAL_DIVISION = 256;
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "algo", "ante", "antes", "como", "con", "contra", "cual", "cuando", "de", "del", "desde", "donde",
+            "durante", "e", "el", "ella", "ellas", "ellos", "en", "entre", "era", "es", "esa", "ese", "eso", "esta",
+            "este", "esto", "hasta", "la", "las", "le", "les", "lo", "los", "mas", "más", "me", "mi", "muy", "ni", "no",
+            "o", "para", "pero", "por", "que", "qué", "se", "sea", "segun", "según", "ser", "si", "sí", "sin", "sobre",
+            "su", "sus", "también", "tiene", "todo", "todos", "tu", "u", "un", "una", "uno", "unos", "unas", "y", "ya",
+            "and", "for", "in", "of", "on", "or", "the", "to", "with");
+
+    private final EstadisticasCorpus corpus;
+    private final int maximoEtiquetas;
+
+    public ExtractorEtiquetasLocal(EstadisticasCorpus corpus,
+                                   @Value("${productos.etiquetas.local.maximo-etiquetas:5}") int maximoEtiquetas) {
+        this.corpus = corpus;
+        this.maximoEtiquetas = maximoEtiquetas;
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public List<List<String>> extraer(List<String> textos) {
+        List<List<String>> resultado = new ArrayList<>(Collections.nCopies(textos.size(), List.of()));
+        if (textos.size() <= UMBRAL_DIVISION) {
+            for (int i = 0; i < textos.size(); i++) {
+                resultado.set(i, extraer(textos.get(i)));
+            }
+        } else {
+            // Cada tarea escribe posiciones distintas de la lista (set no modifica su estructura)
+            ForkJoinPool.commonPool().invoke(new Extraccion(textos, resultado, 0, textos.size()));
+        }
+        return resultado;
+    }
+
+    @Override
+    public String tipo() {
+        return "local";
+    }
+
+    //===============================================================================================================================================
+
+    // Términos distintos del texto que cuentan para las estadísticas del corpus
+    static Set<String> terminos(String texto) {
+        Set<String> terminos = new LinkedHashSet<>();
+        for (List<String> frase : frasesCandidatas(texto)) {
+            terminos.addAll(frase);
+        }
+        return terminos;
+    }
+
+    // Secuencias de palabras en minúsculas delimitadas por puntuación o palabras vacías
+    static List<List<String>> frasesCandidatas(String texto) {
+        List<List<String>> frases = new ArrayList<>();
+        if (texto == null || texto.isBlank()) {
+            return frases;
+        }
+        for (String fragmento : SEPARADOR_FRASES.split(texto.toLowerCase(Locale.ROOT))) {
+            List<String> actual = new ArrayList<>(MAXIMO_PALABRAS_POR_FRASE);
+            for (String palabra : SEPARADOR_PALABRAS.split(fragmento)) {
+                boolean corta = palabra.length() < 2 || PALABRAS_VACIAS.contains(palabra) || esNumero(palabra);
+                if (corta || actual.size() == MAXIMO_PALABRAS_POR_FRASE) {
+                    if (!actual.isEmpty()) {
+                        frases.add(actual);
+                        actual = new ArrayList<>(MAXIMO_PALABRAS_POR_FRASE);
+                    }
+                    if (corta) {
+                        continue;
+                    }
+                }
+                actual.add(palabra);
+            }
+            if (!actual.isEmpty()) {
+                frases.add(actual);
+            }
+        }
+        return frases;
+    }
+
+    //===============================================================================================================================================
+
+    private List<String> extraer(String texto) {
+        List<List<String>> frases = frasesCandidatas(texto);
+        if (frases.isEmpty()) {
+            return List.of();
+        }
+
+        // RAKE: grado = suma de las longitudes de las frases en que aparece la palabra
+        Map<String, Integer> frecuencia = new HashMap<>();
+        Map<String, Integer> grado = new HashMap<>();
+        for (List<String> frase : frases) {
+            for (String palabra : frase) {
+                frecuencia.merge(palabra, 1, Integer::sum);
+                grado.merge(palabra, frase.size(), Integer::sum);
+            }
+        }
+
+        Map<String, Double> puntajePalabra = new HashMap<>();
+        frecuencia.forEach((palabra, veces) ->
+                puntajePalabra.put(palabra, grado.get(palabra) / (double) veces * corpus.idf(palabra)));
+
+        Map<String, Double> puntajeFrase = new LinkedHashMap<>();
+        for (List<String> frase : frases) {
+            double puntaje = 0;
+            for (String palabra : frase) {
+                puntaje += puntajePalabra.get(palabra);
+            }
+            puntajeFrase.merge(String.join(" ", frase), puntaje, Math::max);
+        }
+
+        return puntajeFrase.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(maximoEtiquetas)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static boolean esNumero(String palabra) {
+        for (int i = 0; i < palabra.length(); i++) {
+            if (!Character.isDigit(palabra.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Divide el rango de textos a la mitad hasta llegar al umbral y extrae cada parte en un hilo del pool
+    private final class Extraccion extends RecursiveAction {
+
+        private final List<String> textos;
+        private final List<List<String>> resultado;
+        private final int desde;
+        private final int hasta;
+
+        private Extraccion(List<String> textos, List<List<String>> resultado, int desde, int hasta) {
+            this.textos = textos;
+            this.resultado = resultado;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde <= UMBRAL_DIVISION) {
+                for (int i = desde; i < hasta; i++) {
+                    resultado.set(i, extraer(textos.get(i)));
+                }
+                return;
+            }
+            int medio = (desde + hasta) >>> 1;
+            invokeAll(new Extraccion(textos, resultado, desde, medio), new Extraccion(textos, resultado, medio, hasta));
+        }
+    }
+}
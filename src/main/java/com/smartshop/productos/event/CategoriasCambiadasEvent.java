@@ -0,0 +1,7 @@
+package com.smartshop.productos.event;
+
+/**
+ * Evento publicado cuando el árbol de categorías en memoria cambia de versión.
+ */
+public record CategoriasCambiadasEvent(String version) {
+}
@@ -0,0 +1,28 @@
+package com.smartshop.productos.event;
+
+/**
+ * Evento publicado cuando un producto se crea, actualiza o elimina.
+ * Si productoId es null, el cambio afecta a todo el catálogo (por ejemplo, una carga masiva).
+ * Si soloEtiquetas es true, cambiaron únicamente las etiquetas: nombre, descripción, precio y stock siguen iguales.
+ */
+public record ProductoCambiadoEvent(Long productoId, boolean soloEtiquetas) {
+
+    public ProductoCambiadoEvent(Long productoId) {
+        this(productoId, false);
+    }
+
+    // Crea un evento que indica que cambió el catálogo completo
+    public static ProductoCambiadoEvent catalogo() {
+        return new ProductoCambiadoEvent(null);
+    }
+
+    // Crea un evento que indica que solo cambiaron las etiquetas del producto (o de todo el catálogo si productoId es null)
+    public static ProductoCambiadoEvent etiquetas(Long productoId) {
+        return new ProductoCambiadoEvent(productoId, true);
+    }
+
+    // Indica si el evento no se refiere a un producto concreto sino a todo el catálogo
+    public boolean esCatalogoCompleto() {
+        return productoId == null;
+    }
+}
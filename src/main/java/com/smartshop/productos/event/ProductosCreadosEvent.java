@@ -0,0 +1,12 @@
+package com.smartshop.productos.event;
+
+import java.util.List;
+
+/**
+ * Evento publicado cuando una carga masiva confirma un bloque de productos nuevos.
+ * Reemplaza a un {@link ProductoCambiadoEvent} por fila: los listados y conteos se invalidan una vez por bloque y los
+ * índices en memoria agregan solo estos IDs en vez de reconstruirse. La caché de productos no lo escucha, porque no
+ * guarda productos inexistentes.
+ */
+public record ProductosCreadosEvent(List<Long> productoIds) {
+}
@@ -0,0 +1,9 @@
+package com.smartshop.productos.event;
+
+/**
+ * Evento publicado cuando cambia el stock de un producto sin cambiar su disponibilidad.
+ * Solo lo escuchan las cachés que guardan el stock del producto; si la disponibilidad cambia se publica
+ * {@link ProductoCambiadoEvent}, que además invalida listados y conteos.
+ */
+public record StockCambiadoEvent(Long productoId) {
+}
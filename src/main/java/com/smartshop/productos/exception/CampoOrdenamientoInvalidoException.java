@@ -0,0 +1,12 @@
+package com.smartshop.productos.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//Se lanza cuando se pide ordenar por un campo que la consulta no admite (error del cliente)
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class CampoOrdenamientoInvalidoException extends RuntimeException {
+    public CampoOrdenamientoInvalidoException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,12 @@
+package com.smartshop.productos.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//Se lanza cuando el cursor de paginación está mal formado o no corresponde al ordenamiento solicitado (error del cliente)
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class CursorInvalidoException extends RuntimeException {
+    public CursorInvalidoException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,12 @@
+package com.smartshop.productos.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//Se lanza cuando se pide etiquetar todo el catálogo mientras otra solicitud lo está etiquetando
+@ResponseStatus(HttpStatus.CONFLICT)
+public class EtiquetadoEnCursoException extends RuntimeException {
+    public EtiquetadoEnCursoException(String mensaje) {
+        super(mensaje);
+    }
+}
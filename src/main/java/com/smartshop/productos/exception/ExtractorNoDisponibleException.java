@@ -0,0 +1,12 @@
+package com.smartshop.productos.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//Se lanza cuando se pide un extractor de etiquetas que no está habilitado en la configuración
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ExtractorNoDisponibleException extends RuntimeException {
+    public ExtractorNoDisponibleException(String mensaje) {
+        super(mensaje);
+    }
+}
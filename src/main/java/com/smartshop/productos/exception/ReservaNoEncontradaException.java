@@ -0,0 +1,12 @@
+package com.smartshop.productos.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//Se lanza cuando la reserva no existe o ya fue confirmada, liberada o vencida
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ReservaNoEncontradaException extends RuntimeException {
+    public ReservaNoEncontradaException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,12 @@
+package com.smartshop.productos.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//Se lanza cuando un descuento de stock dejaría el stock de un producto por debajo de cero
+@ResponseStatus(HttpStatus.CONFLICT)
+public class StockInsuficienteException extends RuntimeException {
+    public StockInsuficienteException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -4,6 +4,7 @@ import com.smartshop.productos.dto.ProductoDTO;
 import com.smartshop.productos.dto.ProductoCreateDTO;
 import com.smartshop.productos.dto.ProductoUpdateDTO;
 import com.smartshop.productos.entity.Producto;
+import com.smartshop.productos.projection.ProductoCarruselFila;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
@@ -26,13 +27,23 @@ public interface ProductoMapper {
     @Mapping(source = "imagenUrl", target = "imagenUrl")
     ProductoDTO toDto(Producto producto);
 
+    //Igual que toDto pero sin tocar la categoría (evita inicializar el proxy LAZY); el nombre se completa desde el registro de categorías.
+    @Mapping(target = "nombreCategoria", ignore = true)
+    ProductoDTO toDtoSinCategoria(Producto producto);
+
+    //Mapea una fila de la consulta de carruseles (que ya trae el nombre de la categoría) a un ProductoDTO.
+    ProductoDTO toDto(ProductoCarruselFila fila);
+
     //@Mapping(source = "nombreCategoria", target = "categoria.nombre")
     //Producto toEntity(ProductoDTO dto);
+    //stockFragmentado no viene en los DTOs: solo lo cambia el servicio de stock al fragmentar un producto.
     @Mapping(source = "categoriaId", target = "categoria.id")
+    @Mapping(target = "stockFragmentado", ignore = true)
     Producto toEntityFromCreateDTO(ProductoCreateDTO createDTO);
 
     //en la anotación @Mapping, traget hace referencia al campo destino
     //al cual se le va a aplicar un valor o una regla especial de mapeo.
     @Mapping(source = "categoriaId", target = "categoria.id")
+    @Mapping(target = "stockFragmentado", ignore = true)
     Producto toEntityFromUpdateDTO(ProductoUpdateDTO updateDTO);
 }
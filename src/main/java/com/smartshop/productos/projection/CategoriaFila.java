@@ -0,0 +1,9 @@
+package com.smartshop.productos.projection;
+
+// Proyección plana de una categoría con el ID de su padre (null si es raíz), para armar el árbol en memoria con una sola consulta.
+public interface CategoriaFila {
+    Long getId();
+    String getNombre();
+    String getDescripcion();
+    Long getCategoriaPadreId();
+}
@@ -0,0 +1,20 @@
+package com.smartshop.productos.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Proyección de un producto junto con los datos de su categoría (consulta de carruseles e índice de búsqueda en memoria).
+public interface ProductoCarruselFila {
+    Long getId();
+    String getNombre();
+    String getDescripcion();
+    String getImagenUrl();
+    BigDecimal getPrecio();
+    Integer getStock();
+    Integer getVecesVisto();
+    Boolean getDisponible();
+    LocalDateTime getFechaCreacion();
+    Long getCategoriaId();            // ID de la categoría del producto
+    String getNombreCategoria();      // Nombre de la categoría (evita una consulta extra por categoría)
+    String getDescripcionCategoria(); // Descripción de la categoría
+}
@@ -0,0 +1,8 @@
+package com.smartshop.productos.projection;
+
+// Proyección con el texto de un producto que se envía al extractor de etiquetas.
+public interface ProductoTextoFila {
+    Long getId();
+    String getNombre();
+    String getDescripcion();
+}
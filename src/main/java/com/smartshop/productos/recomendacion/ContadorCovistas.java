@@ -0,0 +1,89 @@
+package com.smartshop.productos.recomendacion;
+
+import java.util.Arrays;
+
+/**
+ * Mapa disperso ID de producto → peso acumulado, con direccionamiento abierto sobre arreglos primitivos
+ * ({@code long[]} y {@code float[]}), para no crear un objeto por cada par de productos vistos juntos.
+ * No es seguro para hilos.
+ */
+final class ContadorCovistas {
+
+    private static final long VACIO = Long.MIN_VALUE;
+
+    private long[] claves;
+    private float[] pesos;
+    private int tamanio;
+
+    ContadorCovistas() {
+        claves = new long[8];
+        pesos = new float[8];
+        Arrays.fill(claves, VACIO);
+    }
+
+    void sumar(long productoId, float peso) {
+        if ((tamanio + 1) * 4 > claves.length * 3) {
+            crecer();
+        }
+        int posicion = posicion(claves, productoId);
+        if (claves[posicion] == VACIO) {
+            claves[posicion] = productoId;
+            tamanio++;
+        }
+        pesos[posicion] += peso;
+    }
+
+    // Peso acumulado del producto, o 0 si no está
+    float obtener(long productoId) {
+        int posicion = posicion(claves, productoId);
+        return claves[posicion] == VACIO ? 0f : pesos[posicion];
+    }
+
+    int tamanio() {
+        return tamanio;
+    }
+
+    // Recorre las entradas; el consumidor recibe el ID y su peso acumulado
+    void recorrer(Visitante visitante) {
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != VACIO) {
+                visitante.visitar(claves[i], pesos[i]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Visitante {
+        void visitar(long productoId, float peso);
+    }
+
+    private void crecer() {
+        long[] clavesAnteriores = claves;
+        float[] pesosAnteriores = pesos;
+        claves = new long[clavesAnteriores.length * 2];
+        pesos = new float[clavesAnteriores.length * 2];
+        Arrays.fill(claves, VACIO);
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (clavesAnteriores[i] != VACIO) {
+                int posicion = posicion(claves, clavesAnteriores[i]);
+                claves[posicion] = clavesAnteriores[i];
+                pesos[posicion] = pesosAnteriores[i];
+            }
+        }
+    }
+
+    // Sondeo lineal a partir del hash mezclado de la clave (la longitud del arreglo siempre es potencia de 2)
+    private static int posicion(long[] claves, long clave) {
+        int mascara = claves.length - 1;
+        int posicion = (int) (mezclar(clave) & mascara);
+        while (claves[posicion] != VACIO && claves[posicion] != clave) {
+            posicion = (posicion + 1) & mascara;
+        }
+        return posicion;
+    }
+
+    private static long mezclar(long clave) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,365 @@
+package com.smartshop.productos.recomendacion;
+
+import com.smartshop.productos.config.BloqueoEntreReplicas;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Recomendaciones "quienes vieron esto también vieron" calculadas a partir de {@code historial_navegacion}.
+ * <p>
+ * Un proceso periódico recorre el historial reciente ordenado por usuario y fecha (con cursor, sin cargarlo entero),
+ * lo corta en sesiones (dos vistas del mismo usuario separadas por más de {@code productos.recomendaciones.covistas.sesion}
+ * son sesiones distintas) y cuenta cuántas veces aparece cada par de productos en la misma sesión, con mapas dispersos
+ * de primitivos ({@link ContadorCovistas}). El puntaje de cada par es la coocurrencia normalizada por la frecuencia de
+ * ambos productos (coseno), y las sesiones largas pesan menos. Los K mejores vecinos de cada producto se guardan en
+ * {@code producto_covistas} y se mantienen en memoria para responder sin consultas.
+ * <p>
+ * Con varias réplicas el cálculo lo hace una sola ({@link BloqueoEntreReplicas}); las demás revisan periódicamente
+ * la fecha del último cálculo guardado y vuelven a cargar los vecinos cuando cambia.
+ */
+@Component
+@Slf4j
+public class RecomendadorCovistas {
+
+    private static final String SQL_HISTORIAL =
+            "SELECT id_usuario, id_producto, fecha FROM historial_navegacion WHERE fecha >= ? ORDER BY id_usuario, fecha";
+    private static final String SQL_GUARDAR = """
+            INSERT INTO producto_covistas (producto_id, vecinos, puntajes, fecha_calculo) VALUES (?, ?, ?, ?)
+            ON CONFLICT (producto_id) DO UPDATE
+            SET vecinos = EXCLUDED.vecinos, puntajes = EXCLUDED.puntajes, fecha_calculo = EXCLUDED.fecha_calculo
+            """;
+    private static final String SQL_BORRAR_ANTERIORES = "DELETE FROM producto_covistas WHERE fecha_calculo < ?";
+    private static final String SQL_LEER = "SELECT producto_id, vecinos, puntajes FROM producto_covistas";
+    private static final String SQL_FECHA_CALCULO = "SELECT max(fecha_calculo) FROM producto_covistas";
+    private static final String BLOQUEO_CALCULO = "recomendaciones.covistas.calculo";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BloqueoEntreReplicas bloqueoEntreReplicas;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate transaccionLectura;
+    private final Timer tiempoCalculo;
+
+    private final boolean habilitado;
+    // Separación máxima entre dos vistas de una misma sesión
+    private final Duration sesion;
+    // Antigüedad máxima del historial que se tiene en cuenta
+    private final Duration ventana;
+    private final int vecinosPorProducto;
+    // Las sesiones con más productos distintos se recortan: el costo de contar pares crece con el cuadrado
+    private final int maximoPorSesion;
+    private final int filasPorLectura;
+    private final int tamanioLote;
+
+    // Evita dos cálculos simultáneos en esta instancia
+    private final ReentrantLock calculoLock = new ReentrantLock();
+    // Vecinos de cada producto, reemplazados completos después de cada cálculo
+    private volatile Map<Long, Vecinos> vecinos = Map.of();
+    // Fecha del cálculo cargado en memoria; nula si no hay ninguno
+    private volatile LocalDateTime fechaCargada;
+
+    private record Vecinos(long[] ids, float[] puntajes) {
+    }
+
+    public RecomendadorCovistas(JdbcTemplate jdbcTemplate,
+                                BloqueoEntreReplicas bloqueoEntreReplicas,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${productos.recomendaciones.covistas.habilitado:true}") boolean habilitado,
+                                @Value("${productos.recomendaciones.covistas.sesion:30m}") Duration sesion,
+                                @Value("${productos.recomendaciones.covistas.ventana:90d}") Duration ventana,
+                                @Value("${productos.recomendaciones.covistas.vecinos:20}") int vecinosPorProducto,
+                                @Value("${productos.recomendaciones.covistas.maximo-por-sesion:50}") int maximoPorSesion,
+                                @Value("${productos.recomendaciones.covistas.filas-por-lectura:10000}") int filasPorLectura,
+                                @Value("${productos.recomendaciones.covistas.tamanio-lote:1000}") int tamanioLote) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bloqueoEntreReplicas = bloqueoEntreReplicas;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transaccionLectura = new TransactionTemplate(transactionManager);
+        this.transaccionLectura.setReadOnly(true);
+        this.habilitado = habilitado;
+        this.sesion = sesion;
+        this.ventana = ventana;
+        this.vecinosPorProducto = vecinosPorProducto;
+        this.maximoPorSesion = maximoPorSesion;
+        this.filasPorLectura = filasPorLectura;
+        this.tamanioLote = tamanioLote;
+
+        this.tiempoCalculo = Timer.builder("productos.recomendaciones.covistas.calculo")
+                .description("Duración del cálculo de productos vistos juntos")
+                .register(meterRegistry);
+    }
+
+    //===============================================================================================================================================
+
+    /**
+     * Combina los vecinos de los productos vistos recientemente (el más reciente pesa más) y devuelve los IDs
+     * mejor puntuados, sin incluir los ya vistos. Devuelve una lista vacía si no hay vecinos calculados.
+     */
+    public List<Long> recomendar(List<Long> vistosRecientes, int limite) {
+        Map<Long, Vecinos> actuales = vecinos;
+        if (!habilitado || actuales.isEmpty()) {
+            return List.of();
+        }
+
+        Set<Long> vistos = new HashSet<>(vistosRecientes);
+        Map<Long, Double> puntajes = new HashMap<>();
+        for (int i = 0; i < vistosRecientes.size(); i++) {
+            Vecinos deProducto = actuales.get(vistosRecientes.get(i));
+            if (deProducto == null) {
+                continue;
+            }
+            double pesoRecencia = 1.0 / (i + 1);
+            for (int j = 0; j < deProducto.ids().length; j++) {
+                long vecino = deProducto.ids()[j];
+                if (!vistos.contains(vecino)) {
+                    puntajes.merge(vecino, pesoRecencia * deProducto.puntajes()[j], Double::sum);
+                }
+            }
+        }
+
+        return puntajes.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(limite)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    //===============================================================================================================================================
+
+    // Carga los vecinos del último cálculo guardado
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            cargar();
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron cargar los productos vistos juntos; se usarán al terminar el próximo cálculo", e);
+        }
+    }
+
+    // Vuelve a cargar los vecinos si otra réplica guardó un cálculo más nuevo que el que está en memoria
+    @Scheduled(fixedDelayString = "${productos.recomendaciones.covistas.recarga-ms:300000}",
+            initialDelayString = "${productos.recomendaciones.covistas.recarga-ms:300000}")
+    public void recargarSiCambio() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            if (!Objects.equals(leerFechaCalculo(), fechaCargada)) {
+                cargar();
+            }
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron recargar los productos vistos juntos; se reintentará en el próximo ciclo", e);
+        }
+    }
+
+    @Scheduled(cron = "${productos.recomendaciones.covistas.cron:0 30 3 * * *}")
+    public void calcular() {
+        if (!habilitado || !calculoLock.tryLock()) {
+            return;
+        }
+        try {
+            // Solo una réplica calcula; las demás toman el resultado en recargarSiCambio
+            if (!bloqueoEntreReplicas.ejecutarSiLibre(BLOQUEO_CALCULO, () -> tiempoCalculo.record(this::calcularYGuardar))) {
+                log.info("Otra instancia está calculando los productos vistos juntos; se omite este cálculo");
+            }
+        } catch (RuntimeException e) {
+            log.error("Error al calcular los productos vistos juntos", e);
+        } finally {
+            calculoLock.unlock();
+        }
+    }
+
+    //===============================================================================================================================================
+
+    private void cargar() {
+        // La fecha se lee antes que las filas: si entre ambas lecturas se guarda otro cálculo, el próximo ciclo lo vuelve a cargar
+        LocalDateTime fecha = leerFechaCalculo();
+        Map<Long, Vecinos> cargados = new HashMap<>();
+        jdbcTemplate.query(SQL_LEER, (RowCallbackHandler) rs -> cargados.put(rs.getLong("producto_id"), leerVecinos(rs)));
+        vecinos = Map.copyOf(cargados);
+        fechaCargada = fecha;
+        log.info("Productos vistos juntos cargados: {} productos con vecinos.", cargados.size());
+    }
+
+    private LocalDateTime leerFechaCalculo() {
+        Timestamp fecha = jdbcTemplate.queryForObject(SQL_FECHA_CALCULO, Timestamp.class);
+        return fecha != null ? fecha.toLocalDateTime() : null;
+    }
+
+    private void calcularYGuardar() {
+        // PostgreSQL guarda microsegundos: así la fecha en memoria coincide con la guardada
+        LocalDateTime inicio = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        AcumuladorSesiones acumulador = new AcumuladorSesiones();
+
+        // PostgreSQL solo usa cursor (fetch size) dentro de una transacción
+        transaccionLectura.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_HISTORIAL);
+            ps.setFetchSize(filasPorLectura);
+            ps.setTimestamp(1, Timestamp.valueOf(inicio.minus(ventana)));
+            return ps;
+        }, acumulador));
+        acumulador.cerrarSesion();
+
+        Map<Long, Vecinos> calculados = new HashMap<>();
+        acumulador.coocurrencias.forEach((productoId, contador) -> {
+            Vecinos mejores = mejoresVecinos(productoId, contador, acumulador.sesionesPorProducto);
+            if (mejores.ids().length > 0) {
+                calculados.put(productoId, mejores);
+            }
+        });
+
+        guardar(calculados, inicio);
+        vecinos = Map.copyOf(calculados);
+        fechaCargada = calculados.isEmpty() ? null : inicio;
+
+        log.info("Productos vistos juntos calculados: {} vistas, {} sesiones, {} productos con vecinos.",
+                acumulador.filas, acumulador.sesiones, calculados.size());
+    }
+
+    private Vecinos mejoresVecinos(long productoId, ContadorCovistas contador, ContadorCovistas sesionesPorProducto) {
+        float frecuenciaProducto = sesionesPorProducto.obtener(productoId);
+
+        record Candidato(long id, float puntaje) {
+        }
+        // Montículo de mínimos con los K mejores
+        PriorityQueue<Candidato> mejores = new PriorityQueue<>(vecinosPorProducto + 1, (a, b) -> Float.compare(a.puntaje(), b.puntaje()));
+        contador.recorrer((vecino, peso) -> {
+            float puntaje = (float) (peso / Math.sqrt(frecuenciaProducto * sesionesPorProducto.obtener(vecino)));
+            mejores.add(new Candidato(vecino, puntaje));
+            if (mejores.size() > vecinosPorProducto) {
+                mejores.poll();
+            }
+        });
+
+        long[] ids = new long[mejores.size()];
+        float[] puntajes = new float[mejores.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            Candidato candidato = mejores.poll();
+            ids[i] = candidato.id();
+            puntajes[i] = candidato.puntaje();
+        }
+        return new Vecinos(ids, puntajes);
+    }
+
+    // Reemplaza los vecinos guardados; los productos que ya no tienen vecinos se eliminan
+    private void guardar(Map<Long, Vecinos> calculados, LocalDateTime fechaCalculo) {
+        Timestamp fecha = Timestamp.valueOf(fechaCalculo);
+        List<Map.Entry<Long, Vecinos>> filas = new ArrayList<>(calculados.entrySet());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(SQL_GUARDAR, filas, tamanioLote, (ps, fila) -> {
+                Vecinos deProducto = fila.getValue();
+                Long[] ids = new Long[deProducto.ids().length];
+                Float[] puntajes = new Float[deProducto.ids().length];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = deProducto.ids()[i];
+                    puntajes[i] = deProducto.puntajes()[i];
+                }
+                ps.setLong(1, fila.getKey());
+                ps.setArray(2, ps.getConnection().createArrayOf("bigint", ids));
+                ps.setArray(3, ps.getConnection().createArrayOf("real", puntajes));
+                ps.setTimestamp(4, fecha);
+            });
+            jdbcTemplate.update(SQL_BORRAR_ANTERIORES, fecha);
+        });
+    }
+
+    private static Vecinos leerVecinos(ResultSet rs) throws SQLException {
+        Object[] ids = (Object[]) rs.getArray("vecinos").getArray();
+        Object[] puntajes = (Object[]) rs.getArray("puntajes").getArray();
+        Vecinos leidos = new Vecinos(new long[ids.length], new float[ids.length]);
+        for (int i = 0; i < ids.length; i++) {
+            leidos.ids()[i] = ((Number) ids[i]).longValue();
+            leidos.puntajes()[i] = ((Number) puntajes[i]).floatValue();
+        }
+        return leidos;
+    }
+
+    //===============================================================================================================================================
+
+    // Recibe las vistas ordenadas por usuario y fecha y acumula las coocurrencias de cada sesión al cerrarla
+    private final class AcumuladorSesiones implements RowCallbackHandler {
+
+        private final Map<Long, ContadorCovistas> coocurrencias = new HashMap<>();
+        // Cantidad de sesiones en que aparece cada producto
+        private final ContadorCovistas sesionesPorProducto = new ContadorCovistas();
+
+        private final List<Long> productosSesion = new ArrayList<>();
+        private final Set<Long> distintosSesion = new HashSet<>();
+        private long usuarioActual = Long.MIN_VALUE;
+        private LocalDateTime ultimaVista;
+        private long filas;
+        private long sesiones;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long usuario = rs.getLong("id_usuario");
+            long producto = rs.getLong("id_producto");
+            LocalDateTime fecha = rs.getTimestamp("fecha").toLocalDateTime();
+            filas++;
+
+            if (usuario != usuarioActual || Duration.between(ultimaVista, fecha).compareTo(sesion) > 0) {
+                cerrarSesion();
+                usuarioActual = usuario;
+            }
+            ultimaVista = fecha;
+
+            if (productosSesion.size() < maximoPorSesion && distintosSesion.add(producto)) {
+                productosSesion.add(producto);
+            }
+        }
+
+        void cerrarSesion() {
+            if (productosSesion.isEmpty()) {
+                return;
+            }
+            sesiones++;
+            productosSesion.forEach(producto -> sesionesPorProducto.sumar(producto, 1f));
+
+            if (productosSesion.size() > 1) {
+                // En una sesión larga cada par dice menos sobre la relación entre los productos
+                float peso = (float) (1.0 / Math.log(1.0 + productosSesion.size()));
+                for (Long producto : productosSesion) {
+                    ContadorCovistas contador = coocurrencias.computeIfAbsent(producto, id -> new ContadorCovistas());
+                    for (Long otro : productosSesion) {
+                        if (!otro.equals(producto)) {
+                            contador.sumar(otro, peso);
+                        }
+                    }
+                }
+            }
+            productosSesion.clear();
+            distintosSesion.clear();
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.smartshop.productos.recomendacion;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import com.smartshop.productos.event.ProductosCreadosEvent;
+import com.smartshop.productos.projection.ProductoCarruselFila;
+import com.smartshop.productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Recomendador de productos similares a partir de las etiquetas guardadas en {@code producto_etiqueta}.
+ * <p>
+ * Mantiene en memoria un índice invertido etiqueta → productos ({@code int[]} de ordinales) y las etiquetas de cada
+ * producto. La similitud entre dos productos es un Jaccard ponderado por el IDF de las etiquetas compartidas, combinado
+ * con la cercanía de precio y una bonificación si son de la misma categoría. Solo se recomiendan productos disponibles.
+ * <p>
+ * Los K vecinos de cada producto se calculan la primera vez que se piden y quedan en caché. Cuando cambian las
+ * etiquetas (o el precio, la categoría o la disponibilidad) de un producto, se reindexa en segundo plano y se
+ * invalidan los vecinos del propio producto y de todos los que comparten alguna etiqueta con él.
+ */
+@Component
+@Slf4j
+public class RecomendadorEtiquetas {
+
+    // Si la fracción de productos eliminados supera este valor, el índice se reconstruye para liberar memoria
+    private static final double MAXIMA_FRACCION_ELIMINADOS = 0.3;
+
+    private final ProductoRepository productoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitado;
+    private final int cantidadVecinos;
+    private final double pesoPrecio;
+    private final double pesoCategoria;
+    // Etiquetas con más productos que este valor no generan candidatos (su IDF es casi nulo y recorrerlas es caro)
+    private final int maximoProductosPorEtiqueta;
+
+    // Lecturas concurrentes; las actualizaciones y el reemplazo del índice toman el lock de escritura
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Productos modificados pendientes de reindexar
+    private final ConcurrentLinkedQueue<Long> pendientes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean reconstruccionPendiente = new AtomicBoolean(false);
+    // IDs de los K vecinos de cada producto, de mayor a menor similitud
+    private final Cache<Long, long[]> vecinos;
+
+    private Indice indice = new Indice(0);
+    private volatile boolean listo;
+
+    public RecomendadorEtiquetas(ProductoRepository productoRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${productos.recomendaciones.habilitado:true}") boolean habilitado,
+                                 @Value("${productos.recomendaciones.vecinos:50}") int cantidadVecinos,
+                                 @Value("${productos.recomendaciones.peso-precio:0.2}") double pesoPrecio,
+                                 @Value("${productos.recomendaciones.peso-categoria:0.1}") double pesoCategoria,
+                                 @Value("${productos.recomendaciones.maximo-productos-por-etiqueta:5000}") int maximoProductosPorEtiqueta,
+                                 @Value("${productos.recomendaciones.tamanio-cache:50000}") long tamanioCache) {
+        this.productoRepository = productoRepository;
+        this.habilitado = habilitado;
+        this.cantidadVecinos = cantidadVecinos;
+        this.pesoPrecio = pesoPrecio;
+        this.pesoCategoria = pesoCategoria;
+        this.maximoProductosPorEtiqueta = maximoProductosPorEtiqueta;
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+
+        this.vecinos = Caffeine.newBuilder()
+                .maximumSize(tamanioCache)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, vecinos, "productos.recomendaciones.vecinos");
+    }
+
+    //===============================================================================================================================================
+
+    // Indica si el recomendador está habilitado y ya fue construido
+    public boolean estaListo() {
+        return habilitado && listo;
+    }
+
+    /**
+     * Devuelve los IDs de los productos más parecidos, de mayor a menor similitud.
+     * Devuelve vacío si el producto no está en el índice o no tiene etiquetas (no hay con qué compararlo).
+     */
+    public Optional<List<Long>> similares(Long productoId) {
+        if (!estaListo()) {
+            return Optional.empty();
+        }
+        // Caffeine agrupa los cálculos concurrentes del mismo producto; un resultado null no se guarda
+        long[] ids = vecinos.get(productoId, id -> leer(actual -> actual.vecinos(id)));
+        return Optional.ofNullable(ids).map(encontrados -> Arrays.stream(encontrados).boxed().toList());
+    }
+
+    //===============================================================================================================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        if (habilitado) {
+            reconstruir();
+        }
+    }
+
+    // Los cambios confirmados se encolan y se aplican en segundo plano
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiadoEvent evento) {
+        if (!habilitado) {
+            return;
+        }
+        if (evento.esCatalogoCompleto()) {
+            reconstruccionPendiente.set(true);
+        } else {
+            pendientes.add(evento.productoId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearProductos(ProductosCreadosEvent evento) {
+        if (habilitado) {
+            pendientes.addAll(evento.productoIds());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${productos.recomendaciones.actualizacion-ms:2000}")
+    public void aplicarCambiosPendientes() {
+        if (!habilitado || !listo) {
+            return;
+        }
+
+        try {
+            if (reconstruccionPendiente.getAndSet(false) || leer(Indice::fraccionEliminados) > MAXIMA_FRACCION_ELIMINADOS) {
+                pendientes.clear();
+                reconstruir();
+                return;
+            }
+
+            Set<Long> ids = new HashSet<>();
+            Long id;
+            while ((id = pendientes.poll()) != null) {
+                ids.add(id);
+            }
+            for (Long productoId : ids) {
+                reindexar(productoId);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error al actualizar el índice de recomendaciones", e);
+        }
+    }
+
+    //===============================================================================================================================================
+
+    private void reconstruir() {
+        long inicio = System.nanoTime();
+
+        // El índice nuevo se arma fuera del lock y luego reemplaza al anterior
+        Indice nuevo = transactionTemplate.execute(status -> {
+            List<ProductoCarruselFila> filas = productoRepository.findTodosConCategoria();
+
+            Map<Long, List<String>> etiquetasPorProducto = new HashMap<>();
+            for (Object[] par : productoRepository.findNombresEtiquetas()) {
+                etiquetasPorProducto.computeIfAbsent((Long) par[0], k -> new ArrayList<>()).add((String) par[1]);
+            }
+
+            Indice construido = new Indice(filas.size());
+            for (ProductoCarruselFila fila : filas) {
+                construido.agregar(fila, etiquetasPorProducto.getOrDefault(fila.getId(), List.of()));
+            }
+            construido.compactar();
+            return construido;
+        });
+
+        lock.writeLock().lock();
+        try {
+            indice = nuevo;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        vecinos.invalidateAll();
+        listo = true;
+
+        log.info("Índice de recomendaciones construido: {} productos, {} etiquetas en {} ms.",
+                nuevo.ordinalPorId.size(), nuevo.etiquetas.size(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private void reindexar(Long productoId) {
+        // Se leen los datos actuales del producto; si ya no existe, se elimina del índice
+        record Datos(ProductoCarruselFila fila, List<String> etiquetas) {
+        }
+        Datos datos = transactionTemplate.execute(status -> productoRepository.findConCategoriaById(productoId)
+                .map(fila -> new Datos(fila, productoRepository.findNombresEtiquetasByProductoId(productoId)))
+                .orElse(null));
+
+        Set<Long> afectados = new HashSet<>();
+        afectados.add(productoId);
+
+        lock.writeLock().lock();
+        try {
+            // Los productos que compartían etiquetas con la versión anterior o comparten con la nueva pueden cambiar de vecinos
+            indice.productosConEtiquetasDe(productoId, afectados);
+            indice.eliminar(productoId);
+            if (datos != null) {
+                indice.agregar(datos.fila(), datos.etiquetas());
+                indice.productosConEtiquetasDe(productoId, afectados);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        vecinos.invalidateAll(afectados);
+    }
+
+    private <T> T leer(Function<Indice, T> lectura) {
+        lock.readLock().lock();
+        try {
+            return lectura.apply(indice);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //===============================================================================================================================================
+
+    // Lista creciente de ordinales de una etiqueta; como los ordinales se asignan en orden creciente, la lista siempre queda ordenada
+    private static final class Postings {
+        private int[] ordinales = new int[4];
+        private int tamanio;
+
+        void agregar(int ordinal) {
+            if (tamanio == ordinales.length) {
+                ordinales = Arrays.copyOf(ordinales, tamanio * 2);
+            }
+            ordinales[tamanio++] = ordinal;
+        }
+
+        void compactar() {
+            if (ordinales.length != tamanio) {
+                ordinales = Arrays.copyOf(ordinales, tamanio);
+            }
+        }
+    }
+
+    private record Candidato(int ordinal, double puntaje) {
+    }
+
+    // Estructuras del índice; no es seguro para hilos por sí mismo (lo protege el lock de la clase externa)
+    private final class Indice {
+        private long[] ids;
+        private long[] categorias;
+        private long[] precios;                  // Precio en centavos por ordinal
+        private int[][] etiquetasPorProducto;    // Ordinales de etiqueta de cada producto
+        private int cantidad;                    // Ordinales asignados (incluye eliminados)
+        private int eliminados;
+
+        private final Map<Long, Integer> ordinalPorId = new HashMap<>();
+        private final BitSet vivos = new BitSet();
+        private final BitSet disponibles = new BitSet();
+        private final Map<String, Integer> ordinalPorEtiqueta = new HashMap<>();
+        private final List<Postings> etiquetas = new ArrayList<>();
+
+        private Indice(int capacidad) {
+            int inicial = Math.max(capacidad, 16);
+            ids = new long[inicial];
+            categorias = new long[inicial];
+            precios = new long[inicial];
+            etiquetasPorProducto = new int[inicial][];
+        }
+
+        void agregar(ProductoCarruselFila fila, Collection<String> nombresEtiquetas) {
+            asegurarCapacidad(cantidad + 1);
+            int ordinal = cantidad++;
+
+            ids[ordinal] = fila.getId();
+            categorias[ordinal] = fila.getCategoriaId();
+            precios[ordinal] = fila.getPrecio() == null ? 0 : aCentavos(fila.getPrecio());
+            vivos.set(ordinal);
+            if (Boolean.TRUE.equals(fila.getDisponible())) {
+                disponibles.set(ordinal);
+            }
+            ordinalPorId.put(fila.getId(), ordinal);
+
+            // Mismo criterio que la etiqueta guardada: sin espacios alrededor y sin distinguir mayúsculas
+            Set<Integer> propias = new LinkedHashSet<>();
+            for (String nombre : nombresEtiquetas) {
+                int etiqueta = ordinalPorEtiqueta.computeIfAbsent(nombre.trim().toLowerCase(Locale.ROOT), n -> {
+                    etiquetas.add(new Postings());
+                    return etiquetas.size() - 1;
+                });
+                if (propias.add(etiqueta)) {
+                    etiquetas.get(etiqueta).agregar(ordinal);
+                }
+            }
+            etiquetasPorProducto[ordinal] = propias.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        void eliminar(Long productoId) {
+            Integer ordinal = ordinalPorId.remove(productoId);
+            if (ordinal != null) {
+                // El ordinal queda en las listas de etiquetas, pero ya no cuenta como vivo
+                vivos.clear(ordinal);
+                disponibles.clear(ordinal);
+                eliminados++;
+            }
+        }
+
+        void compactar() {
+            etiquetas.forEach(Postings::compactar);
+        }
+
+        // Agrega a destino los IDs de los productos vivos que comparten alguna etiqueta con el producto indicado
+        void productosConEtiquetasDe(Long productoId, Set<Long> destino) {
+            Integer ordinal = ordinalPorId.get(productoId);
+            if (ordinal == null) {
+                return;
+            }
+            for (int etiqueta : etiquetasPorProducto[ordinal]) {
+                Postings postings = etiquetas.get(etiqueta);
+                for (int i = 0; i < postings.tamanio; i++) {
+                    int otro = postings.ordinales[i];
+                    if (vivos.get(otro)) {
+                        destino.add(ids[otro]);
+                    }
+                }
+            }
+        }
+
+        // Calcula los K productos más parecidos; null si el producto no existe o no tiene etiquetas
+        long[] vecinos(Long productoId) {
+            Integer base = ordinalPorId.get(productoId);
+            if (base == null || etiquetasPorProducto[base].length == 0) {
+                return null;
+            }
+
+            // Peso IDF compartido con cada candidato (la intersección ponderada del Jaccard)
+            Map<Integer, Double> compartido = new HashMap<>();
+            double normaBase = 0;
+            for (int etiqueta : etiquetasPorProducto[base]) {
+                double peso = idf(etiqueta);
+                normaBase += peso;
+                Postings postings = etiquetas.get(etiqueta);
+                if (postings.tamanio > maximoProductosPorEtiqueta) {
+                    continue;
+                }
+                for (int i = 0; i < postings.tamanio; i++) {
+                    int candidato = postings.ordinales[i];
+                    if (candidato != base && disponibles.get(candidato)) {
+                        compartido.merge(candidato, peso, Double::sum);
+                    }
+                }
+            }
+
+            // Montículo de mínimos con los K mejores
+            PriorityQueue<Candidato> mejores = new PriorityQueue<>(cantidadVecinos + 1,
+                    (a, b) -> Double.compare(a.puntaje(), b.puntaje()));
+            double pesoEtiquetas = 1.0 - pesoPrecio - pesoCategoria;
+            for (Map.Entry<Integer, Double> entrada : compartido.entrySet()) {
+                int candidato = entrada.getKey();
+                double interseccion = entrada.getValue();
+                double jaccard = interseccion / (normaBase + norma(candidato) - interseccion);
+                double puntaje = pesoEtiquetas * jaccard
+                        + pesoPrecio * cercaniaPrecio(precios[base], precios[candidato])
+                        + (categorias[base] == categorias[candidato] ? pesoCategoria : 0);
+
+                mejores.add(new Candidato(candidato, puntaje));
+                if (mejores.size() > cantidadVecinos) {
+                    mejores.poll();
+                }
+            }
+
+            long[] resultado = new long[mejores.size()];
+            for (int i = resultado.length - 1; i >= 0; i--) {
+                resultado[i] = ids[mejores.poll().ordinal()];
+            }
+            return resultado;
+        }
+
+        double fraccionEliminados() {
+            return cantidad == 0 ? 0 : (double) eliminados / cantidad;
+        }
+
+        // IDF suavizado; la frecuencia incluye ordinales eliminados hasta la próxima reconstrucción
+        private double idf(int etiqueta) {
+            return Math.log((ordinalPorId.size() + 1.0) / (etiquetas.get(etiqueta).tamanio + 1.0)) + 1.0;
+        }
+
+        private double norma(int ordinal) {
+            double norma = 0;
+            for (int etiqueta : etiquetasPorProducto[ordinal]) {
+                norma += idf(etiqueta);
+            }
+            return norma;
+        }
+
+        private void asegurarCapacidad(int requerida) {
+            if (requerida > ids.length) {
+                int nueva = Math.max(requerida, ids.length * 2);
+                ids = Arrays.copyOf(ids, nueva);
+                categorias = Arrays.copyOf(categorias, nueva);
+                precios = Arrays.copyOf(precios, nueva);
+                etiquetasPorProducto = Arrays.copyOf(etiquetasPorProducto, nueva);
+            }
+        }
+    }
+
+    // 1 si los precios son iguales, tiende a 0 a medida que se alejan (relativo al mayor de los dos)
+    private static double cercaniaPrecio(long precioBase, long precioCandidato) {
+        long mayor = Math.max(precioBase, precioCandidato);
+        return mayor == 0 ? 1.0 : 1.0 - (double) Math.abs(precioBase - precioCandidato) / mayor;
+    }
+
+    private static long aCentavos(BigDecimal precio) {
+        return precio.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+}
@@ -1,11 +1,16 @@
 package com.smartshop.productos.repository;
 
 import com.smartshop.productos.entity.Categoria;
+import com.smartshop.productos.projection.CategoriaFila;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 //Interfaz que permite manipular los datos de la tabla Categorias en la base
 // de datos mediante mentodos CRUD, sin usar consultas SQL
@@ -15,5 +20,18 @@ public interface CategoriaRepository extends JpaRepository<Categoria, Long> {
     @EntityGraph(attributePaths = "subcategorias")
     List<Categoria> findByCategoriaPadreIsNull();
 
+    // Todas las categorías en una sola consulta, con el ID del padre en vez de la relación
+    @Query("""
+           SELECT c.id AS id, c.nombre AS nombre, c.descripcion AS descripcion, padre.id AS categoriaPadreId
+           FROM Categoria c
+           LEFT JOIN c.categoriaPadre padre
+           ORDER BY c.id
+           """)
+    List<CategoriaFila> findTodasPlanas();
+
+    // IDs de la colección que corresponden a categorías existentes (validación de cargas masivas en una sola consulta)
+    @Query("SELECT c.id FROM Categoria c WHERE c.id IN :ids")
+    Set<Long> findIdsExistentes(@Param("ids") Collection<Long> ids);
+
 }
 
@@ -1,6 +1,7 @@
 package com.smartshop.productos.repository;
 
 import com.smartshop.productos.entity.HistorialNavegacion;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,6 +12,8 @@ import java.util.List;
 @Repository
 public interface HistorialNavegacionRepository extends JpaRepository<HistorialNavegacion, Long> {
 
-    @Query("SELECT h.idProducto FROM HistorialNavegacion h WHERE h.idUsuario = :idUsuario ORDER BY h.fecha DESC")
-    List<Long> findUltimosVistosPorUsuario(@Param("idUsuario") Long idUsuario);
+    // Últimos productos distintos vistos por el usuario, del más reciente al más antiguo, limitados al tamaño de página
+    // (usa el índice id_usuario, fecha DESC para leer solo las filas del usuario)
+    @Query("SELECT h.idProducto FROM HistorialNavegacion h WHERE h.idUsuario = :idUsuario GROUP BY h.idProducto ORDER BY MAX(h.fecha) DESC")
+    List<Long> findUltimosVistosPorUsuario(@Param("idUsuario") Long idUsuario, Pageable pageable);
 }
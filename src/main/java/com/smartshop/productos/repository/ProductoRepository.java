@@ -2,6 +2,8 @@ package com.smartshop.productos.repository;
 
 import com.smartshop.productos.entity.Producto;
 import com.smartshop.productos.projection.CategoriaProductoCount;
+import com.smartshop.productos.projection.ProductoCarruselFila;
+import com.smartshop.productos.projection.ProductoTextoFila;
 import com.smartshop.productos.repository.custom.ProductoRepositoryCustom;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -11,7 +13,9 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 //Interfaz que permite manipular los datos de la tabla Productos en la base
 // de datos mediante mentodos CRUD, sin usar consultas SQL
@@ -19,51 +23,107 @@ import java.util.List;
 public interface ProductoRepository extends JpaRepository<Producto, Long>, ProductoRepositoryCustom {
 
     //=================================================================================================================================
-    // Consulta personalizada para contar productos disponibles agrupados por categoría
+    // Consulta personalizada para obtener las categorías con al menos "minimo" productos disponibles
     @Query("""
            SELECT p.categoria.id AS categoriaId, COUNT(p.id) AS total 
            FROM Producto p 
            WHERE p.disponible = true 
            GROUP BY p.categoria.id 
-           HAVING COUNT(p.id) >= 10
+           HAVING COUNT(p.id) >= :minimo
            """)
-    List<CategoriaProductoCount> findCategoriasConMinimo10ProductosDisponibles();
-
-    //=================================================================================================================================
-
-    // Consulta derivada por nombre: obtiene los 10 productos más recientes por categoría
-    List<Producto> findTop10ByCategoriaIdAndDisponibleTrueOrderByIdDesc(Long categoriaId);
+    List<CategoriaProductoCount> findCategoriasConMinimoProductosDisponibles(@Param("minimo") long minimo);
 
     //=================================================================================================================================
 
     @Query(
             value = """
-        -- Selecciona todas las columnas del resultado final filtrado
-        SELECT *
+        -- Selecciona las columnas del producto junto con el nombre y descripción de su categoría
+        SELECT sub.id AS "id",
+               sub.nombre AS "nombre",
+               sub.descripcion AS "descripcion",
+               sub.imagen_url AS "imagenUrl",
+               sub.precio AS "precio",
+               sub.stock AS "stock",
+               sub.veces_visto AS "vecesVisto",
+               sub.disponible AS "disponible",
+               sub.fecha_creacion AS "fechaCreacion",
+               sub.categoria_id AS "categoriaId",
+               c.nombre AS "nombreCategoria",
+               c.descripcion AS "descripcionCategoria"
         FROM (
-        -- Subconsulta: selecciona todos los productos disponibles en 3 categorías
-            SELECT *,
+        -- Subconsulta: selecciona los productos disponibles de las categorías indicadas
+            SELECT p.*,
                    -- Asigna un número de fila a cada producto dentro de su categoría, ordenado por ID descendente (los más recientes primero)
-                   ROW_NUMBER() OVER (PARTITION BY categoria_id ORDER BY id DESC) AS fila
-            FROM producto
-            WHERE categoria_id IN (:cat1, :cat2, :cat3) -- ← Reemplaza con los 3 IDs reales de las categorías seleccionadas aleatoriamente
-              AND disponible = true  -- Filtra solo los productos que están marcados como disponibles
+                   ROW_NUMBER() OVER (PARTITION BY p.categoria_id ORDER BY p.id DESC) AS fila
+            FROM productos p
+            WHERE p.categoria_id IN (:categoriaIds)
+              AND p.disponible = true  -- Filtra solo los productos que están marcados como disponibles
         ) sub  -- Se le da el alias "sub" a la subconsulta para poder referenciarla afuera
-        WHERE fila <= 15 -- Filtra para quedarnos solo con los primeros 15 productos de cada categoría (fila 1 a 15)
+        JOIN categorias c ON c.id = sub.categoria_id
+        WHERE sub.fila <= :limite -- Se queda solo con los primeros "limite" productos de cada categoría
+        ORDER BY sub.categoria_id, sub.id DESC
         """,
             nativeQuery = true
     )
 
-    //Consulta los 15 primero productos por categoria aleatoria.
-    List<Producto> findTop15ByCategorias(@Param("cat1") Long cat1,
-                                         @Param("cat2") Long cat2,
-                                         @Param("cat3") Long cat3);
+    //Consulta en un solo viaje los "limite" productos más recientes de cada categoría, con los datos de su categoría.
+    List<ProductoCarruselFila> findTopNPorCategorias(@Param("categoriaIds") List<Long> categoriaIds,
+                                                     @Param("limite") int limite);
 
     //=================================================================================================================================
-    // Consulta derivada por nombre: encontrar productos por categoria
-    Page<Producto> findByCategoriaId(Long categoriaId, Pageable pageable);
-
     Page<Producto> findByNombreContainingIgnoreCaseAndIdNotAndCategoriaIdAndPrecioBetweenAndDisponibleTrue(String nombreBase, Long productoId, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Pageable pageable);
 
+    //=================================================================================================================================
+    // Consultas usadas para construir y actualizar el índice de búsqueda en memoria
+
+    @Query("""
+           SELECT p.id AS id, p.nombre AS nombre, p.descripcion AS descripcion, p.imagenUrl AS imagenUrl,
+                  p.precio AS precio, p.stock AS stock, p.vecesVisto AS vecesVisto, p.disponible AS disponible,
+                  p.fechaCreacion AS fechaCreacion, c.id AS categoriaId, c.nombre AS nombreCategoria, c.descripcion AS descripcionCategoria
+           FROM Producto p JOIN p.categoria c
+           """)
+    List<ProductoCarruselFila> findTodosConCategoria();
+
+    @Query("""
+           SELECT p.id AS id, p.nombre AS nombre, p.descripcion AS descripcion, p.imagenUrl AS imagenUrl,
+                  p.precio AS precio, p.stock AS stock, p.vecesVisto AS vecesVisto, p.disponible AS disponible,
+                  p.fechaCreacion AS fechaCreacion, c.id AS categoriaId, c.nombre AS nombreCategoria, c.descripcion AS descripcionCategoria
+           FROM Producto p JOIN p.categoria c
+           WHERE p.id = :id
+           """)
+    Optional<ProductoCarruselFila> findConCategoriaById(@Param("id") Long id);
+
+    // Igual que findConCategoriaById para varios IDs en una sola consulta (sin orden garantizado)
+    @Query("""
+           SELECT p.id AS id, p.nombre AS nombre, p.descripcion AS descripcion, p.imagenUrl AS imagenUrl,
+                  p.precio AS precio, p.stock AS stock, p.vecesVisto AS vecesVisto, p.disponible AS disponible,
+                  p.fechaCreacion AS fechaCreacion, c.id AS categoriaId, c.nombre AS nombreCategoria, c.descripcion AS descripcionCategoria
+           FROM Producto p JOIN p.categoria c
+           WHERE p.id IN :ids
+           """)
+    List<ProductoCarruselFila> findConCategoriaByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Pares [ID de producto, nombre de etiqueta] de todos los productos
+    @Query("SELECT p.id, e.nombre FROM Producto p JOIN p.etiquetas e")
+    List<Object[]> findNombresEtiquetas();
+
+    // Tríos [ID, stock, veces visto] de todos los productos, para refrescar los contadores del índice en memoria
+    @Query("SELECT p.id, p.stock, p.vecesVisto FROM Producto p")
+    List<Object[]> findContadores();
+
+    // Nombres de las etiquetas de un producto
+    @Query("SELECT e.nombre FROM Producto p JOIN p.etiquetas e WHERE p.id = :id")
+    List<String> findNombresEtiquetasByProductoId(@Param("id") Long id);
+
+    // Consultas usadas por el etiquetado automático
+
+    @Query("SELECT p.id AS id, p.nombre AS nombre, p.descripcion AS descripcion FROM Producto p WHERE p.id IN :ids")
+    List<ProductoTextoFila> findTextosByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p.id AS id, p.nombre AS nombre, p.descripcion AS descripcion FROM Producto p ORDER BY p.id")
+    List<ProductoTextoFila> findTodosTextos();
+
+    @Query("SELECT p.id FROM Producto p WHERE p.categoria.id = :categoriaId ORDER BY p.id")
+    List<Long> findIdsByCategoriaId(@Param("categoriaId") Long categoriaId);
 
 }
@@ -1,11 +1,15 @@
 package com.smartshop.productos.repository.custom;
 
+import com.smartshop.productos.dto.FiltroProductos;
+import com.smartshop.productos.dto.PaginaCursorDTO;
 import com.smartshop.productos.dto.ProductoDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface ProductoRepositoryCustom {
 
@@ -28,4 +32,62 @@ public interface ProductoRepositoryCustom {
             Boolean disponibles,          // Filtro para la disponibilidad del producto
             Pageable pageable
     );
+
+    /**
+     Igual que el anterior, pero si conteoEstimado es true y no hay filtros, el total se toma de las estadísticas
+     de PostgreSQL en lugar de contarse. La página devuelta (PaginaProductos) indica si el total es estimado.
+     */
+    Page<ProductoDTO> buscarProductosPaginado(
+            String nombre,
+            Long categoriaId,
+            BigDecimal precioMin,
+            BigDecimal precioMax,
+            Boolean disponibles,
+            Pageable pageable,
+            boolean conteoEstimado
+    );
+
+    //=======================================================================================================================================
+
+    /**
+     * Consulta productos por filtro usando paginación por cursor (keyset) en vez de offset.
+     * El cursor es el valor devuelto en la página anterior (null para la primera página).
+     * El conteo total solo se ejecuta si incluirTotal es true.
+     */
+    PaginaCursorDTO<ProductoDTO> buscarProductosPorCursor(
+            String nombre,
+            Long categoriaId,
+            BigDecimal precioMin,
+            BigDecimal precioMax,
+            Boolean disponibles,
+            Sort sort,                    // Un solo campo de la lista permitida (nombre o precio)
+            String cursor,                // Cursor opaco de la página anterior
+            int tamanio,
+            boolean incluirTotal
+    );
+
+    //=======================================================================================================================================
+
+    /**
+     * Búsqueda de texto completo sobre nombre y descripción, ordenada por relevancia.
+     * Admite prefijos y no distingue acentos. Si la búsqueda de texto completo no está disponible,
+     * se usa la búsqueda por nombre con LIKE.
+     */
+    Page<ProductoDTO> buscarProductosTextoCompleto(
+            String texto,
+            Long categoriaId,
+            BigDecimal precioMin,
+            BigDecimal precioMax,
+            Boolean disponibles,
+            Pageable pageable
+    );
+
+    //=======================================================================================================================================
+
+    /**
+     * Recorre los productos que cumplen los filtros, ordenados por ID, con un cursor de solo avance que trae
+     * {@code tamanioFetch} filas por viaje a la base de datos. Debe consumirse y cerrarse dentro de una transacción.
+     * Si {@code despuesDeId} no es nulo, el recorrido empieza en el primer producto con ID mayor (reanudación por clave).
+     */
+    Stream<ProductoDTO> recorrerProductos(FiltroProductos filtro, Long despuesDeId, int tamanioFetch);
 }
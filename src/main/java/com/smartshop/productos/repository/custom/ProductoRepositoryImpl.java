@@ -1,28 +1,60 @@
 package com.smartshop.productos.repository.custom;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.ConstructorExpression;
+import com.querydsl.core.types.Projections;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.smartshop.productos.cache.ConteoProductosCache;
+import com.smartshop.productos.config.BusquedaTextoCompletoInitializer;
+import com.smartshop.productos.dto.FiltroProductos;
+import com.smartshop.productos.dto.PaginaCursorDTO;
+import com.smartshop.productos.dto.PaginaProductos;
 import com.smartshop.productos.dto.ProductoDTO;
-import com.smartshop.productos.entity.Producto;
+import com.smartshop.productos.entity.QCategoria;
 import com.smartshop.productos.entity.QProducto;
-import com.smartshop.productos.mapper.ProductoMapper;
+import com.smartshop.productos.repository.util.CursorUtil;
 import com.smartshop.productos.repository.util.QuerydslUtil;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository // Marca esta clase como un componente de repositorio de Spring para ser detectado automáticamente
 @RequiredArgsConstructor // Genera automáticamente un constructor con los atributos marcados como final
 public class ProductoRepositoryImpl implements ProductoRepositoryCustom {
 
+    // Proyección que construye ProductoDTO directamente desde las columnas de Producto y Categoria.
+    // Evita cargar entidades en el contexto de persistencia y la consulta diferida de la categoría por cada fila (N+1).
+    private static final ConstructorExpression<ProductoDTO> PRODUCTO_DTO = Projections.constructor(ProductoDTO.class,
+            QProducto.producto.id,
+            QProducto.producto.nombre,
+            QProducto.producto.descripcion,
+            QProducto.producto.imagenUrl,
+            QProducto.producto.precio,
+            QProducto.producto.stock,
+            QProducto.producto.vecesVisto,
+            QProducto.producto.disponible,
+            QCategoria.categoria.nombre,        // nombreCategoria
+            QProducto.producto.fechaCreacion);
+
     private final EntityManager entityManager; // Se utiliza para construir la consulta QueryDSL
-    private final ProductoMapper productoMapper; // Mapper que convierte entidades Producto a DTOs
+    private final ConteoProductosCache conteoProductosCache; // Caché de totales por combinación de filtros
+    private final BusquedaTextoCompletoInitializer busquedaTextoCompleto; // Indica si la búsqueda de texto completo está disponible
 
     //=====================================================================================================================================================================
     @Override
@@ -34,119 +66,319 @@ public class ProductoRepositoryImpl implements ProductoRepositoryCustom {
         // Instanciamos el objeto QProducto (clase generada por QueryDSL a partir de la entidad Producto)
         QProducto producto = QProducto.producto;
 
-        // Instancia de BooleanBuilder para construir condiciones dinámicas
-        BooleanBuilder builder = new BooleanBuilder();
+        // Condiciones dinámicas construidas a partir de los filtros recibidos
+        BooleanBuilder builder = construirFiltros(nombre, categoriaId, precioMin, precioMax, disponibles);
+
+        // Ejecutar la consulta select columnas from producto join categoria where (todas las condiciones del builder),
+        // construyendo cada ProductoDTO directamente desde las columnas (sin cargar entidades)
+        return queryFactory
+                .select(PRODUCTO_DTO)                       // Proyección directa a ProductoDTO
+                .from(producto)                             // Desde la tabla Producto
+                .join(producto.categoria, QCategoria.categoria) // Join explícito para obtener el nombre de la categoría
+                .where(builder)                             // Aplica el filtro dinámico construido
+                .fetch();                                   // Ejecuta y obtiene los resultados como lista
+    }
 
-        // Si se especifica un nombre para buscar...
-        if (nombre != null && !nombre.isBlank()) {
-            // Agrega condición: el nombre del producto debe contener el texto ignorando mayúsculas/minúsculas
-            builder.and(producto.nombre.containsIgnoreCase(nombre));
+    //=====================================================================================================================================================================
+
+    @Override
+    public Page<ProductoDTO> buscarProductosPaginado(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles, Pageable pageable) {
+        return buscarProductosPaginado(nombre, categoriaId, precioMin, precioMax, disponibles, pageable, false);
+    }
+
+    //=====================================================================================================================================================================
+
+    @Override
+    public Page<ProductoDTO> buscarProductosPaginado(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles, Pageable pageable, boolean conteoEstimado) {
+        // Se crea un JPAQueryFactory que será utilizado para construir la consulta con QueryDSL
+        JPAQueryFactory queryFactory = new JPAQueryFactory(entityManager);
+
+        // Instancia de la clase generada por QueryDSL para la entidad Producto
+        QProducto producto = QProducto.producto;
+
+        // Los filtros se normalizan antes de consultar: la consulta y la clave de la caché de totales usan los mismos valores
+        FiltroProductos filtro = new FiltroProductos(nombre, categoriaId, precioMin, precioMax, disponibles).normalizado();
+        BooleanBuilder builder = construirFiltros(filtro.nombre(), filtro.categoriaId(), filtro.precioMin(), filtro.precioMax(), filtro.disponibles());
+        long generacionConteos = conteoProductosCache.generacion();
+
+        // Ejecuta la consulta con los filtros dinámicos aplicados, limitados por la paginación
+        List<ProductoDTO> resultados = queryFactory
+                .select(PRODUCTO_DTO)  // Construye los ProductoDTO directamente desde las columnas
+                .from(producto)
+                .join(producto.categoria, QCategoria.categoria)  // Join explícito en lugar de carga diferida por fila
+                .where(builder)  // Aplica los filtros construidos
+                .offset(pageable.getOffset())  // Aplica el offset para la paginación
+                .limit(pageable.getPageSize())  // Limita el número de resultados por página
+                //.orderBy(getOrderSpecifier(producto, pageable.getSort()))  // Aplica el ordenamiento
+                .orderBy(QuerydslUtil.getOrderSpecifiersForProducto(pageable.getSort()))
+                .fetch();  // Ejecuta la consulta
+
+        // En modo estimado, el listado sin filtros usa la estimación del planificador de PostgreSQL (-1 si no aplica)
+        long estimacion = (conteoEstimado && filtro.sinFiltros()) ? estimarTotalProductos() : -1;
+        long total;
+        boolean totalEstimado = false;
+
+        if (pageable.getOffset() == 0 && resultados.size() < pageable.getPageSize()) {
+            // Si la primera página no se llenó, el total es el tamaño de la página y no hace falta contar
+            total = resultados.size();
+            conteoProductosCache.guardar(filtro, total, generacionConteos);
+        } else if (estimacion >= 0) {
+            total = estimacion;
+            totalEstimado = true;
+        } else {
+            // Consulta para contar el total de productos que cumplen con los filtros sin paginación (se guarda en caché por filtro)
+            total = conteoProductosCache.obtener(filtro, () -> queryFactory
+                    .selectFrom(producto)
+                    .where(builder)
+                    .fetchCount());  // Obtiene el total de productos que cumplen los filtros
         }
 
-        // Si se especifica un ID de categoría...
-        if (categoriaId != null) {
-            // Agrega condición: el ID de la categoría del producto debe coincidir exactamente
-            builder.and(producto.categoria.id.eq(categoriaId));
+        // Devuelve una página con los DTOs, los detalles de la paginación, el total de elementos y si este es estimado
+        return new PaginaProductos<>(resultados, pageable, total, totalEstimado);
+    }
+
+    //=====================================================================================================================================================================
+
+    @Override
+    public PaginaCursorDTO<ProductoDTO> buscarProductosPorCursor(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles,
+                                                                 Sort sort, String cursor, int tamanio, boolean incluirTotal) {
+        JPAQueryFactory queryFactory = new JPAQueryFactory(entityManager);
+        QProducto producto = QProducto.producto;
+
+        // Solo se admite un campo de ordenamiento; el ID se agrega siempre como desempate para que el orden sea total
+        Sort.Order orden = sort.stream().findFirst().orElse(null);
+        String campo = orden != null ? orden.getProperty() : "id";
+        boolean ascendente = orden == null || orden.isAscending();
+
+        // Los filtros se calculan aparte para reutilizarlos en el conteo (sin la condición del cursor)
+        BooleanBuilder filtros = construirFiltros(nombre, categoriaId, precioMin, precioMax, disponibles);
+        BooleanBuilder builder = new BooleanBuilder(filtros);
+
+        // Si hay cursor, se continúa después de la última fila entregada en vez de usar offset
+        if (cursor != null && !cursor.isBlank()) {
+            CursorUtil.Posicion posicion = CursorUtil.decodificar(cursor, campo, ascendente);
+            builder.and(QuerydslUtil.getSeekPredicateForProducto(campo, ascendente, posicion.valor(), posicion.id()));
         }
 
-        // Si se especifica un precio mínimo...
-        if (precioMin != null) {
-            // Agrega condición: el precio del producto debe ser mayor o igual al mínimo
-            builder.and(producto.precio.goe(precioMin));
+        // Se pide una fila extra para saber si existe una página siguiente sin ejecutar un conteo
+        List<ProductoDTO> resultados = queryFactory
+                .select(PRODUCTO_DTO)
+                .from(producto)
+                .join(producto.categoria, QCategoria.categoria)
+                .where(builder)
+                .orderBy(QuerydslUtil.getSeekOrderSpecifiersForProducto(campo, ascendente))
+                .limit(tamanio + 1L)
+                .fetch();
+
+        boolean hayMas = resultados.size() > tamanio;
+        List<ProductoDTO> dtoList = hayMas ? resultados.subList(0, tamanio) : resultados;
+
+        // El cursor siguiente codifica el valor del campo de orden y el ID de la última fila devuelta
+        String siguienteCursor = null;
+        if (hayMas) {
+            ProductoDTO ultimo = dtoList.get(dtoList.size() - 1);
+            siguienteCursor = CursorUtil.codificar(campo, ascendente, QuerydslUtil.getSeekValueForProducto(campo, ultimo), ultimo.getId());
         }
 
-        // Si se especifica un precio máximo...
-        if (precioMax != null) {
-            // Agrega condición: el precio del producto debe ser menor o igual al máximo
-            builder.and(producto.precio.loe(precioMax));
+        // El conteo solo se ejecuta si el cliente lo solicita
+        Long total = null;
+        if (incluirTotal) {
+            total = queryFactory
+                    .selectFrom(producto)
+                    .where(filtros)
+                    .fetchCount();
         }
 
-        // Si se especifica si debe estar disponible...
+        return new PaginaCursorDTO<>(dtoList, tamanio, hayMas, siguienteCursor, total);
+    }
+
+    //=====================================================================================================================================================================
+
+    @Override
+    public Page<ProductoDTO> buscarProductosTextoCompleto(String texto, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles, Pageable pageable) {
+
+        String consulta = construirConsultaTextoCompleto(texto);
+
+        // Si el esquema de texto completo no está disponible o el texto no tiene términos útiles, se usa la búsqueda por LIKE
+        if (!busquedaTextoCompleto.isDisponible() || consulta == null) {
+            return buscarProductosPaginado(texto, categoriaId, precioMin, precioMax, disponibles, pageable);
+        }
+
+        // Condiciones adicionales y sus parámetros (mismos filtros que la búsqueda por QueryDSL)
+        StringBuilder condiciones = new StringBuilder(" WHERE p.busqueda @@ q.consulta");
+        Map<String, Object> parametros = new HashMap<>();
+        parametros.put("consulta", consulta);
+        if (categoriaId != null) {
+            condiciones.append(" AND p.categoria_id = :categoriaId");
+            parametros.put("categoriaId", categoriaId);
+        }
+        if (precioMin != null) {
+            condiciones.append(" AND p.precio >= :precioMin");
+            parametros.put("precioMin", precioMin);
+        }
+        if (precioMax != null) {
+            condiciones.append(" AND p.precio <= :precioMax");
+            parametros.put("precioMax", precioMax);
+        }
         if (disponibles != null) {
-            // Agrega condición: el campo booleano disponible debe coincidir con el valor indicado
-            builder.and(producto.disponible.eq(disponibles));
+            condiciones.append(" AND p.disponible = :disponibles");
+            parametros.put("disponibles", disponibles);
         }
 
-        // Ejecutar la consulta select * from producto where (todas las condiciones del builder)
-        List<Producto> productos = queryFactory
-                .selectFrom(producto)  // Selecciona desde la tabla Producto
-                .where(builder)       // Aplica el filtro dinámico construido
-                .fetch();             // Ejecuta y obtiene los resultados como lista
+        // La consulta se normaliza igual que la columna (sin acentos, diccionario español) y se ordena por relevancia
+        String desde = " FROM productos p"
+                + " JOIN categorias c ON c.id = p.categoria_id"
+                + " CROSS JOIN (SELECT to_tsquery('spanish', productos_unaccent(:consulta)) AS consulta) q";
+
+        Query query = entityManager.createNativeQuery(
+                "SELECT p.id, p.nombre, p.descripcion, p.imagen_url, p.precio, p.stock, p.veces_visto, p.disponible, c.nombre, p.fecha_creacion"
+                        + desde + condiciones
+                        + " ORDER BY ts_rank_cd(p.busqueda, q.consulta) DESC, p.id"
+                        + " LIMIT :limite OFFSET :desplazamiento");
+        parametros.forEach(query::setParameter);
+        query.setParameter("limite", pageable.getPageSize());
+        query.setParameter("desplazamiento", pageable.getOffset());
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> filas = query.getResultList();
+        List<ProductoDTO> resultados = filas.stream()
+                .map(ProductoRepositoryImpl::mapearFila)
+                .toList();
+
+        // Si la primera página no se llenó, el total es el tamaño de la página y no hace falta contar
+        long total;
+        if (pageable.getOffset() == 0 && resultados.size() < pageable.getPageSize()) {
+            total = resultados.size();
+        } else {
+            Query conteo = entityManager.createNativeQuery("SELECT COUNT(*)" + desde + condiciones);
+            parametros.forEach(conteo::setParameter);
+            total = ((Number) conteo.getSingleResult()).longValue();
+        }
 
-        // Convertir cada entidad Producto en su correspondiente ProductoDTO
-        return productos.stream()
-                .map(productoMapper::toDto) // Mapea de Producto → ProductoDTO
-                .toList();                  // Devuelve como lista inmutable (Java 17+)
+        return new PageImpl<>(resultados, pageable, total);
+    }
+
+    //=====================================================================================================================================================================
+
+    // Convierte el texto del usuario en una consulta tsquery: cada palabra se busca como prefijo y todas deben aparecer.
+    // Solo se conservan letras y dígitos, de modo que el texto no pueda alterar la sintaxis de la consulta. Devuelve null si no queda ninguna palabra.
+    private static String construirConsultaTextoCompleto(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return null;
+        }
+
+        String consulta = Arrays.stream(texto.split("[^\\p{L}\\p{N}]+"))
+                .filter(palabra -> !palabra.isBlank())
+                .map(palabra -> palabra + ":*")
+                .collect(Collectors.joining(" & "));
+
+        return consulta.isEmpty() ? null : consulta;
+    }
+
+    // Convierte una fila de la consulta nativa (mismo orden de columnas que la proyección PRODUCTO_DTO) en un ProductoDTO
+    private static ProductoDTO mapearFila(Object[] fila) {
+        return new ProductoDTO(
+                ((Number) fila[0]).longValue(),
+                (String) fila[1],
+                (String) fila[2],
+                (String) fila[3],
+                (BigDecimal) fila[4],
+                fila[5] == null ? null : ((Number) fila[5]).intValue(),
+                fila[6] == null ? 0 : ((Number) fila[6]).intValue(),
+                fila[7] != null && (Boolean) fila[7],
+                (String) fila[8],
+                aLocalDateTime(fila[9])
+        );
+    }
+
+    // Según la versión de Hibernate, las columnas timestamp de consultas nativas llegan como Timestamp o como LocalDateTime
+    private static LocalDateTime aLocalDateTime(Object valor) {
+        if (valor instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) valor;
     }
 
     //=====================================================================================================================================================================
 
     @Override
-    public Page<ProductoDTO> buscarProductosPaginado(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles, Pageable pageable) {
-        // Se crea un JPAQueryFactory que será utilizado para construir la consulta con QueryDSL
+    public Stream<ProductoDTO> recorrerProductos(FiltroProductos filtro, Long despuesDeId, int tamanioFetch) {
         JPAQueryFactory queryFactory = new JPAQueryFactory(entityManager);
+        QProducto producto = QProducto.producto;
+
+        BooleanBuilder builder = construirFiltros(filtro.nombre(), filtro.categoriaId(), filtro.precioMin(), filtro.precioMax(), filtro.disponibles());
+        // Reanudar desde un ID usa el índice de la clave primaria en lugar de saltar filas con OFFSET
+        if (despuesDeId != null) {
+            builder.and(producto.id.gt(despuesDeId));
+        }
+
+        // La proyección a DTO no deja entidades en el contexto de persistencia, así que la memoria no crece con las filas
+        return queryFactory
+                .select(PRODUCTO_DTO)
+                .from(producto)
+                .join(producto.categoria, QCategoria.categoria)
+                .where(builder)
+                .orderBy(producto.id.asc())
+                .setHint(HibernateHints.HINT_FETCH_SIZE, tamanioFetch)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .stream();
+    }
+
+    //=====================================================================================================================================================================
+
+    // Número aproximado de filas de la tabla productos según las estadísticas de PostgreSQL (pg_class.reltuples).
+    // Devuelve -1 si la tabla aún no tiene estadísticas, en cuyo caso se debe contar de forma exacta.
+    private long estimarTotalProductos() {
+        Object estimacion = entityManager
+                .createNativeQuery("SELECT CAST(reltuples AS bigint) FROM pg_class WHERE oid = CAST('productos' AS regclass)")
+                .getSingleResult();
+        return estimacion == null ? -1 : ((Number) estimacion).longValue();
+    }
+
+    //=====================================================================================================================================================================
+
+    // Construye las condiciones dinámicas de búsqueda; los filtros nulos o vacíos se ignoran
+    private BooleanBuilder construirFiltros(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles) {
 
-        // Instancia de la clase generada por QueryDSL para la entidad Producto
         QProducto producto = QProducto.producto;
 
-        // Instancia de BooleanBuilder para agregar las condiciones de los filtros dinámicos
+        // Instancia de BooleanBuilder para construir condiciones dinámicas
         BooleanBuilder builder = new BooleanBuilder();
 
-        // Condición para el nombre del producto, si no es null ni vacío
+        // Si se especifica un nombre para buscar...
         if (nombre != null && !nombre.isBlank()) {
-            builder.and(producto.nombre.containsIgnoreCase(nombre));  // Filtra por nombre, ignorando mayúsculas/minúsculas
+            // Agrega condición: el nombre del producto debe contener el texto ignorando mayúsculas/minúsculas.
+            // Se recortan los espacios igual que en FiltroProductos.normalizado(), para que todas las búsquedas filtren igual
+            builder.and(producto.nombre.containsIgnoreCase(nombre.trim()));
         }
 
-        // Condición para el ID de categoría, si no es null
+        // Si se especifica un ID de categoría...
         if (categoriaId != null) {
-            builder.and(producto.categoria.id.eq(categoriaId));  // Filtra por ID de categoría
+            // Agrega condición: el ID de la categoría del producto debe coincidir exactamente
+            builder.and(producto.categoria.id.eq(categoriaId));
         }
 
-        // Condición para el precio mínimo, si no es null
+        // Si se especifica un precio mínimo...
         if (precioMin != null) {
-            builder.and(producto.precio.goe(precioMin));  // Filtra por precio mínimo
+            // Agrega condición: el precio del producto debe ser mayor o igual al mínimo
+            builder.and(producto.precio.goe(precioMin));
         }
 
-        // Condición para el precio máximo, si no es null
+        // Si se especifica un precio máximo...
         if (precioMax != null) {
-            builder.and(producto.precio.loe(precioMax));  // Filtra por precio máximo
+            // Agrega condición: el precio del producto debe ser menor o igual al máximo
+            builder.and(producto.precio.loe(precioMax));
         }
 
-        // Condición para la disponibilidad, si no es null
+        // Si se especifica si debe estar disponible...
         if (disponibles != null) {
-            builder.and(producto.disponible.eq(disponibles));  // Filtra por disponibilidad
+            // Agrega condición: el campo booleano disponible debe coincidir con el valor indicado
+            builder.and(producto.disponible.eq(disponibles));
         }
 
-        // Ejecuta la consulta con los filtros dinámicos aplicados, limitados por la paginación
-        List<Producto> resultados = queryFactory
-                .selectFrom(producto)  // Selecciona la entidad Producto
-                .where(builder)  // Aplica los filtros construidos
-                .offset(pageable.getOffset())  // Aplica el offset para la paginación
-                .limit(pageable.getPageSize())  // Limita el número de resultados por página
-                //.orderBy(getOrderSpecifier(producto, pageable.getSort()))  // Aplica el ordenamiento
-                .orderBy(QuerydslUtil.getOrderSpecifiersForProducto(pageable.getSort()))
-                .fetch();  // Ejecuta la consulta
-
-        // Consulta para contar el total de productos que cumplen con los filtros sin paginación
-        long total = queryFactory
-                .selectFrom(producto)
-                .where(builder)
-                .fetchCount();  // Obtiene el total de productos que cumplen los filtros
-
-        // Convierte la lista de entidades Producto a DTOs
-        List<ProductoDTO> dtoList = resultados.stream()
-                .map(productoMapper::toDto)  // Convierte cada Producto a ProductoDTO
-                .toList();  // Devuelve la lista de DTOs como una lista inmutable
-
-        // Devuelve una página con los DTOs, los detalles de la paginación y el total de elementos
-        return new PageImpl<>(dtoList, pageable, total);
+        return builder;
     }
 
     //=====================================================================================================================================================================
 
-
-
-    //=====================================================================================================================================================================
-
 }
-
@@ -0,0 +1,48 @@
+package com.smartshop.productos.repository.util;
+
+import com.smartshop.productos.exception.CursorInvalidoException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Codifica y decodifica los cursores opacos de la paginación por cursor (keyset).
+// El cursor contiene el campo de orden, la dirección, el ID y el valor del campo de la última fila entregada.
+public class CursorUtil {
+
+    private static final String SEPARADOR = "|";
+
+    // Posición de la última fila entregada
+    public record Posicion(String valor, Long id) {
+    }
+
+    public static String codificar(String campo, boolean ascendente, String valor, Long id) {
+        // El valor va al final porque puede contener el separador
+        String contenido = campo + SEPARADOR + (ascendente ? "asc" : "desc") + SEPARADOR + id + SEPARADOR + valor;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Decodifica el cursor y verifica que corresponda al mismo ordenamiento de la consulta actual.
+    // Un cursor mal formado o de otro ordenamiento es un error del cliente: CursorInvalidoException (400)
+    public static Posicion decodificar(String cursor, String campo, boolean ascendente) {
+        String[] partes;
+        try {
+            String contenido = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            partes = contenido.split("\\|", 4);
+        } catch (IllegalArgumentException e) {
+            throw new CursorInvalidoException("Cursor no válido");
+        }
+
+        if (partes.length != 4) {
+            throw new CursorInvalidoException("Cursor no válido");
+        }
+        if (!partes[0].equals(campo) || !partes[1].equals(ascendente ? "asc" : "desc")) {
+            throw new CursorInvalidoException("El cursor no corresponde al ordenamiento solicitado");
+        }
+
+        try {
+            return new Posicion(partes[3], Long.parseLong(partes[2]));
+        } catch (NumberFormatException e) {
+            throw new CursorInvalidoException("Cursor no válido");
+        }
+    }
+}
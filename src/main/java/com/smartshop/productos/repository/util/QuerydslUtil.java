@@ -2,11 +2,35 @@ package com.smartshop.productos.repository.util;
 
 import com.querydsl.core.types.Order;
 import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.smartshop.productos.dto.ProductoDTO;
 import com.smartshop.productos.entity.QProducto;
+import com.smartshop.productos.exception.CursorInvalidoException;
 import org.springframework.data.domain.Sort;
 
+import java.math.BigDecimal;
+import java.util.Set;
+
 public class QuerydslUtil {
 
+    // Campos de Producto por los que se permite ordenar (los mismos que admitía findAll(pageable) y que expone ProductoDTO)
+    private static final Set<String> CAMPOS_ORDENABLES = Set.of(
+            "id", "nombre", "descripcion", "precio", "stock", "vecesVisto", "disponible", "fechaCreacion");
+
+    // Campos admitidos por la paginación por cursor: los que tienen condición de continuación (seek) definida abajo
+    private static final Set<String> CAMPOS_CURSOR = Set.of("id", "nombre", "precio");
+
+    // Indica si el campo está en la lista de campos por los que se permite ordenar productos
+    public static boolean esCampoOrdenableProducto(String property) {
+        return CAMPOS_ORDENABLES.contains(property);
+    }
+
+    // Indica si se puede paginar por cursor ordenando por el campo
+    public static boolean esCampoCursorProducto(String property) {
+        return CAMPOS_CURSOR.contains(property);
+    }
+
     // Método que convierte el orden de Spring (Sort) a orden QueryDSL (OrderSpecifier)
     public static OrderSpecifier<?>[] getOrderSpecifiersForProducto(Sort sort) {
 
@@ -28,8 +52,14 @@ public class QuerydslUtil {
 
                     // Usa switch para crear el OrderSpecifier solo si el campo está permitido
                     return switch (property) {
+                        case "id" -> new OrderSpecifier<>(direction, producto.id);
                         case "nombre" -> new OrderSpecifier<>(direction, producto.nombre); // Ordena por nombre
+                        case "descripcion" -> new OrderSpecifier<>(direction, producto.descripcion);
                         case "precio" -> new OrderSpecifier<>(direction, producto.precio); // Ordena por precio
+                        case "stock" -> new OrderSpecifier<>(direction, producto.stock);
+                        case "vecesVisto" -> new OrderSpecifier<>(direction, producto.vecesVisto);
+                        case "disponible" -> new OrderSpecifier<>(direction, producto.disponible);
+                        case "fechaCreacion" -> new OrderSpecifier<>(direction, producto.fechaCreacion);
                         default -> throw new IllegalArgumentException("Campo de ordenamiento no válido: " + property);
                         // Si se intenta ordenar por un campo no permitido, lanza una excepción
                     };
@@ -37,5 +67,55 @@ public class QuerydslUtil {
                 // Convierte el Stream de OrderSpecifiers a un arreglo
                 .toArray(OrderSpecifier[]::new);
     }
-}
 
+    // Orden para la paginación por cursor: el campo solicitado (de la lista permitida) más el ID como desempate
+    public static OrderSpecifier<?>[] getSeekOrderSpecifiersForProducto(String campo, boolean ascendente) {
+        QProducto producto = QProducto.producto;
+        Order direction = ascendente ? Order.ASC : Order.DESC;
+
+        OrderSpecifier<Long> desempate = new OrderSpecifier<>(direction, producto.id);
+        return switch (campo) {
+            case "id" -> new OrderSpecifier[]{desempate};
+            case "nombre" -> new OrderSpecifier[]{new OrderSpecifier<>(direction, producto.nombre), desempate};
+            case "precio" -> new OrderSpecifier[]{new OrderSpecifier<>(direction, producto.precio), desempate};
+            default -> throw new IllegalArgumentException("Campo de ordenamiento no válido: " + campo);
+        };
+    }
+
+    // Condición equivalente a (campo, id) > (valor, ultimoId) (o < si el orden es descendente), para continuar después de la última fila entregada
+    public static Predicate getSeekPredicateForProducto(String campo, boolean ascendente, String valor, Long ultimoId) {
+        QProducto producto = QProducto.producto;
+
+        BooleanExpression desempate = ascendente ? producto.id.gt(ultimoId) : producto.id.lt(ultimoId);
+        return switch (campo) {
+            case "id" -> desempate;
+            case "nombre" -> (ascendente ? producto.nombre.gt(valor) : producto.nombre.lt(valor))
+                    .or(producto.nombre.eq(valor).and(desempate));
+            case "precio" -> {
+                BigDecimal precio = aDecimal(valor);
+                yield (ascendente ? producto.precio.gt(precio) : producto.precio.lt(precio))
+                        .or(producto.precio.eq(precio).and(desempate));
+            }
+            default -> throw new IllegalArgumentException("Campo de ordenamiento no válido: " + campo);
+        };
+    }
+
+    // Obtiene de un producto el valor del campo de ordenamiento, que se guarda en el cursor
+    public static String getSeekValueForProducto(String campo, ProductoDTO producto) {
+        return switch (campo) {
+            case "id" -> "";
+            case "nombre" -> producto.getNombre();
+            case "precio" -> producto.getPrecio().toPlainString();
+            default -> throw new IllegalArgumentException("Campo de ordenamiento no válido: " + campo);
+        };
+    }
+
+    // El valor viene del cursor, que envía el cliente
+    private static BigDecimal aDecimal(String valor) {
+        try {
+            return new BigDecimal(valor);
+        } catch (NumberFormatException e) {
+            throw new CursorInvalidoException("Cursor no válido");
+        }
+    }
+}
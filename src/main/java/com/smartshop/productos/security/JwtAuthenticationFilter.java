@@ -1,7 +1,7 @@
 package com.smartshop.productos.security;
 
-import com.smartshop.productos.security.annotations.RequiresAuth;
 import com.smartshop.productos.security.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,13 +13,8 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.method.HandlerMethod;
-import org.springframework.web.servlet.HandlerExecutionChain;
-import org.springframework.web.servlet.HandlerMapping;
-import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
 import java.io.IOException;
-import java.util.List;
 
 // Este filtro se ejecuta una vez por cada request HTTP
 @Component
@@ -27,8 +22,8 @@ import java.util.List;
 public class    JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
-    //private final HandlerMapping handlerMapping;
-    private final RequestMappingHandlerMapping handlerMapping;
+    // Tabla precalculada de rutas protegidas: evita resolver el handler en cada solicitud
+    private final RutasProtegidasRegistry rutasProtegidas;
 
 
     @Override
@@ -37,22 +32,7 @@ public class    JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
 
 
-        HandlerExecutionChain handler;
-        try {
-            handler = handlerMapping.getHandler(request);
-        } catch (Exception e) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        if (handler == null || !(handler.getHandler() instanceof HandlerMethod handlerMethod)) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        boolean requiresAuth =
-                handlerMethod.hasMethodAnnotation(RequiresAuth.class) ||
-                        handlerMethod.getBeanType().isAnnotationPresent(RequiresAuth.class);
+        boolean requiresAuth = rutasProtegidas.requiereAutenticacion(request);
 
         if (!requiresAuth) {
             filterChain.doFilter(request, response);
@@ -64,38 +44,34 @@ public class    JwtAuthenticationFilter extends OncePerRequestFilter {
         // Obtener el valor del header "Authorization"
         final String authHeader = request.getHeader("Authorization");
 
-        String jwt = null;
-        String username = null;
+        Claims claims = null;
 
         // Verificamos si el header contiene un token con el prefijo "Bearer "
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            jwt = authHeader.substring(7); // Quitamos "Bearer " y dejamos solo el token
-            username = jwtUtil.extractUsername(jwt); // Extraemos el nombre de usuario desde el token
+            String jwt = authHeader.substring(7); // Quitamos "Bearer " y dejamos solo el token
+            // Un solo parseo verifica firma y vigencia; si el token ya se verificó antes, sale de la caché
+            claims = jwtUtil.validarToken(jwt).orElse(null);
         }
 
-        // Si hay un nombre de usuario y aún no hay autenticación activa
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+        // Si el token es válido y aún no hay autenticación activa
+        if (claims != null && claims.getSubject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
             // En un sistema real, buscaríamos al usuario en DB. Aquí lo simulamos.
             UserDetails userDetails = org.springframework.security.core.userdetails.User
-                    .withUsername(username)
+                    .withUsername(claims.getSubject())
                     .password("") // No necesitamos la contraseña aquí
                     .authorities("USER") // Puedes cambiar roles
                     .build();
 
-            // Validamos que el token corresponda al usuario y esté vigente
-            if (jwtUtil.isTokenValid(jwt, username)) {
-
-                // Creamos el objeto de autenticación (con usuario y roles)
-                UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+            // Creamos el objeto de autenticación (con usuario y roles)
+            UsernamePasswordAuthenticationToken authToken =
+                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
 
-                // Detalles adicionales desde la request HTTP
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            // Detalles adicionales desde la request HTTP
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                // Guardamos la autenticación en el contexto de seguridad de Spring
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+            // Guardamos la autenticación en el contexto de seguridad de Spring
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         }
 
         // Continuamos con la ejecución de los demás filtros o endpoint
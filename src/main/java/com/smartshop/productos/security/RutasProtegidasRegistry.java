@@ -0,0 +1,107 @@
+package com.smartshop.productos.security;
+
+import com.smartshop.productos.security.annotations.RequiresAuth;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tabla precalculada de rutas → {@link RequiresAuth}, construida a partir de los mapeos de los controladores.
+ * <p>
+ * Incluye todas las rutas (protegidas o no) ordenadas de la más específica a la menos específica, con el mismo
+ * comparador que usa Spring MVC para elegir el handler; así, la primera ruta que coincide con la solicitud es la que
+ * atendería la solicitud. Se reconstruye en cada refresco del contexto, por lo que los controladores nuevos
+ * se incorporan sin cambios en este registro.
+ */
+@Component
+@Slf4j
+public class RutasProtegidasRegistry {
+
+    private final RequestMappingHandlerMapping handlerMapping;
+
+    // Lista inmutable publicada para las lecturas
+    private volatile List<Ruta> rutas;
+
+    private record Ruta(PathPattern patron, Set<RequestMethod> metodos, boolean requiereAutenticacion) {
+
+        boolean coincide(PathContainer ruta, RequestMethod metodo) {
+            return (metodos.isEmpty() || metodos.contains(metodo)) && patron.matches(ruta);
+        }
+    }
+
+    public RutasProtegidasRegistry(RequestMappingHandlerMapping handlerMapping) {
+        this.handlerMapping = handlerMapping;
+    }
+
+    //===============================================================================================================================================
+
+    /**
+     * Indica si el handler que atiende la solicitud está anotado con {@link RequiresAuth}.
+     */
+    public boolean requiereAutenticacion(HttpServletRequest request) {
+        List<Ruta> actuales = rutas;
+        if (actuales == null) {
+            actuales = construir();
+        }
+
+        PathContainer ruta = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        RequestMethod metodo = RequestMethod.resolve(request.getMethod());
+        // HEAD se atiende con los handlers de GET
+        if (metodo == RequestMethod.HEAD) {
+            metodo = RequestMethod.GET;
+        }
+
+        for (Ruta candidata : actuales) {
+            if (candidata.coincide(ruta, metodo)) {
+                return candidata.requiereAutenticacion();
+            }
+        }
+        return false;
+    }
+
+    //===============================================================================================================================================
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void alRefrescarContexto() {
+        construir();
+    }
+
+    private List<Ruta> construir() {
+        List<Ruta> nuevas = new ArrayList<>();
+        for (Map.Entry<RequestMappingInfo, HandlerMethod> mapeo : handlerMapping.getHandlerMethods().entrySet()) {
+            HandlerMethod handlerMethod = mapeo.getValue();
+            boolean requiereAutenticacion = handlerMethod.hasMethodAnnotation(RequiresAuth.class)
+                    || handlerMethod.getBeanType().isAnnotationPresent(RequiresAuth.class);
+            Set<RequestMethod> metodos = mapeo.getKey().getMethodsCondition().getMethods();
+
+            for (String patron : mapeo.getKey().getPatternValues()) {
+                nuevas.add(new Ruta(PathPatternParser.defaultInstance.parse(patron), metodos, requiereAutenticacion));
+            }
+        }
+
+        // Más específica primero. Ante dos rutas igual de específicas, primero la protegida (se intenta autenticar de más, nunca de menos)
+        nuevas.sort(Comparator.comparing(Ruta::patron, PathPattern.SPECIFICITY_COMPARATOR)
+                .thenComparing(ruta -> !ruta.requiereAutenticacion()));
+
+        List<Ruta> publicadas = List.copyOf(nuevas);
+        rutas = publicadas;
+        log.info("Registro de rutas construido: {} rutas, {} protegidas con @RequiresAuth",
+                publicadas.size(), publicadas.stream().filter(Ruta::requiereAutenticacion).count());
+        return publicadas;
+    }
+}
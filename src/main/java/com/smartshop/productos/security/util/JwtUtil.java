@@ -1,11 +1,23 @@
 package com.smartshop.productos.security.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Component
@@ -14,9 +26,69 @@ public class JwtUtil {
     // Clave secreta usada para firmar y verificar los tokens JWT
     private static final String SECRET_KEY = "MI_SECRETA_CLAVE_DE_256_BITS_DE_EJEMPLO123456789012345678901234567890";
 
-    // Devuelve la clave secreta convertida al tipo que necesita JJWT
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    // La clave y el parser son inmutables y seguros entre hilos: se construyen una sola vez
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(signingKey) // Usamos la clave secreta para validar el token
+            .build();
+
+    // Claims ya verificados, indexados por el hash SHA-256 del token (no se guarda el token) hasta su expiración
+    private final Cache<String, Claims> tokensVerificados;
+
+    public JwtUtil(MeterRegistry meterRegistry,
+                   @Value("${seguridad.jwt.cache.tamanio-maximo:10000}") long tamanioMaximo) {
+        this.tokensVerificados = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String clave, Claims claims, long currentTime) {
+                        return nanosHastaExpiracion(claims);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String clave, Claims claims, long currentTime, long currentDuration) {
+                        return nanosHastaExpiracion(claims);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String clave, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, tokensVerificados, "seguridad.jwt");
+    }
+
+    /**
+     * Verifica firma y expiración del token con un solo parseo y devuelve sus claims.
+     * Devuelve vacío si el token es inválido o está vencido.
+     */
+    public Optional<Claims> validarToken(String token) {
+        String clave = hash(token);
+
+        Claims claims = tokensVerificados.getIfPresent(clave);
+        if (claims == null) {
+            try {
+                claims = parser.parseClaimsJws(token).getBody();
+            } catch (JwtException | IllegalArgumentException e) {
+                // Firma inválida, token mal formado o vencido
+                return Optional.empty();
+            }
+            // Sin fecha de expiración no se guarda en caché
+            if (claims.getExpiration() == null) {
+                return Optional.of(claims);
+            }
+            tokensVerificados.put(clave, claims);
+        }
+
+        // La caché expira en "exp", pero se vuelve a comprobar por si la entrada se leyó justo en el límite
+        if (claims.getExpiration() != null && claims.getExpiration().before(new Date())) {
+            tokensVerificados.invalidate(clave);
+            return Optional.empty();
+        }
+        return Optional.of(claims);
     }
 
     // Extrae el nombre de usuario (sub = subject) desde el token
@@ -31,28 +103,16 @@ public class JwtUtil {
 
     // Extrae cualquier información (claim) del token usando una función
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = validarToken(token)
+                .orElseThrow(() -> new MalformedJwtException("Token inválido o vencido"));
         return claimsResolver.apply(claims);
     }
 
-    // Devuelve todos los "claims" del token (información embebida)
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey()) // Usamos la clave secreta para validar el token
-                .build()
-                .parseClaimsJws(token)
-                .getBody(); // Obtenemos el contenido del token (los claims)
-    }
-
-    // Verifica si el token ya expiró
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
     // Valida si el token es válido y corresponde al usuario esperado
     public boolean isTokenValid(String token, String username) {
-        final String tokenUsername = extractUsername(token);
-        return (tokenUsername.equals(username) && !isTokenExpired(token));
+        return validarToken(token)
+                .map(claims -> username.equals(claims.getSubject()))
+                .orElse(false);
     }
 
     // Genera un nuevo token JWT dado un nombre de usuario
@@ -61,8 +121,21 @@ public class JwtUtil {
                 .setSubject(usuarioId.toString()) // "sub": lo usamos como nombre de usuario
                 .setIssuedAt(new Date()) // Fecha de creación
                 .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)) // Expira en 10 horas
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256) // Firma con HMAC-SHA256
+                .signWith(signingKey, SignatureAlgorithm.HS256) // Firma con HMAC-SHA256
                 .compact(); // Lo convierte en un string JWT
     }
-}
 
+    private static long nanosHastaExpiracion(Claims claims) {
+        long milis = claims.getExpiration().getTime() - System.currentTimeMillis();
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, milis));
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.smartshop.productos.service;
+
+import com.smartshop.productos.dto.ResultadoCargaDTO;
+
+import java.io.InputStream;
+
+public interface CargaProductosService {
+
+    // Crea los productos leídos del flujo (arreglo JSON o NDJSON de ProductoCreateDTO); las filas con error se informan sin detener la carga
+    ResultadoCargaDTO cargarProductos(InputStream entrada);
+    //================================================================================================================
+}
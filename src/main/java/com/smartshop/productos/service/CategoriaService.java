@@ -6,4 +6,7 @@ import java.util.List;
 
 public interface CategoriaService {
     List<CategoriaDTO> listarCategorias();
+
+    // Versión del árbol de categorías, usada como ETag del listado
+    String versionCategorias();
 }
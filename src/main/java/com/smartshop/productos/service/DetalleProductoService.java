@@ -0,0 +1,11 @@
+package com.smartshop.productos.service;
+
+import com.smartshop.productos.dto.ProductoDetalleResponse;
+
+public interface DetalleProductoService {
+
+    // Detalle del producto con sus similares; registra la vista del usuario. Si una parte opcional no responde a
+    // tiempo, se devuelve el producto con esa parte vacía y marcada como omitida
+    ProductoDetalleResponse consultarDetalle(Long productoId, Long usuarioId, int pagina, int tamanio);
+    //================================================================================================================
+}
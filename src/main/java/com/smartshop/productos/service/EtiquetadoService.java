@@ -0,0 +1,28 @@
+package com.smartshop.productos.service;
+
+import java.util.List;
+
+public interface EtiquetadoService {
+
+    // Genera y guarda las etiquetas de un producto en el momento; devuelve las etiquetas obtenidas
+    List<String> etiquetarAhora(Long productoId);
+    //================================================================================================================
+
+    // Igual que etiquetarAhora, pero con el extractor local (sin llamadas externas); las etiquetas quedan con tipo "local".
+    // Lanza ExtractorNoDisponibleException (503) si el extractor local no está habilitado
+    List<String> etiquetarLocalmente(Long productoId);
+    //================================================================================================================
+
+    // Etiqueta todo el catálogo con el extractor local; devuelve la cantidad de productos procesados.
+    // Lanza EtiquetadoEnCursoException (409) si ya hay un etiquetado del catálogo en curso
+    int etiquetarCatalogoLocalmente();
+    //================================================================================================================
+
+    // Agrega el producto a la cola de etiquetado; devuelve false si la cola está llena
+    boolean encolar(Long productoId);
+    //================================================================================================================
+
+    // Agrega a la cola todos los productos de una categoría; devuelve cuántos se pudieron encolar
+    int encolarCategoria(Long categoriaId);
+    //================================================================================================================
+}
@@ -0,0 +1,14 @@
+package com.smartshop.productos.service;
+
+import com.smartshop.productos.dto.FiltroProductos;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+public interface ExportacionProductosService {
+
+    enum Formato { NDJSON, CSV }
+
+    // Reserva un lugar entre las exportaciones simultáneas (503 si no hay) y devuelve el cuerpo que escribe los productos
+    // que cumplen los filtros, fila por fila
+    StreamingResponseBody exportar(FiltroProductos filtro, Formato formato);
+    //================================================================================================================
+}
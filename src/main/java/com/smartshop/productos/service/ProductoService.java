@@ -1,5 +1,6 @@
 package com.smartshop.productos.service;
 
+import com.smartshop.productos.cache.ProductoCacheado;
 import com.smartshop.productos.dto.*;
 import org.springframework.data.domain.Page;
 
@@ -41,12 +42,19 @@ public interface ProductoService {
 
     // 5. Recomendaciones inteligentes (básicas)
     Page<ProductoDTO> recomendarProductosSimilares(Long productoId, int pagina, int tamanio);
+
+    // Igual que la anterior, a partir de un producto ya cargado (no lo vuelve a buscar)
+    Page<ProductoDTO> recomendarProductosSimilares(ProductoCacheado productoBase, int pagina, int tamanio);
     //================================================================================================================
 
     // 8. Etiquetado inteligente / dinámico
     List<String> generarEtiquetasAutomaticas(Long productoId);
     //================================================================================================================
 
+    // Igual que generarEtiquetasAutomaticas, con el extractor local (TF-IDF/RAKE) en lugar del modelo remoto
+    List<String> generarEtiquetasLocales(Long productoId);
+    //================================================================================================================
+
     // 9. Validación de disponibilidad
     boolean estaDisponible(Long productoId, int cantidadDeseada);
     //================================================================================================================
@@ -55,8 +63,9 @@ public interface ProductoService {
     List<CarruselDTO> obtenerCarruselesDeProductos();
     //================================================================================================================
 
-    //Método para buscar productos páginados, tomando en cuenta, la página seleccionada y los filtros
-    Page<ProductoDTO> buscarProductosPaginado(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles, int pagina, int tamanio, String ordenarPor, String direccion);
+    //Método para buscar productos páginados, tomando en cuenta, la página seleccionada y los filtros.
+    //Si conteoEstimado es true y no hay filtros, el total es una estimación de PostgreSQL.
+    Page<ProductoDTO> buscarProductosPaginado(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles, int pagina, int tamanio, String ordenarPor, String direccion, boolean conteoEstimado);
 
     //================================================================================================================
     Page<ProductoDTO> obtenerProductosPorCategoriaPaginado(Long categoriaId, int pagina, int tamanio);
@@ -65,9 +74,22 @@ public interface ProductoService {
 
     ProductoDTO consultarProductoYRecomendar(Long productoId, Long usuarioId);
 
+    // Producto con el ID de su categoría, desde la caché de productos; lanza ProductoNoEncontradoException si no existe
+    ProductoCacheado consultarProductoBase(Long productoId);
+
     Page<ProductoDTO> consultarRecomendacionesUltimoProductoUsuarioVisto(Long usuarioId, int pagina, int tamanio);
 
+    // Últimos productos distintos vistos por el usuario, del más reciente al más antiguo
+    List<ProductoDTO> consultarUltimosVistos(Long usuarioId, int cantidad);
+
+    //================================================================================================================
 
+    //Método para buscar productos con filtros usando paginación por cursor (sin offset y con conteo opcional)
+    PaginaCursorDTO<ProductoDTO> buscarProductosPorCursor(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles, String cursor, int tamanio, String ordenarPor, String direccion, boolean incluirTotal);
 
-}
+    //================================================================================================================
 
+    //Búsqueda de texto completo por nombre y descripción, ordenada por relevancia (con LIKE como alternativa)
+    Page<ProductoDTO> buscarProductosTextoCompleto(String texto, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles, int pagina, int tamanio);
+
+}
@@ -0,0 +1,21 @@
+package com.smartshop.productos.service;
+
+import java.util.List;
+
+public interface RegistroVistasService {
+
+    // Registra la vista de un producto; el contador y el historial se escriben en lote más tarde
+    void registrarVista(Long productoId, Long usuarioId);
+    //================================================================================================================
+
+    // Escribe en la base de datos las vistas acumuladas hasta el momento
+    void volcarPendientes();
+    //================================================================================================================
+    // IDs de los últimos productos distintos vistos por el usuario, del más reciente al más antiguo
+    List<Long> ultimosVistos(Long usuarioId, int cantidad);
+    //================================================================================================================
+
+    // Elimina del historial las vistas más antiguas que el período de retención; devuelve la cantidad de filas borradas
+    int purgarHistorialAntiguo();
+    //================================================================================================================
+}
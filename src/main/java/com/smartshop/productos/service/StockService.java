@@ -0,0 +1,43 @@
+package com.smartshop.productos.service;
+
+import com.smartshop.productos.dto.ItemReservaDTO;
+import com.smartshop.productos.dto.ReservaStockDTO;
+
+import java.util.List;
+
+public interface StockService {
+
+    // Suma (cantidad > 0) o descuenta (cantidad < 0) stock en una sola sentencia; devuelve el stock resultante
+    int ajustarStock(Long productoId, int cantidad);
+    //================================================================================================================
+
+    int obtenerStockDisponible(Long productoId);
+    //================================================================================================================
+
+    boolean estaDisponible(Long productoId, int cantidadDeseada);
+    //================================================================================================================
+
+    // Descuenta el stock de todos los productos o de ninguno y devuelve la reserva con su vencimiento
+    ReservaStockDTO reservar(List<ItemReservaDTO> items);
+    //================================================================================================================
+
+    // Confirma la reserva: el stock queda descontado definitivamente
+    void confirmarReserva(String reservaId);
+    //================================================================================================================
+
+    // Cancela la reserva y devuelve el stock
+    void liberarReserva(String reservaId);
+    //================================================================================================================
+
+    // Reparte el stock del producto en varias filas para repartir la contención de ventas concurrentes
+    void fragmentarStock(Long productoId, int fragmentos);
+    //================================================================================================================
+
+    // Vuelve a guardar el stock en una sola fila
+    void desfragmentarStock(Long productoId);
+    //================================================================================================================
+
+    // Reemplaza el stock total de un producto fragmentado, repartiéndolo entre sus fragmentos
+    void repartirStockFragmentado(Long productoId, int stock);
+    //================================================================================================================
+}
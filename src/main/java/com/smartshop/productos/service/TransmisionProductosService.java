@@ -0,0 +1,17 @@
+package com.smartshop.productos.service;
+
+import com.smartshop.productos.dto.FiltroProductos;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+public interface TransmisionProductosService {
+
+    // Envía como eventos SSE los productos que cumplen los filtros, en orden de ID, a medida que llegan de la base de datos
+    SseEmitter transmitirEventos(FiltroProductos filtro, Long despuesDeId, Integer limite);
+    //================================================================================================================
+
+    // Reserva un lugar entre las transmisiones NDJSON simultáneas (503 si no hay) y devuelve el cuerpo que escribe los
+    // productos, una línea por producto
+    StreamingResponseBody transmitirNdjson(FiltroProductos filtro, Long despuesDeId, Integer limite);
+    //================================================================================================================
+}
@@ -0,0 +1,246 @@
+package com.smartshop.productos.service.impl;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.smartshop.productos.dto.ErrorCargaDTO;
+import com.smartshop.productos.dto.ProductoCreateDTO;
+import com.smartshop.productos.dto.ResultadoCargaDTO;
+import com.smartshop.productos.entity.Categoria;
+import com.smartshop.productos.entity.Producto;
+import com.smartshop.productos.event.ProductosCreadosEvent;
+import com.smartshop.productos.mapper.ProductoMapper;
+import com.smartshop.productos.repository.CategoriaRepository;
+import com.smartshop.productos.service.CargaProductosService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Alta masiva de productos.
+ * <p>
+ * Las filas se leen del flujo de a una (arreglo JSON o NDJSON, sin cargar todo el cuerpo en memoria) y se procesan en
+ * bloques de {@code productos.carga.tamanio-lote}: validación de cada fila, verificación de todas las categorías del
+ * bloque con una sola consulta y persistencia en una transacción por bloque. Con la secuencia de IDs en bloques,
+ * Hibernate agrupa los INSERT en lotes JDBC (y el driver los reescribe como INSERT de varias filas).
+ * <p>
+ * Si un bloque falla al escribirse, se reintenta fila por fila para aislar las filas con error sin descartar el resto.
+ * Por cada bloque confirmado se publica un {@link ProductosCreadosEvent} con los IDs creados, para que los índices en
+ * memoria agreguen solo esos productos en vez de reconstruirse.
+ */
+@Service
+@Slf4j
+public class CargaProductosServiceImpl implements CargaProductosService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final CategoriaRepository categoriaRepository;
+    private final ProductoMapper productoMapper;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader lectorProductos;
+    private final int tamanioLote;
+
+    private final Counter filasCreadas;
+    private final Counter filasConError;
+    private final Timer tiempoCarga;
+
+    private record Fila(long numero, ProductoCreateDTO producto) {
+    }
+
+    public CargaProductosServiceImpl(CategoriaRepository categoriaRepository,
+                                     ProductoMapper productoMapper,
+                                     Validator validator,
+                                     ApplicationEventPublisher eventPublisher,
+                                     PlatformTransactionManager transactionManager,
+                                     ObjectMapper objectMapper,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${productos.carga.tamanio-lote:500}") int tamanioLote) {
+        this.categoriaRepository = categoriaRepository;
+        this.productoMapper = productoMapper;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lectorProductos = objectMapper.readerFor(ProductoCreateDTO.class);
+        this.tamanioLote = tamanioLote;
+
+        this.filasCreadas = Counter.builder("productos.carga.filas")
+                .description("Filas procesadas en cargas masivas de productos")
+                .tag("resultado", "creado")
+                .register(meterRegistry);
+        this.filasConError = Counter.builder("productos.carga.filas")
+                .description("Filas procesadas en cargas masivas de productos")
+                .tag("resultado", "error")
+                .register(meterRegistry);
+        this.tiempoCarga = Timer.builder("productos.carga.duracion")
+                .description("Duración de cada carga masiva de productos")
+                .register(meterRegistry);
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public ResultadoCargaDTO cargarProductos(InputStream entrada) {
+        long inicio = System.nanoTime();
+        List<ErrorCargaDTO> errores = new ArrayList<>();
+        long recibidos = 0;
+        long creados = 0;
+
+        // readValues recorre tanto los elementos de un arreglo JSON como una secuencia de objetos (NDJSON)
+        try (MappingIterator<ProductoCreateDTO> filas = lectorProductos.readValues(entrada)) {
+            List<Fila> bloque = new ArrayList<>(tamanioLote);
+            while (true) {
+                ProductoCreateDTO producto;
+                try {
+                    if (!filas.hasNextValue()) {
+                        break;
+                    }
+                    producto = filas.nextValue();
+                } catch (IOException | RuntimeException e) {
+                    // Después de un error de formato no se puede ubicar con certeza el comienzo de la fila siguiente
+                    errores.add(new ErrorCargaDTO(recibidos + 1, "Formato inválido; se detuvo la lectura: " + e.getMessage()));
+                    break;
+                }
+
+                recibidos++;
+                bloque.add(new Fila(recibidos, producto));
+                if (bloque.size() == tamanioLote) {
+                    creados += procesarBloque(bloque, errores);
+                    bloque.clear();
+                }
+            }
+            creados += procesarBloque(bloque, errores);
+        } catch (IOException e) {
+            errores.add(new ErrorCargaDTO(recibidos + 1, "No se pudo leer el cuerpo de la solicitud: " + e.getMessage()));
+        }
+
+        long duracionNanos = System.nanoTime() - inicio;
+        tiempoCarga.record(duracionNanos, TimeUnit.NANOSECONDS);
+        double porSegundo = duracionNanos == 0 ? 0 : creados * 1_000_000_000.0 / duracionNanos;
+
+        log.info("Carga masiva de productos: {} recibidos, {} creados, {} con error en {} ms ({} productos/s).",
+                recibidos, creados, errores.size(), duracionNanos / 1_000_000, Math.round(porSegundo));
+        return new ResultadoCargaDTO(recibidos, creados, recibidos - creados, errores, duracionNanos / 1_000_000, porSegundo);
+    }
+
+    //===============================================================================================================================================
+
+    // Valida y guarda un bloque; devuelve la cantidad de productos creados
+    private int procesarBloque(List<Fila> bloque, List<ErrorCargaDTO> errores) {
+        if (bloque.isEmpty()) {
+            return 0;
+        }
+
+        List<Fila> validas = new ArrayList<>(bloque.size());
+        for (Fila fila : bloque) {
+            String error = validar(fila.producto());
+            if (error == null) {
+                validas.add(fila);
+            } else {
+                registrarError(errores, fila, error);
+            }
+        }
+
+        // Todas las categorías del bloque en una sola consulta
+        Set<Long> categorias = validas.stream().map(fila -> fila.producto().getCategoriaId()).collect(Collectors.toCollection(HashSet::new));
+        Set<Long> existentes = categorias.isEmpty() ? Set.of() : categoriaRepository.findIdsExistentes(categorias);
+        validas.removeIf(fila -> {
+            if (existentes.contains(fila.producto().getCategoriaId())) {
+                return false;
+            }
+            registrarError(errores, fila, "La categoría " + fila.producto().getCategoriaId() + " no existe");
+            return true;
+        });
+
+        if (validas.isEmpty()) {
+            return 0;
+        }
+        try {
+            publicarCreados(guardar(validas));
+            filasCreadas.increment(validas.size());
+            return validas.size();
+        } catch (RuntimeException e) {
+            log.warn("Falló la escritura de un bloque de {} productos; se reintenta fila por fila", validas.size(), e);
+        }
+
+        List<Long> creados = new ArrayList<>(validas.size());
+        for (Fila fila : validas) {
+            try {
+                creados.addAll(guardar(List.of(fila)));
+                filasCreadas.increment();
+            } catch (RuntimeException e) {
+                registrarError(errores, fila, "Error al guardar: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            }
+        }
+        publicarCreados(creados);
+        return creados.size();
+    }
+
+    // Guarda las filas en una transacción y devuelve los IDs asignados
+    private List<Long> guardar(List<Fila> filas) {
+        return transactionTemplate.execute(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(tamanioLote);
+            List<Long> ids = new ArrayList<>(filas.size());
+            for (Fila fila : filas) {
+                Producto producto = productoMapper.toEntityFromCreateDTO(fila.producto());
+                // Referencia sin consulta: la categoría ya se verificó para todo el bloque
+                producto.setCategoria(entityManager.getReference(Categoria.class, fila.producto().getCategoriaId()));
+                producto.setVecesVisto(0);
+                producto.setDisponible(producto.getStock() > 0);
+                entityManager.persist(producto);
+                ids.add(producto.getId());
+            }
+            entityManager.flush();
+            entityManager.clear();
+            return ids;
+        });
+    }
+
+    private void publicarCreados(List<Long> ids) {
+        if (!ids.isEmpty()) {
+            eventPublisher.publishEvent(new ProductosCreadosEvent(List.copyOf(ids)));
+        }
+    }
+
+    private String validar(ProductoCreateDTO producto) {
+        if (producto == null) {
+            return "Fila vacía";
+        }
+        Set<ConstraintViolation<ProductoCreateDTO>> violaciones = validator.validate(producto);
+        if (violaciones.isEmpty()) {
+            return null;
+        }
+        return violaciones.stream()
+                .map(violacion -> violacion.getPropertyPath() + ": " + violacion.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private void registrarError(List<ErrorCargaDTO> errores, Fila fila, String mensaje) {
+        filasConError.increment();
+        errores.add(new ErrorCargaDTO(fila.numero(), mensaje));
+    }
+}
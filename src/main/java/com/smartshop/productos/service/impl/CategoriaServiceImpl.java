@@ -1,13 +1,11 @@
 package com.smartshop.productos.service.impl;
 
+import com.smartshop.productos.cache.RegistroCategorias;
 import com.smartshop.productos.dto.CategoriaDTO;
-import com.smartshop.productos.mapper.CategoriaMapper;
-import com.smartshop.productos.repository.CategoriaRepository;
 import com.smartshop.productos.service.CategoriaService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -17,16 +15,17 @@ import java.util.List;
 @Slf4j
 public class CategoriaServiceImpl implements CategoriaService {
 
-    private final CategoriaRepository categoriaRepository;
-    private final CategoriaMapper categoriaMapper;
+    // Árbol de categorías en memoria: el listado no consulta la base de datos
+    private final RegistroCategorias registroCategorias;
+
     @Override
-    @Transactional(readOnly = true)
     public List<CategoriaDTO> listarCategorias() {
         log.info("Listando todas las categorias");
-        return categoriaRepository
-                .findByCategoriaPadreIsNull()
-                .stream()
-                .map(categoriaMapper::toDTO)
-                .toList();
+        return registroCategorias.raices();
+    }
+
+    @Override
+    public String versionCategorias() {
+        return registroCategorias.version();
     }
 }
@@ -0,0 +1,150 @@
+package com.smartshop.productos.service.impl;
+
+import com.smartshop.productos.cache.ProductoCacheado;
+import com.smartshop.productos.config.FabricaHilos;
+import com.smartshop.productos.dto.ProductoDTO;
+import com.smartshop.productos.dto.ProductoDetalleResponse;
+import com.smartshop.productos.service.DetalleProductoService;
+import com.smartshop.productos.service.ProductoService;
+import com.smartshop.productos.service.RegistroVistasService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Arma la respuesta del detalle de un producto.
+ * <p>
+ * El producto base se carga una sola vez (desde la caché de productos) y, a partir de él, la búsqueda de similares
+ * se ejecuta en un ejecutor acotado con su propio tiempo máximo mientras se registra la vista en el hilo de la
+ * solicitud (el registro solo acumula en memoria; mandarlo a otro hilo costaría más que hacerlo).
+ * Si no se encuentra el producto, la solicitud falla como antes; si una sección vence o falla, se responde igual con
+ * el producto y la sección se informa en {@code seccionesOmitidas}. Si el ejecutor está saturado, los similares
+ * también se omiten en lugar de encolarse sin límite.
+ */
+@Service
+@Slf4j
+public class DetalleProductoServiceImpl implements DetalleProductoService {
+
+    private static final String SECCION_VISTA = "vista";
+    private static final String SECCION_RECOMENDACIONES = "recomendaciones";
+
+    private final ProductoService productoService;
+    private final RegistroVistasService registroVistasService;
+    private final Duration timeoutRecomendaciones;
+    private final ThreadPoolExecutor ejecutor;
+    private final MeterRegistry meterRegistry;
+
+    public DetalleProductoServiceImpl(ProductoService productoService,
+                                      RegistroVistasService registroVistasService,
+                                      FabricaHilos fabricaHilos,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${productos.detalle.hilos:16}") int hilos,
+                                      @Value("${productos.detalle.cola:200}") int capacidadCola,
+                                      @Value("${productos.detalle.timeout-recomendaciones:300ms}") Duration timeoutRecomendaciones) {
+        this.productoService = productoService;
+        this.registroVistasService = registroVistasService;
+        this.timeoutRecomendaciones = timeoutRecomendaciones;
+        this.meterRegistry = meterRegistry;
+        this.ejecutor = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola), fabricaHilos.crear("detalle-producto"));
+    }
+
+    @PreDestroy
+    void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public ProductoDetalleResponse consultarDetalle(Long productoId, Long usuarioId, int pagina, int tamanio) {
+        ProductoCacheado productoBase = productoService.consultarProductoBase(productoId);
+
+        // Las recomendaciones reciben una copia: el DTO base se modifica abajo mientras la rama puede seguir en curso
+        ProductoCacheado copiaBase = productoBase.copia();
+        CompletableFuture<Page<ProductoDTO>> recomendaciones = ejecutarRama(timeoutRecomendaciones,
+                () -> productoService.recomendarProductosSimilares(copiaBase, pagina, tamanio));
+
+        List<String> seccionesOmitidas = new ArrayList<>(2);
+
+        ProductoDTO producto = productoBase.producto();
+        if (registrarVista(productoId, usuarioId)) {
+            producto.setVecesVisto(producto.getVecesVisto() + 1);
+        } else {
+            seccionesOmitidas.add(SECCION_VISTA);
+        }
+
+        Page<ProductoDTO> similares = resultado(recomendaciones, SECCION_RECOMENDACIONES, productoId);
+        if (similares == null) {
+            similares = Page.empty(PageRequest.of(pagina, tamanio));
+            seccionesOmitidas.add(SECCION_RECOMENDACIONES);
+        }
+
+        return new ProductoDetalleResponse(producto, similares, seccionesOmitidas);
+    }
+
+    //===============================================================================================================================================
+
+    // Registra la vista en este hilo; devuelve false si falló, para responder igual sin contarla
+    private boolean registrarVista(Long productoId, Long usuarioId) {
+        try {
+            registroVistasService.registrarVista(productoId, usuarioId);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Detalle del producto {}: la sección '{}' falló", productoId, SECCION_VISTA, e);
+            contarOmitida(SECCION_VISTA, e);
+            return false;
+        }
+    }
+
+    private <T> CompletableFuture<T> ejecutarRama(Duration timeout, Supplier<T> rama) {
+        try {
+            return CompletableFuture.supplyAsync(rama, ejecutor)
+                    .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // Ejecutor saturado (RejectedExecutionException): se responde sin esta sección
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Espera la rama (ya acotada por su timeout); devuelve null si venció, falló o fue rechazada
+    private <T> T resultado(CompletableFuture<T> rama, String seccion, Long productoId) {
+        try {
+            return rama.join();
+        } catch (CompletionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof TimeoutException) {
+                log.warn("Detalle del producto {}: la sección '{}' no respondió a tiempo", productoId, seccion);
+            } else {
+                log.warn("Detalle del producto {}: la sección '{}' falló", productoId, seccion, causa);
+            }
+            contarOmitida(seccion, causa);
+            return null;
+        }
+    }
+
+    private void contarOmitida(String seccion, Throwable causa) {
+        Counter.builder("productos.detalle.omitidas")
+                .description("Secciones del detalle de producto omitidas por timeout, error o saturación")
+                .tag("seccion", seccion)
+                .tag("causa", causa instanceof TimeoutException ? "timeout" : causa.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,372 @@
+package com.smartshop.productos.service.impl;
+
+import com.smartshop.productos.config.FabricaHilos;
+import com.smartshop.productos.etiquetado.ExtractorEtiquetas;
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import com.smartshop.productos.exception.EtiquetadoEnCursoException;
+import com.smartshop.productos.exception.ExtractorNoDisponibleException;
+import com.smartshop.productos.exception.ProductoNoEncontradoException;
+import com.smartshop.productos.projection.ProductoTextoFila;
+import com.smartshop.productos.repository.ProductoRepository;
+import com.smartshop.productos.service.EtiquetadoService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Etiquetado automático de productos con un {@link ExtractorEtiquetas}.
+ * <p>
+ * Los productos se encolan por ID y un grupo fijo de hilos los procesa en lotes: se leen los textos en una
+ * transacción de solo lectura, se envía el lote completo al extractor en una sola llamada (sin conexión a la base
+ * tomada) y se guardan todas las etiquetas del lote con una única sentencia: inserción de las etiquetas con
+ * {@code ON CONFLICT (nombre) DO UPDATE}, que devuelve también las existentes (incluso las que otro hilo acaba de
+ * confirmar, que un SELECT en la misma sentencia no vería), y de los vínculos producto-etiqueta a partir de arreglos
+ * ({@code unnest}). Las etiquetas se insertan ordenadas por nombre para que dos lotes las bloqueen en el mismo orden.
+ * <p>
+ * Si la cola está llena el producto se rechaza y se cuenta en {@code productos.etiquetas.rechazados}.
+ * <p>
+ * Los extractores se registran por nombre de bean; la cola usa el indicado en {@code productos.etiquetas.extractor}.
+ * El extractor local ({@code "local"}) además permite etiquetar todo el catálogo de una vez: la extracción se reparte
+ * entre los núcleos y el guardado se hace en bloques de {@code productos.etiquetas.local.lote-guardado} productos.
+ */
+@Service
+@Slf4j
+public class EtiquetadoServiceImpl implements EtiquetadoService {
+
+    private static final String SQL_GUARDAR_ETIQUETAS = """
+            WITH datos AS (
+                SELECT DISTINCT d.producto_id, d.nombre
+                FROM unnest(?::bigint[], ?::text[]) AS d(producto_id, nombre)
+                JOIN productos p ON p.id = d.producto_id
+            ),
+            todas AS (
+                INSERT INTO etiquetas (nombre, tipo)
+                SELECT DISTINCT nombre, ? FROM datos ORDER BY nombre
+                ON CONFLICT (nombre) DO UPDATE SET nombre = EXCLUDED.nombre
+                RETURNING id, nombre
+            )
+            INSERT INTO producto_etiqueta (producto_id, etiqueta_id)
+            SELECT d.producto_id, t.id FROM datos d JOIN todas t ON t.nombre = d.nombre
+            ON CONFLICT DO NOTHING
+            """;
+
+    private final ProductoRepository productoRepository;
+    private final Map<String, ExtractorEtiquetas> extractores;
+    // Extractor que usa la cola de etiquetado
+    private final ExtractorEtiquetas extractor;
+    private final MeterRegistry meterRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate transaccionLectura;
+
+    private final int hilos;
+    // Cantidad máxima de productos que se envían al extractor en una misma llamada
+    private final int tamanioLote;
+    // Tiempo que espera un hilo para completar un lote antes de enviarlo incompleto
+    private final Duration esperaLote;
+    // Productos por sentencia al guardar el etiquetado local del catálogo completo
+    private final int loteGuardadoLocal;
+
+    private final BlockingQueue<Long> cola;
+    // IDs que ya están en la cola: evita etiquetar dos veces el mismo producto si se encola repetido
+    private final Set<Long> encolados = ConcurrentHashMap.newKeySet();
+    private final FabricaHilos fabricaHilos;
+    // Evita dos etiquetados del catálogo completo al mismo tiempo en esta réplica
+    private final ReentrantLock etiquetadoCatalogoLock = new ReentrantLock();
+    private ExecutorService trabajadores;
+
+    private final Counter procesados;
+    private final Counter errores;
+    private final Counter rechazados;
+
+    public EtiquetadoServiceImpl(ProductoRepository productoRepository,
+                                 Map<String, ExtractorEtiquetas> extractores,
+                                 @Value("${productos.etiquetas.extractor:huggingface}") String nombreExtractor,
+                                 JdbcTemplate jdbcTemplate,
+                                 ApplicationEventPublisher eventPublisher,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 FabricaHilos fabricaHilos,
+                                 @Value("${productos.etiquetas.hilos:2}") int hilos,
+                                 @Value("${productos.etiquetas.tamanio-lote:16}") int tamanioLote,
+                                 @Value("${productos.etiquetas.espera-lote:200ms}") Duration esperaLote,
+                                 @Value("${productos.etiquetas.capacidad-cola:10000}") int capacidadCola,
+                                 @Value("${productos.etiquetas.local.lote-guardado:1000}") int loteGuardadoLocal) {
+        this.productoRepository = productoRepository;
+        this.extractores = extractores;
+        this.extractor = extractores.get(nombreExtractor);
+        if (extractor == null) {
+            throw new IllegalStateException("Extractor de etiquetas desconocido: '" + nombreExtractor + "'. Disponibles: " + extractores.keySet());
+        }
+        this.meterRegistry = meterRegistry;
+        this.fabricaHilos = fabricaHilos;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transaccionLectura = new TransactionTemplate(transactionManager);
+        this.transaccionLectura.setReadOnly(true);
+        this.hilos = hilos;
+        this.tamanioLote = tamanioLote;
+        this.esperaLote = esperaLote;
+        this.loteGuardadoLocal = loteGuardadoLocal;
+        this.cola = new ArrayBlockingQueue<>(capacidadCola);
+
+        this.procesados = Counter.builder("productos.etiquetas.procesados")
+                .description("Productos etiquetados")
+                .register(meterRegistry);
+        this.errores = Counter.builder("productos.etiquetas.errores")
+                .description("Productos que no se pudieron etiquetar")
+                .register(meterRegistry);
+        this.rechazados = Counter.builder("productos.etiquetas.rechazados")
+                .description("Productos no encolados porque la cola estaba llena")
+                .register(meterRegistry);
+        Gauge.builder("productos.etiquetas.cola", cola, BlockingQueue::size)
+                .description("Productos en espera de ser etiquetados")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void iniciar() {
+        // Con hilos virtuales, la espera de la cola y de HuggingFace (HttpClient.send) no ocupa un hilo de plataforma
+        trabajadores = Executors.newFixedThreadPool(hilos, fabricaHilos.crear("etiquetado"));
+        for (int i = 0; i < hilos; i++) {
+            trabajadores.execute(this::trabajar);
+        }
+    }
+
+    // Los productos que queden en la cola se descartan: el etiquetado se puede volver a solicitar
+    @PreDestroy
+    void detener() throws InterruptedException {
+        trabajadores.shutdownNow();
+        if (!trabajadores.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Los hilos de etiquetado no terminaron a tiempo");
+        }
+        if (!cola.isEmpty()) {
+            log.info("Se descartan {} productos pendientes de etiquetar", cola.size());
+        }
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public List<String> etiquetarAhora(Long productoId) {
+        return etiquetarAhora(productoId, extractor);
+    }
+
+    @Override
+    public List<String> etiquetarLocalmente(Long productoId) {
+        return etiquetarAhora(productoId, extractorLocal());
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public int etiquetarCatalogoLocalmente() {
+        // Una sola ejecución a la vez: cada una recorre y reescribe todo el catálogo
+        if (!etiquetadoCatalogoLock.tryLock()) {
+            throw new EtiquetadoEnCursoException("Ya hay un etiquetado local del catálogo en curso");
+        }
+        try {
+            ExtractorEtiquetas local = extractorLocal();
+            long inicio = System.nanoTime();
+
+            List<ProductoTextoFila> filas = transaccionLectura.execute(status -> productoRepository.findTodosTextos());
+            if (filas == null || filas.isEmpty()) {
+                return 0;
+            }
+
+            List<String> textos = filas.stream().map(EtiquetadoServiceImpl::texto).toList();
+            List<List<String>> etiquetas = tiempoExtraccion(local).record(() -> local.extraer(textos));
+            long finExtraccion = System.nanoTime();
+
+            Map<Long, List<String>> bloque = new LinkedHashMap<>();
+            for (int i = 0; i < filas.size(); i++) {
+                bloque.put(filas.get(i).getId(), etiquetas.get(i));
+                if (bloque.size() == loteGuardadoLocal || i == filas.size() - 1) {
+                    guardar(bloque, local, false);
+                    bloque.clear();
+                }
+            }
+            // Un solo aviso para todo el catálogo en lugar de uno por producto
+            eventPublisher.publishEvent(ProductoCambiadoEvent.etiquetas(null));
+
+            procesados.increment(filas.size());
+            log.info("Etiquetado local del catálogo: {} productos, extracción en {} ms, total {} ms.", filas.size(),
+                    (finExtraccion - inicio) / 1_000_000, (System.nanoTime() - inicio) / 1_000_000);
+            return filas.size();
+        } finally {
+            etiquetadoCatalogoLock.unlock();
+        }
+    }
+
+    //===============================================================================================================================================
+
+    private List<String> etiquetarAhora(Long productoId, ExtractorEtiquetas extractor) {
+        if (!productoRepository.existsById(productoId)) {
+            throw new ProductoNoEncontradoException("Producto no encontrado");
+        }
+        try {
+            return etiquetar(List.of(productoId), extractor).getOrDefault(productoId, List.of());
+        } catch (RuntimeException e) {
+            errores.increment();
+            log.error("Error al generar etiquetas del producto {}", productoId, e);
+            return List.of();
+        }
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public boolean encolar(Long productoId) {
+        if (!encolados.add(productoId)) {
+            return true;
+        }
+        if (!cola.offer(productoId)) {
+            encolados.remove(productoId);
+            rechazados.increment();
+            return false;
+        }
+        return true;
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public int encolarCategoria(Long categoriaId) {
+        List<Long> ids = productoRepository.findIdsByCategoriaId(categoriaId);
+        int encoladosCategoria = 0;
+        for (Long id : ids) {
+            if (encolar(id)) {
+                encoladosCategoria++;
+            }
+        }
+        log.info("Etiquetado de la categoría {}: {} de {} productos encolados", categoriaId, encoladosCategoria, ids.size());
+        return encoladosCategoria;
+    }
+
+    //===============================================================================================================================================
+
+    private void trabajar() {
+        List<Long> lote = new ArrayList<>(tamanioLote);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                lote.add(cola.take());
+                // Espera breve para juntar más productos en la misma llamada al extractor
+                long limite = System.nanoTime() + esperaLote.toNanos();
+                while (lote.size() < tamanioLote) {
+                    Long siguiente = cola.poll(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (siguiente == null) {
+                        break;
+                    }
+                    lote.add(siguiente);
+                    cola.drainTo(lote, tamanioLote - lote.size());
+                }
+                lote.forEach(encolados::remove);
+                etiquetar(lote, extractor);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                errores.increment(lote.size());
+                log.error("Error al etiquetar el lote de productos {}", lote, e);
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    // Obtiene y guarda las etiquetas de los productos indicados; los IDs inexistentes se ignoran
+    private Map<Long, List<String>> etiquetar(Collection<Long> productoIds, ExtractorEtiquetas extractor) {
+        List<ProductoTextoFila> filas = transaccionLectura.execute(status ->
+                productoRepository.findTextosByIdIn(new LinkedHashSet<>(productoIds)));
+        if (filas == null || filas.isEmpty()) {
+            return Map.of();
+        }
+
+        List<String> textos = filas.stream().map(EtiquetadoServiceImpl::texto).toList();
+        List<List<String>> etiquetas = tiempoExtraccion(extractor).record(() -> extractor.extraer(textos));
+
+        Map<Long, List<String>> porProducto = new LinkedHashMap<>();
+        for (int i = 0; i < filas.size(); i++) {
+            porProducto.put(filas.get(i).getId(), etiquetas.get(i));
+        }
+        guardar(porProducto, extractor, true);
+
+        procesados.increment(porProducto.size());
+        log.debug("Etiquetados {} productos con el extractor '{}'", porProducto.size(), extractor.tipo());
+        return porProducto;
+    }
+
+    private void guardar(Map<Long, List<String>> porProducto, ExtractorEtiquetas extractor, boolean avisarPorProducto) {
+        List<Long> ids = new ArrayList<>();
+        List<String> nombres = new ArrayList<>();
+        porProducto.forEach((id, etiquetas) -> etiquetas.forEach(nombre -> {
+            ids.add(id);
+            nombres.add(nombre);
+        }));
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(SQL_GUARDAR_ETIQUETAS);
+                ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+                ps.setArray(2, con.createArrayOf("text", nombres.toArray()));
+                ps.setString(3, extractor.tipo());
+                return ps;
+            });
+            // Las etiquetas forman parte del índice de búsqueda: se avisa al confirmar la transacción
+            if (avisarPorProducto) {
+                porProducto.keySet().forEach(id -> eventPublisher.publishEvent(ProductoCambiadoEvent.etiquetas(id)));
+            }
+        });
+    }
+
+    private ExtractorEtiquetas extractorLocal() {
+        ExtractorEtiquetas local = extractores.get("local");
+        if (local == null) {
+            throw new ExtractorNoDisponibleException("El extractor local de etiquetas no está habilitado (productos.etiquetas.local.habilitado)");
+        }
+        return local;
+    }
+
+    // El registro devuelve el mismo timer en cada llamada con las mismas etiquetas
+    private Timer tiempoExtraccion(ExtractorEtiquetas extractor) {
+        return Timer.builder("productos.etiquetas.extraccion")
+                .description("Duración de cada llamada al extractor de etiquetas")
+                .tag("extractor", extractor.tipo())
+                .register(meterRegistry);
+    }
+
+    private static String texto(ProductoTextoFila fila) {
+        return fila.getDescripcion() == null ? fila.getNombre() : fila.getNombre() + ". " + fila.getDescripcion();
+    }
+}
@@ -0,0 +1,169 @@
+package com.smartshop.productos.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.smartshop.productos.dto.FiltroProductos;
+import com.smartshop.productos.dto.ProductoDTO;
+import com.smartshop.productos.repository.ProductoRepository;
+import com.smartshop.productos.service.ExportacionProductosService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Exportación del catálogo en NDJSON o CSV con memoria constante.
+ * <p>
+ * Las filas se leen con un cursor de solo avance ({@code productos.exportacion.tamanio-fetch} filas por viaje) dentro
+ * de una transacción de solo lectura y se escriben en la salida a medida que llegan, sin armar ninguna lista.
+ * <p>
+ * Cada exportación ocupa una conexión a la base de datos mientras dura, así que las simultáneas se limitan a
+ * {@code productos.exportacion.simultaneas}; el lugar se reserva al recibir la solicitud y las que no entran reciben 503.
+ */
+@Service
+@Slf4j
+public class ExportacionProductosServiceImpl implements ExportacionProductosService {
+
+    private static final String ENCABEZADO_CSV = "id,nombre,descripcion,imagenUrl,precio,stock,vecesVisto,disponible,nombreCategoria,fechaCreacion\n";
+
+    private final ProductoRepository productoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectWriter escritorJson;
+    private final int tamanioFetch;
+    private final Semaphore exportacionesEnCurso;
+    private final Counter productosExportados;
+    private final Counter exportacionesRechazadas;
+
+    public ExportacionProductosServiceImpl(ProductoRepository productoRepository,
+                                           PlatformTransactionManager transactionManager,
+                                           ObjectMapper objectMapper,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${productos.exportacion.tamanio-fetch:1000}") int tamanioFetch,
+                                           @Value("${productos.exportacion.simultaneas:2}") int simultaneas) {
+        this.productoRepository = productoRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.escritorJson = objectMapper.writerFor(ProductoDTO.class);
+        this.tamanioFetch = tamanioFetch;
+        this.exportacionesEnCurso = new Semaphore(simultaneas);
+        this.productosExportados = Counter.builder("productos.exportacion.filas")
+                .description("Productos escritos por la exportación del catálogo")
+                .register(meterRegistry);
+        this.exportacionesRechazadas = Counter.builder("productos.exportacion.rechazadas")
+                .description("Exportaciones rechazadas porque se alcanzó el máximo de exportaciones simultáneas")
+                .register(meterRegistry);
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public StreamingResponseBody exportar(FiltroProductos filtro, Formato formato) {
+        // Se reserva antes de responder, para que el 503 salga sin los encabezados de la exportación (adjunto, gzip)
+        if (!exportacionesEnCurso.tryAcquire()) {
+            exportacionesRechazadas.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Demasiadas exportaciones de productos en curso");
+        }
+        return salida -> {
+            try {
+                exportar(filtro, formato, salida);
+            } finally {
+                exportacionesEnCurso.release();
+            }
+        };
+    }
+
+    //===============================================================================================================================================
+
+    private long exportar(FiltroProductos filtro, Formato formato, OutputStream salida) throws IOException {
+        long inicio = System.nanoTime();
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 64 * 1024);
+
+        Long exportados;
+        try {
+            // PostgreSQL solo usa el cursor (fetch size) con autocommit desactivado, es decir, dentro de una transacción
+            exportados = transactionTemplate.execute(status -> {
+                try (Stream<ProductoDTO> productos = productoRepository.recorrerProductos(filtro, null, tamanioFetch)) {
+                    return escribir(productos.iterator(), formato, escritor);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Normalmente el cliente cerró la conexión: se corta la lectura y se libera el cursor
+            throw e.getCause();
+        }
+        escritor.flush();
+
+        log.info("Exportación {} de productos: {} filas en {} ms.", formato, exportados, (System.nanoTime() - inicio) / 1_000_000);
+        return exportados == null ? 0 : exportados;
+    }
+
+    private long escribir(Iterator<ProductoDTO> productos, Formato formato, Writer escritor) throws IOException {
+        if (formato == Formato.CSV) {
+            escritor.write(ENCABEZADO_CSV);
+        }
+
+        long cantidad = 0;
+        while (productos.hasNext()) {
+            ProductoDTO producto = productos.next();
+            if (formato == Formato.CSV) {
+                escribirCsv(producto, escritor);
+            } else {
+                escritor.write(escritorJson.writeValueAsString(producto));
+                escritor.write('\n');
+            }
+            cantidad++;
+        }
+        productosExportados.increment(cantidad);
+        return cantidad;
+    }
+
+    private static void escribirCsv(ProductoDTO producto, Writer escritor) throws IOException {
+        escritor.write(String.valueOf(producto.getId()));
+        escritor.write(',');
+        escritor.write(campoCsv(producto.getNombre()));
+        escritor.write(',');
+        escritor.write(campoCsv(producto.getDescripcion()));
+        escritor.write(',');
+        escritor.write(campoCsv(producto.getImagenUrl()));
+        escritor.write(',');
+        escritor.write(producto.getPrecio() == null ? "" : producto.getPrecio().toPlainString());
+        escritor.write(',');
+        escritor.write(producto.getStock() == null ? "" : producto.getStock().toString());
+        escritor.write(',');
+        escritor.write(Integer.toString(producto.getVecesVisto()));
+        escritor.write(',');
+        escritor.write(Boolean.toString(producto.isDisponible()));
+        escritor.write(',');
+        escritor.write(campoCsv(producto.getNombreCategoria()));
+        escritor.write(',');
+        escritor.write(producto.getFechaCreacion() == null ? "" : producto.getFechaCreacion().toString());
+        escritor.write('\n');
+    }
+
+    // RFC 4180: entre comillas si contiene separador, comillas o saltos de línea; las comillas internas se duplican
+    static String campoCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        boolean requiereComillas = valor.indexOf(',') >= 0 || valor.indexOf('"') >= 0 || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0;
+        return requiereComillas ? '"' + valor.replace("\"", "\"\"") + '"' : valor;
+    }
+}
@@ -1,23 +1,30 @@
 package com.smartshop.productos.service.impl;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartshop.productos.busqueda.IndiceProductosEnMemoria;
+import com.smartshop.productos.cache.CarruselPool;
+import com.smartshop.productos.cache.ProductoCache;
+import com.smartshop.productos.cache.ProductoCacheado;
+import com.smartshop.productos.cache.RegistroCategorias;
 import com.smartshop.productos.dto.*;
-import com.smartshop.productos.entity.Etiqueta;
-import com.smartshop.productos.entity.HistorialNavegacion;
 import com.smartshop.productos.entity.Producto;
-import com.smartshop.productos.exception.NoHayCategoriasSuficientesException;
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import com.smartshop.productos.exception.CampoOrdenamientoInvalidoException;
 import com.smartshop.productos.exception.ProductoNoEncontradoException;
-import com.smartshop.productos.mapper.CategoriaMapper;
 import com.smartshop.productos.mapper.ProductoMapper;
-import com.smartshop.productos.repository.CategoriaRepository;
-import com.smartshop.productos.repository.EtiquetaRepository;
-import com.smartshop.productos.repository.HistorialNavegacionRepository;
+import com.smartshop.productos.projection.ProductoCarruselFila;
+import com.smartshop.productos.recomendacion.RecomendadorCovistas;
+import com.smartshop.productos.recomendacion.RecomendadorEtiquetas;
 import com.smartshop.productos.repository.ProductoRepository;
+import com.smartshop.productos.repository.util.QuerydslUtil;
+import com.smartshop.productos.service.EtiquetadoService;
 import com.smartshop.productos.service.ProductoService;
-import jakarta.persistence.EntityNotFoundException;
+import com.smartshop.productos.service.RegistroVistasService;
+import com.smartshop.productos.service.StockService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -26,10 +33,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -44,10 +47,31 @@ public class ProductoServiceImpl implements ProductoService {
     //Campos inyectados automáticamente gracias a @RequiredArgsConstructor
     private final ProductoRepository productoRepository;
     private final ProductoMapper productoMapper;
-    private final CategoriaRepository categoriaRepository;
-    private final CategoriaMapper categoriaMapper;
-    private final HistorialNavegacionRepository historialNavegacionRepository;
-    private final EtiquetaRepository etiquetaRepository;
+    private final CarruselPool carruselPool;
+    private final IndiceProductosEnMemoria indiceProductos;
+    private final RegistroVistasService registroVistasService;
+    private final StockService stockService;
+    //Publica eventos de cambio de productos para que las cachés en memoria se refresquen.
+    private final ApplicationEventPublisher eventPublisher;
+
+    //Árbol de categorías en memoria, usado para completar el nombre de la categoría sin consultar la base de datos.
+    private final RegistroCategorias registroCategorias;
+
+    //Caché de productos de dos niveles (local y compartida) para las consultas por ID.
+    private final ProductoCache productoCache;
+
+    //Etiquetado automático (extractor de frases clave y escritura de etiquetas en lote).
+    private final EtiquetadoService etiquetadoService;
+
+    //Recomendador por etiquetas con índice invertido en memoria.
+    private final RecomendadorEtiquetas recomendadorEtiquetas;
+
+    //Recomendador "vistos juntos" calculado a partir del historial de navegación.
+    private final RecomendadorCovistas recomendadorCovistas;
+
+    //Últimas vistas del usuario que se combinan para recomendar, y máximo de productos recomendados por ellas.
+    private static final int VISTAS_PARA_RECOMENDAR = 5;
+    private static final int MAXIMO_RECOMENDACIONES_COVISTAS = 100;
 
     //===============================================================================================================================================
     //Indica que este método sobrescribe uno definido en la interfaz ProductoService.
@@ -68,6 +92,7 @@ public class ProductoServiceImpl implements ProductoService {
         Producto productoGuardado = productoRepository.save(producto);
 
         log.info("Producto guardado con ID: {}", productoGuardado.getId());
+        eventPublisher.publishEvent(new ProductoCambiadoEvent(productoGuardado.getId()));
 
         //Convierte la entidad Producto persistida a un ProductoDTO.
         return productoMapper.toDto(productoGuardado);
@@ -82,11 +107,10 @@ public class ProductoServiceImpl implements ProductoService {
 
         log.info("Buscando producto con ID: {}", id);
         // Se busca el producto en la base de datos utilizando el repositorio. Si no se encuentra, se lanza la excepción ProductoNoEncontradoException.
-        Producto producto = productoRepository.findById(id)
-                .orElseThrow(() -> new ProductoNoEncontradoException("Producto no encontrado con ID: " + id));
-
-        // Se convierte la entidad Producto encontrada a un ProductoDTO para enviar solo los datos necesarios al cliente
-        return productoMapper.toDto(producto);
+        // Se busca primero en la caché de productos (local y compartida); si no está, se consulta la base de datos
+        return obtenerProductoCacheado(id)
+                .orElseThrow(() -> new ProductoNoEncontradoException("Producto no encontrado con ID: " + id))
+                .producto();
     }
 
     //===============================================================================================================================================
@@ -111,7 +135,7 @@ public class ProductoServiceImpl implements ProductoService {
         // los "::" significan method reference operator  y permiten hacer referencia a un metodo, que sera
         //utilizdo como una función. productoMapper::toDto es igual a:  (producto) -> productoMapper.toDto(producto).
         return productos.stream()
-                .map(productoMapper::toDto)
+                .map(this::aDto)
                 .toList();  // Retorna una lista inmutable de ProductoDTO
 
     }
@@ -141,7 +165,14 @@ public class ProductoServiceImpl implements ProductoService {
         // Guardar cambios
         Producto productoActualizado = productoRepository.save(productoExistente);
 
+        // Si el stock está fragmentado, el nuevo total se reparte entre sus fragmentos (se sincroniza antes la fila del producto)
+        if (Boolean.TRUE.equals(productoActualizado.getStockFragmentado())) {
+            productoRepository.flush();
+            stockService.repartirStockFragmentado(id, productoActualizado.getStock());
+        }
+
         log.info("Producto con ID {} actualizado correctamente.", id);
+        eventPublisher.publishEvent(new ProductoCambiadoEvent(id));
 
         return productoMapper.toDto(productoActualizado);
 }
@@ -164,6 +195,7 @@ public class ProductoServiceImpl implements ProductoService {
         productoRepository.delete(producto);
 
         log.info("Producto con ID {} eliminado correctamente.", id); // Log de confirmación de eliminación
+        eventPublisher.publishEvent(new ProductoCambiadoEvent(id));
 
     }
 
@@ -175,6 +207,11 @@ public class ProductoServiceImpl implements ProductoService {
         log.info("Buscando productos con filtros - nombre: {}, categoriaId: {}, precioMin: {}, precioMax: {}, disponibles: {}",
                 nombre, categoriaId, precioMin, precioMax, disponibles);
 
+        // Si el índice en memoria está habilitado y construido, responde sin consultar la base de datos
+        if (indiceProductos.estaListo()) {
+            return indiceProductos.buscarProductos(nombre, categoriaId, precioMin, precioMax, disponibles);
+        }
+
         // Llama al repositorio personalizado que utiliza QueryDSL
             return productoRepository.buscarProductos(nombre, categoriaId, precioMin, precioMax, disponibles);
     }
@@ -195,11 +232,11 @@ public class ProductoServiceImpl implements ProductoService {
         //Con esto, el método evita romperse si el frontend o el usuario envía un campo incorrecto para ordenar. En lugar de fallar con una excepción 500, simplemente se devuelve la página sin ordenar.
         //Declara una variable sort de tipo Sort, que almacenará el criterio de ordenamiento a aplicar en la consulta (ascendente o descendente).
         Sort sort;
-        try {
+        if (QuerydslUtil.esCampoOrdenableProducto(ordenarPor)) {
             //Sort.by(ordenarPor) genera el criterio de orden basado en el nombre del campo (por ejemplo "precio").
             sort = direccion.equalsIgnoreCase("asc") ? Sort.by(ordenarPor).ascending() : Sort.by(ordenarPor).descending();
-        //ocurre si el campo proporcionado para ordenar no es válido o no existe en la entidad JPA.
-        } catch (PropertyReferenceException e) {
+        //ocurre si el campo proporcionado para ordenar no está en la lista de campos permitidos (QuerydslUtil: los campos simples de Producto).
+        } else {
             log.warn("Campo de ordenamiento no válido '{}', se ignorará el ordenamiento", ordenarPor);
             // En caso de excepción, se asigna Sort.unsorted(), que indica que no se aplicará ningún criterio de ordenamiento. Esto permite que la aplicación continúe sin fallar.
             sort = Sort.unsorted();
@@ -211,25 +248,23 @@ public class ProductoServiceImpl implements ProductoService {
         //Pageable pageable = PageRequest.of(pagina, tamanio, direccion.equalsIgnoreCase("asc") ? Sort.by(ordenarPor).ascending() : Sort.by(ordenarPor).descending());
         Pageable pageable = PageRequest.of(pagina, tamanio, sort);
 
-        // Llamamos al repositorio para obtener una página de productos con los parámetros de paginación y ordenamiento
-        Page<Producto> productos = productoRepository.findAll(pageable);
-
-        // Convertimos cada entidad Producto en un ProductoDTO usando el mapper
-        return productos.map(productoMapper::toDto);  // El método map() aplica la conversión de entidad a DTO en cada elemento de la página
+        // Llamamos al repositorio personalizado sin filtros: devuelve directamente los ProductoDTO mediante una proyección
+        return productoRepository.buscarProductosPaginado(null, null, null, null, null, pageable);
     }
 
     //===============================================================================================================================================
 
     @Override
     public void ajustarStock(Long productoId, int cantidad) {
-
+        // Ajuste atómico en la base de datos (UPDATE condicional), ver StockService
+        stockService.ajustarStock(productoId, cantidad);
     }
 
     //===============================================================================================================================================
 
     @Override
     public int obtenerStockDisponible(Long productoId) {
-        return 0;
+        return stockService.obtenerStockDisponible(productoId);
     }
 
     //===============================================================================================================================================
@@ -240,77 +275,68 @@ public class ProductoServiceImpl implements ProductoService {
 
         log.info("Recomendando productos similares al ID: {}", productoId);
 
-        Producto productoBase = productoRepository.findById(productoId)
-                .orElseThrow(() -> new ProductoNoEncontradoException("Producto no encontrado"));
+        // Vecinos precalculados a partir de las etiquetas; los datos de cada producto salen de la caché de productos
+        Optional<List<Long>> vecinos = recomendadorEtiquetas.similares(productoId);
+        if (vecinos.isPresent()) {
+            return paginarProductos(vecinos.get(), PageRequest.of(pagina, tamanio));
+        }
+
+        // Sin índice o sin etiquetas: productos de la misma categoría con nombre y precio parecidos
+        return similaresPorNombreYPrecio(consultarProductoBase(productoId), pagina, tamanio);
+    }
+
+    @Override
+    public Page<ProductoDTO> recomendarProductosSimilares(ProductoCacheado productoBase, int pagina, int tamanio) {
+        Long productoId = productoBase.producto().getId();
+        log.info("Recomendando productos similares al ID: {}", productoId);
+
+        Optional<List<Long>> vecinos = recomendadorEtiquetas.similares(productoId);
+        if (vecinos.isPresent()) {
+            return paginarProductos(vecinos.get(), PageRequest.of(pagina, tamanio));
+        }
+        return similaresPorNombreYPrecio(productoBase, pagina, tamanio);
+    }
 
-        String nombreBase = productoBase.getNombre();
+    private Page<ProductoDTO> similaresPorNombreYPrecio(ProductoCacheado productoBase, int pagina, int tamanio) {
+        Long productoId = productoBase.producto().getId();
+        String nombreBase = productoBase.producto().getNombre();
         String keyword = nombreBase.split(" ")[0];
 
         Pageable pageable = PageRequest.of(pagina, tamanio, Sort.by("nombre").ascending());
 
-        BigDecimal min = productoBase.getPrecio().multiply(BigDecimal.valueOf(0.8));
-        BigDecimal max = productoBase.getPrecio().multiply(BigDecimal.valueOf(1.2));
+        BigDecimal min = productoBase.producto().getPrecio().multiply(BigDecimal.valueOf(0.8));
+        BigDecimal max = productoBase.producto().getPrecio().multiply(BigDecimal.valueOf(1.2));
 
         Page<Producto> similares = productoRepository
-                .findByNombreContainingIgnoreCaseAndIdNotAndCategoriaIdAndPrecioBetweenAndDisponibleTrue(keyword, productoId,productoBase.getCategoria().getId(), min, max, pageable);
+                .findByNombreContainingIgnoreCaseAndIdNotAndCategoriaIdAndPrecioBetweenAndDisponibleTrue(keyword, productoId,productoBase.categoriaId(), min, max, pageable);
         // Convertimos a DTOs
-        return similares.map(productoMapper::toDto);
+        return similares.map(this::aDto);
+    }
+
+    // Página de productos a partir de una lista ordenada de IDs; los que ya no existen o no están disponibles se omiten.
+    // Las listas son cortas (vecinos y covistas acotados), así que se resuelven todas antes de paginar para que el total sea exacto.
+    private Page<ProductoDTO> paginarProductos(List<Long> ids, Pageable pageable) {
+        List<ProductoDTO> disponibles = obtenerProductosCacheados(ids).values().stream()
+                .map(ProductoCacheado::producto)
+                .filter(ProductoDTO::isDisponible)
+                .toList();
+
+        int desde = (int) Math.min(pageable.getOffset(), disponibles.size());
+        int hasta = Math.min(desde + pageable.getPageSize(), disponibles.size());
+        return new PageImpl<>(disponibles.subList(desde, hasta), pageable, disponibles.size());
     }
 
     //===============================================================================================================================================
 
+    // La llamada al extractor se hace fuera de cualquier transacción; ver EtiquetadoServiceImpl
     @Override
-    @Transactional
     public List<String> generarEtiquetasAutomaticas(Long productoId) {
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new ProductoNoEncontradoException("Producto no encontrado"));
-
-        String inputTexto = producto.getNombre() + ". " + producto.getDescripcion();
-
-        try {
-            HttpClient client = HttpClient.newHttpClient();
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create("https://api-inference.huggingface.co/models/ml6team/keyphrase-extraction-kbir-openkp"))
-                    //.header("Authorization", "Bearer ") // Reemplaza con tu token HuggingFace
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString("{\"inputs\":\"" + inputTexto + "\"}"))
-                    .build();
-
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-            log.info("Respuesta cruda de HuggingFace: {}", response.body());
-
-            if (response.statusCode() != 200) {
-                throw new RuntimeException("Error al llamar HuggingFace: " + response.statusCode() + " - " + response.body());
-            }
-
-            ObjectMapper mapper = new ObjectMapper();
-            List<List<Map<String, String>>> raw = mapper.readValue(response.body(), List.class);
-
-            List<String> etiquetas = raw.get(0).stream()
-                    .map(e -> e.get("word"))
-                    .distinct()
-                    .collect(Collectors.toList());
-
-            // Guardar etiquetas si no existen y asociarlas al producto
-            for (String nombreEtiqueta : etiquetas) {
-                Etiqueta etiqueta = etiquetaRepository.findByNombre(nombreEtiqueta)
-                        .orElseGet(() -> etiquetaRepository.save(Etiqueta.builder()
-                                .nombre(nombreEtiqueta)
-                                .tipo("ia")
-                                .build()));
-
-                producto.getEtiquetas().add(etiqueta);
-            }
-
-            productoRepository.save(producto);
+        return etiquetadoService.etiquetarAhora(productoId);
+    }
 
-            return etiquetas;
-        } catch (Exception e) {
-            log.error("Error al generar etiquetas con HuggingFace", e);
-            return Collections.emptyList();
-        }
+    @Override
+    public List<String> generarEtiquetasLocales(Long productoId) {
+        return etiquetadoService.etiquetarLocalmente(productoId);
     }
 
 
@@ -318,70 +344,22 @@ public class ProductoServiceImpl implements ProductoService {
 
     @Override
     public boolean estaDisponible(Long productoId, int cantidadDeseada) {
-        return false;
+        return stockService.estaDisponible(productoId, cantidadDeseada);
     }
 
     //===============================================================================================================================================
 
     @Override
-    @Transactional(readOnly = true) // Indica que esta operación es de solo lectura y no modificará datos en la base de datos.
-
     public List<CarruselDTO> obtenerCarruselesDeProductos() {
         //Registra un mensaje en los logs para indicar que el proceso ha comenzado.
         log.info("Obteniendo carruseles de productos por categoría...");
 
-        //Obtiene los IDs de categorías que tienen al menos 10 productos disponibles (desde una consulta personalizada del repositorio).
-        var categoriaIdsValidas = productoRepository.findCategoriasConMinimo10ProductosDisponibles()
-                .stream() //Usa stream() para convertir el resultado en una lista de tipo List<Long>
-                .map(c -> c.getCategoriaId()) //mapea los resultados para extraer solo los IDs (categoriaId) y los guarda en una lista.
-                .toList();
-
-        //Verifica que haya al menos 3 categorías con suficientes productos para armar los carruseles.
-        if (categoriaIdsValidas.size() < 3) {
-            log.warn("Se encontraron {} categorías con al menos 10 productos disponibles. Se requieren 3.", categoriaIdsValidas.size());
-            //Si no se cumple, lanza una excepción y se detiene el proceso.
-            throw new NoHayCategoriasSuficientesException("No hay suficientes categorías con productos disponibles.");
-        }
-        //Se convierte la lista inmutable a una lista mutable antes de hacer operaciones como shuffle.
-        List<Long> categoriaIdsValidasMutable = new ArrayList<>(categoriaIdsValidas);
-        //Desordena aleatoriamente la lista de categorías válidas para que los carruseles seleccionados no siempre sean los mismos (shuffle = aleatorio, barajear).
-        Collections.shuffle(categoriaIdsValidasMutable);
-
-        //Toma las primeras 3 categorías después del shuffle, es decir, selecciona 3 categorías al azar, (utilizamos stream.toList para volver inmutable de nuevo la lista).
-        var categoriasSeleccionadas = categoriaIdsValidasMutable.stream().toList().subList(0, 3);
-
-        //Se usa LinkedHashMap para mantener el orden de inserción (el orden de los carruseles seleccionados).
-        //var resultado = new ArrayList<CarruselDTO>();
-        List<CarruselDTO> resultado = new ArrayList<>();
-
-
-        //var categorias = categoriaRepository.findAllById(categoriasSeleccionadas);
-        //var categoriaMap = categorias.stream().collect(Collectors.toMap(Categoria::getId, Function.identity()));
-
-
-        //Itera por cada una de las 3 categorías seleccionadas aleatoriamente.
-        for (var categoriaId : categoriasSeleccionadas) {
-            //Busca la categoría completa en la base de datos por su ID.
-            var categoria = categoriaRepository.findById(categoriaId)
-                    //Si no existe, lanza una excepción
-                    .orElseThrow(() -> new EntityNotFoundException("Categoría no encontrada con ID: " + categoriaId));
-
-            //Consulta los 10 productos de tipo List<Producto> más recientes y disponibles para esa categoría (ordenados por ID descendente).
-                 var productos = productoRepository
-             //List<ProductoDTO> productos =  productoRepository
-                    .findTop10ByCategoriaIdAndDisponibleTrueOrderByIdDesc(categoriaId)
-                    .stream()
-                    .parallel() // permite ejecutar operaciones de stream en múltiples hilos en paralelo, aprovechando los núcleos del procesador para mejorar el rendimiento.
-                    .map(productoMapper::toDto)//los convierte a DTO usando el mapper
-                    .toList();
-            //Convierte la categoría a CategoriaDTO y la asocia con la lista de ProductoDTO dentro del mapa resultado.
-            //resultado.put(categoriaMapper.toDTO(categoria), productos);
-
-            resultado.add(new CarruselDTO(categoriaMapper.toDTO(categoria),productos));
-        }
+        //Los carruseles se eligen al azar desde el pool en memoria, que se refresca en segundo plano,
+        //por lo que esta operación no consulta la base de datos.
+        List<CarruselDTO> resultado = carruselPool.seleccionar();
 
         log.info("Carruseles generados exitosamente.");
-        //Devuelve la lista con 3 categorías y sus respectivos 10 productos disponibles.
+        //Devuelve la lista con las categorías seleccionadas y sus respectivos productos disponibles.
         return resultado;
     }
 
@@ -398,7 +376,8 @@ public class ProductoServiceImpl implements ProductoService {
             int pagina,                   // Número de página para la paginación
             int tamanio,                  // Tamaño de la página para la paginación
             String ordenarPor,            // Atributo por el cual ordenar los resultados
-            String direccion              // Dirección del orden (ascendente o descendente)
+            String direccion,             // Dirección del orden (ascendente o descendente)
+            boolean conteoEstimado        // Permite usar un total estimado cuando no hay filtros
     ) {
 
         log.info("Buscando productos paginados con filtros - nombre: {}, categoriaId: {}, precioMin: {}, precioMax: {}, disponibles: {}, página: {}, tamaño: {}, ordenarPor: {}, dirección: {}",
@@ -418,8 +397,13 @@ public class ProductoServiceImpl implements ProductoService {
         Pageable pageable = PageRequest.of(pagina, tamanio, sort);
 
 
+        // Si el índice en memoria está habilitado y construido, responde sin consultar la base de datos (el total siempre es exacto)
+        if (indiceProductos.estaListo()) {
+            return indiceProductos.buscarProductosPaginado(nombre, categoriaId, precioMin, precioMax, disponibles, pageable);
+        }
+
         // Llama al repositorio para buscar productos de acuerdo con los filtros y la paginación
-        return productoRepository.buscarProductosPaginado(nombre, categoriaId, precioMin, precioMax, disponibles, pageable);
+        return productoRepository.buscarProductosPaginado(nombre, categoriaId, precioMin, precioMax, disponibles, pageable, conteoEstimado);
     }
 
     @Override
@@ -427,58 +411,126 @@ public class ProductoServiceImpl implements ProductoService {
     public Page<ProductoDTO> obtenerProductosPorCategoriaPaginado(Long categoriaId, int pagina, int tamanio) {
 
         Pageable pageable = PageRequest.of(pagina, tamanio, Sort.by("nombre").ascending());
-        Page<Producto> productos =  productoRepository.findByCategoriaId(categoriaId,  pageable);
         log.info("Consultando productos por categoria, paginados");
 
-        return productos.map(productoMapper::toDto);
+        // Proyección directa a ProductoDTO filtrando solo por categoría
+        return productoRepository.buscarProductosPaginado(null, categoriaId, null, null, null, pageable);
 
     }
 
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
     public ProductoDTO consultarProductoYRecomendar(Long productoId, Long usuarioId) {
 
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new ProductoNoEncontradoException("Producto no encontrado"));
+        ProductoDTO productoDTO = consultarProductoBase(productoId).producto();
 
-        // Incrementar veces visto
-        producto.setVecesVisto(producto.getVecesVisto() + 1);
-       Producto productoGuardado = productoRepository.save(producto);
+        // El incremento de veces visto y el historial se acumulan en memoria y se escriben en lote
+        registroVistasService.registrarVista(productoId, usuarioId);
 
-        HistorialNavegacion historial = HistorialNavegacion.builder()
-                .idUsuario(usuarioId)
-                .idProducto(productoId)
-                .build();
+        productoDTO.setVecesVisto(productoDTO.getVecesVisto() + 1);
+        return productoDTO;
+    }
 
-        // Registrar historial
-        historialNavegacionRepository.save(historial);
+    @Override
+    public ProductoCacheado consultarProductoBase(Long productoId) {
+        return obtenerProductoCacheado(productoId)
+                .orElseThrow(() -> new ProductoNoEncontradoException("Producto no encontrado"));
+    }
 
-        return productoMapper.toDto(productoGuardado);
+    @Override
+    public List<ProductoDTO> consultarUltimosVistos(Long usuarioId, int cantidad) {
+        // Se omiten los productos que ya no existen
+        return obtenerProductosCacheados(registroVistasService.ultimosVistos(usuarioId, cantidad)).values().stream()
+                .map(ProductoCacheado::producto)
+                .toList();
     }
 
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
     public Page<ProductoDTO> consultarRecomendacionesUltimoProductoUsuarioVisto( Long usuarioId, int pagina, int tamanio) {
 
-        Long ultimoProductoId = historialNavegacionRepository
-                .findUltimosVistosPorUsuario(usuarioId)
-                .stream()
-                .findFirst()
-                .orElseThrow(null);
+        List<Long> vistosRecientes = registroVistasService.ultimosVistos(usuarioId, VISTAS_PARA_RECOMENDAR);
+        if (vistosRecientes.isEmpty()) {
+            return Page.empty(PageRequest.of(pagina, tamanio));
+        }
+
+        // Productos vistos junto con los últimos que vio el usuario (calculados en lote a partir del historial)
+        List<Long> covistos = recomendadorCovistas.recomendar(vistosRecientes, MAXIMO_RECOMENDACIONES_COVISTAS);
+        if (!covistos.isEmpty()) {
+            return paginarProductos(covistos, PageRequest.of(pagina, tamanio));
+        }
 
-        Producto producto = productoRepository
-                .findById(ultimoProductoId)
+        // Sin datos de covistas: productos de la categoría del último producto visto
+        ProductoCacheado producto = obtenerProductoCacheado(vistosRecientes.get(0))
                 .orElseThrow(() -> new ProductoNoEncontradoException("Producto no encontrado"));
 
         Pageable pageable = PageRequest.of(pagina, tamanio, Sort.by("nombre").ascending());
 
-        Long categoriaId = producto.getCategoria().getId();
+        Long categoriaId = producto.categoriaId();
 
         Page<ProductoDTO> productos = productoRepository
-                .findByCategoriaId(categoriaId, pageable)
-                .map(productoMapper::toDto);
+                .buscarProductosPaginado(null, categoriaId, null, null, null, pageable);
 
         return productos;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<ProductoDTO> buscarProductosPorCursor(String nombre, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles,
+                                                                 String cursor, int tamanio, String ordenarPor, String direccion, boolean incluirTotal) {
+
+        log.info("Buscando productos por cursor con filtros - nombre: {}, categoriaId: {}, precioMin: {}, precioMax: {}, disponibles: {}, tamaño: {}, ordenarPor: {}, dirección: {}, incluirTotal: {}",
+                nombre, categoriaId, precioMin, precioMax, disponibles, tamanio, ordenarPor, direccion, incluirTotal);
+
+        // Solo algunos campos tienen condición de continuación; el resto sería un error del cliente, no del servidor
+        if (!QuerydslUtil.esCampoCursorProducto(ordenarPor)) {
+            throw new CampoOrdenamientoInvalidoException("No se puede paginar por cursor ordenando por '" + ordenarPor
+                    + "'; campos admitidos: id, nombre, precio");
+        }
+        Sort sort = Sort.by(direccion.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, ordenarPor);
+
+        return productoRepository.buscarProductosPorCursor(nombre, categoriaId, precioMin, precioMax, disponibles, sort, cursor, tamanio, incluirTotal);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ProductoDTO> buscarProductosTextoCompleto(String texto, Long categoriaId, BigDecimal precioMin, BigDecimal precioMax, Boolean disponibles, int pagina, int tamanio) {
+
+        log.info("Búsqueda de texto completo - texto: {}, categoriaId: {}, precioMin: {}, precioMax: {}, disponibles: {}, página: {}, tamaño: {}",
+                texto, categoriaId, precioMin, precioMax, disponibles, pagina, tamanio);
+
+        // Los resultados se ordenan por relevancia; si se usa la alternativa por LIKE, se ordenan por nombre
+        Pageable pageable = PageRequest.of(pagina, tamanio, Sort.by("nombre").ascending());
+
+        return productoRepository.buscarProductosTextoCompleto(texto, categoriaId, precioMin, precioMax, disponibles, pageable);
+    }
+
+
+    //===============================================================================================================================================
+
+    //Igual que obtenerProductoCacheado para varios IDs: los que faltan en la caché se cargan con una sola consulta IN.
+    private Map<Long, ProductoCacheado> obtenerProductosCacheados(List<Long> productoIds) {
+        return productoCache.obtenerVarios(productoIds, ids -> productoRepository.findConCategoriaByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProductoCarruselFila::getId,
+                        fila -> new ProductoCacheado(productoMapper.toDto(fila), fila.getCategoriaId()))));
+    }
+
+    //Busca el producto en la caché de dos niveles; en caso de fallo lo carga con una sola consulta que ya trae su categoría.
+    private Optional<ProductoCacheado> obtenerProductoCacheado(Long productoId) {
+        return productoCache.obtener(productoId, id -> productoRepository.findConCategoriaById(id)
+                .map(fila -> new ProductoCacheado(productoMapper.toDto(fila), fila.getCategoriaId())));
+    }
+
+    //===============================================================================================================================================
+
+    //Convierte la entidad a DTO tomando el nombre de la categoría del registro en memoria; solo si la categoría
+    //aún no está en el registro (recién creada) se carga desde la base de datos.
+    private ProductoDTO aDto(Producto producto) {
+        ProductoDTO dto = productoMapper.toDtoSinCategoria(producto);
+        if (producto.getCategoria() != null) {
+            String nombreCategoria = registroCategorias.nombreCategoria(producto.getCategoria().getId());
+            dto.setNombreCategoria(nombreCategoria != null ? nombreCategoria : producto.getCategoria().getNombre());
+        }
+        return dto;
+    }
 }
@@ -0,0 +1,410 @@
+package com.smartshop.productos.service.impl;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartshop.productos.cache.CargaSinBloqueo;
+import com.smartshop.productos.config.BloqueoEntreReplicas;
+import com.smartshop.productos.repository.HistorialNavegacionRepository;
+import com.smartshop.productos.service.RegistroVistasService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registro asíncrono de vistas de productos (write-behind).
+ * <p>
+ * Las vistas se acumulan en memoria: un {@link LongAdder} por producto para {@code veces_visto} y una cola acotada
+ * para las filas de {@code historial_navegacion}. Periódicamente se escriben en una sola transacción con un lote de
+ * {@code UPDATE ... SET veces_visto = veces_visto + ?} y un lote de inserciones (el driver los reescribe como un
+ * INSERT de varias filas con {@code reWriteBatchedInserts}). Cada volcado repite lotes hasta vaciar la cola o agotar
+ * {@code productos.vistas.volcado.presupuesto}, para que el historial no se acumule cuando llegan más vistas por ciclo que un lote.
+ * <p>
+ * Contrapresión: si la cola de historial está llena, la vista se sigue contando pero su fila de historial se descarta
+ * y se incrementa la métrica {@code productos.vistas.historial.descartados}. Al detener la aplicación se vuelca lo pendiente.
+ * <p>
+ * Las últimas vistas de cada usuario se guardan además en un búfer circular en memoria (acotado por usuario y por
+ * cantidad de usuarios), para responder "vistos recientemente" sin leer el historial. Si el búfer de un usuario no
+ * está en memoria se arma con una consulta de sus últimos productos distintos más las vistas que todavía no se
+ * volcaron, que se indexan por usuario para no recorrer la cola entera. Un proceso diario borra por lotes el historial más antiguo que la retención configurada;
+ * con varias réplicas lo ejecuta una sola ({@link BloqueoEntreReplicas}).
+ */
+@Service
+@Slf4j
+public class RegistroVistasServiceImpl implements RegistroVistasService {
+
+    private static final String SQL_INCREMENTAR_VISTAS = "UPDATE productos SET veces_visto = veces_visto + ? WHERE id = ?";
+    private static final String SQL_INSERTAR_HISTORIAL = "INSERT INTO historial_navegacion (id_usuario, id_producto, fecha) VALUES (?, ?, ?)";
+    // Borrado por lotes para no bloquear la tabla ni generar una transacción enorme
+    private static final String SQL_PURGAR_HISTORIAL =
+            "DELETE FROM historial_navegacion WHERE id IN (SELECT id FROM historial_navegacion WHERE fecha < ? LIMIT ?)";
+    private static final String BLOQUEO_PURGA = "vistas.historial.purga";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HistorialNavegacionRepository historialNavegacionRepository;
+    private final BloqueoEntreReplicas bloqueoEntreReplicas;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter historialDescartado;
+    private final Timer tiempoVolcado;
+
+    // Cantidad máxima de filas de historial que se escriben en un mismo lote
+    private final int tamanioLote;
+    // Tiempo máximo que un volcado programado sigue escribiendo lotes mientras la cola siga llena
+    private final Duration presupuestoVolcado;
+
+    // Vistas acumuladas por producto desde el último volcado
+    private final ConcurrentHashMap<Long, LongAdder> vistasPendientes = new ConcurrentHashMap<>();
+    // Contadores quitados del mapa en el volcado anterior; se revisan una vez más por si un hilo los incrementó al quitarlos
+    private final List<Map.Entry<Long, LongAdder>> contadoresRetirados = new ArrayList<>();
+    // Filas de historial pendientes de insertar
+    private final BlockingQueue<VistaPendiente> historialPendiente;
+    // Las mismas filas pendientes agrupadas por usuario; cada cola se modifica solo dentro de compute sobre su clave
+    private final ConcurrentHashMap<Long, ArrayDeque<VistaPendiente>> pendientesPorUsuario = new ConcurrentHashMap<>();
+    // Evita que el volcado programado y el de cierre se ejecuten al mismo tiempo
+    private final ReentrantLock volcadoLock = new ReentrantLock();
+
+    // Últimos productos vistos por cada usuario activo
+    private final AsyncCache<Long, VistasRecientes> vistasRecientes;
+    private final int cantidadRecientes;
+    private final Duration retencion;
+    private final int lotePurga;
+
+    private record VistaPendiente(Long usuarioId, Long productoId, LocalDateTime fecha) {
+    }
+
+    // Búfer circular con los últimos productos distintos que vio un usuario (visible en el paquete para las pruebas)
+    static final class VistasRecientes {
+        private final long[] productos;
+        private final ReentrantLock lock = new ReentrantLock();
+        private int inicio;     // Posición del más reciente
+        private int tamanio;
+
+        VistasRecientes(int capacidad) {
+            this.productos = new long[capacidad];
+        }
+
+        void agregar(long productoId) {
+            lock.lock();
+            try {
+                // Si ya estaba, se quita de su posición para que quede solo como el más reciente
+                int posicion = buscar(productoId);
+                if (posicion >= 0) {
+                    for (int i = posicion; i > 0; i--) {
+                        productos[indice(i)] = productos[indice(i - 1)];
+                    }
+                    productos[inicio] = productoId;
+                    return;
+                }
+                inicio = (inicio - 1 + productos.length) % productos.length;
+                productos[inicio] = productoId;
+                tamanio = Math.min(tamanio + 1, productos.length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<Long> ultimos(int cantidad) {
+            lock.lock();
+            try {
+                List<Long> ultimos = new ArrayList<>(Math.min(cantidad, tamanio));
+                for (int i = 0; i < tamanio && i < cantidad; i++) {
+                    ultimos.add(productos[indice(i)]);
+                }
+                return ultimos;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int buscar(long productoId) {
+            for (int i = 0; i < tamanio; i++) {
+                if (productos[indice(i)] == productoId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Posición en el arreglo del i-ésimo más reciente
+        private int indice(int i) {
+            return (inicio + i) % productos.length;
+        }
+    }
+
+    public RegistroVistasServiceImpl(JdbcTemplate jdbcTemplate,
+                                     HistorialNavegacionRepository historialNavegacionRepository,
+                                     BloqueoEntreReplicas bloqueoEntreReplicas,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${productos.vistas.capacidad-historial:50000}") int capacidadHistorial,
+                                     @Value("${productos.vistas.tamanio-lote:1000}") int tamanioLote,
+                                     @Value("${productos.vistas.volcado.presupuesto:1s}") Duration presupuestoVolcado,
+                                     @Value("${productos.vistas.recientes.cantidad:20}") int cantidadRecientes,
+                                     @Value("${productos.vistas.recientes.usuarios-maximos:100000}") long usuariosMaximos,
+                                     @Value("${productos.vistas.recientes.expiracion:30m}") Duration expiracionRecientes,
+                                     @Value("${productos.vistas.retencion:180d}") Duration retencion,
+                                     @Value("${productos.vistas.purga.lote:5000}") int lotePurga) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.historialNavegacionRepository = historialNavegacionRepository;
+        this.bloqueoEntreReplicas = bloqueoEntreReplicas;
+        this.cantidadRecientes = cantidadRecientes;
+        this.retencion = retencion;
+        this.lotePurga = lotePurga;
+        this.vistasRecientes = Caffeine.newBuilder()
+                .maximumSize(usuariosMaximos)
+                .expireAfterAccess(expiracionRecientes)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, vistasRecientes.synchronous(), "productos.vistas.recientes");
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.historialPendiente = new ArrayBlockingQueue<>(capacidadHistorial);
+        this.tamanioLote = tamanioLote;
+        this.presupuestoVolcado = presupuestoVolcado;
+
+        this.historialDescartado = Counter.builder("productos.vistas.historial.descartados")
+                .description("Filas de historial descartadas porque la cola estaba llena")
+                .register(meterRegistry);
+        this.tiempoVolcado = Timer.builder("productos.vistas.volcado")
+                .description("Duración del volcado de vistas e historial")
+                .register(meterRegistry);
+        Gauge.builder("productos.vistas.historial.pendientes", historialPendiente, BlockingQueue::size)
+                .description("Filas de historial en espera de ser insertadas")
+                .register(meterRegistry);
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public void registrarVista(Long productoId, Long usuarioId) {
+        vistasPendientes.computeIfAbsent(productoId, id -> new LongAdder()).increment();
+
+        // Solo se actualiza el búfer si ya está en memoria; si no, se arma en la próxima lectura (incluye lo pendiente)
+        if (usuarioId != null) {
+            // Si el búfer se está cargando, la vista se agrega cuando termine la carga
+            CompletableFuture<VistasRecientes> recientes = vistasRecientes.getIfPresent(usuarioId);
+            if (recientes != null) {
+                recientes.thenAccept(cargadas -> cargadas.agregar(productoId));
+            }
+        }
+
+        if (usuarioId != null) {
+            // Se indexa antes de encolarla, para que el volcado siempre la encuentre al quitarla del índice
+            VistaPendiente vista = new VistaPendiente(usuarioId, productoId, LocalDateTime.now());
+            indexarPendiente(vista);
+            if (!historialPendiente.offer(vista)) {
+                desindexarPendiente(vista);
+                historialDescartado.increment();
+            }
+        }
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public List<Long> ultimosVistos(Long usuarioId, int cantidad) {
+        return CargaSinBloqueo.obtener(vistasRecientes, usuarioId, this::cargarVistasRecientes).ultimos(Math.min(cantidad, cantidadRecientes));
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Scheduled(cron = "${productos.vistas.purga.cron:0 0 4 * * *}")
+    public int purgarHistorialAntiguo() {
+        Timestamp limite = Timestamp.valueOf(LocalDateTime.now().minus(retencion));
+        AtomicInteger total = new AtomicInteger();
+        try {
+            // Solo una réplica purga; las demás borrarían las mismas filas y competirían por sus bloqueos
+            boolean ejecutada = bloqueoEntreReplicas.ejecutarSiLibre(BLOQUEO_PURGA, () -> {
+                int borradas;
+                do {
+                    borradas = jdbcTemplate.update(SQL_PURGAR_HISTORIAL, limite, lotePurga);
+                    total.addAndGet(borradas);
+                } while (borradas == lotePurga);
+            });
+            if (!ejecutada) {
+                log.info("Otra instancia está purgando el historial de navegación; se omite esta purga");
+            }
+        } catch (RuntimeException e) {
+            log.error("Error al purgar el historial de navegación anterior a {}", limite, e);
+        }
+        if (total.get() > 0) {
+            log.info("Purgadas {} filas del historial de navegación anteriores a {}", total.get(), limite);
+        }
+        return total.get();
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Scheduled(fixedDelayString = "${productos.vistas.volcado-ms:2000}")
+    public void volcarPendientes() {
+        volcadoLock.lock();
+        try {
+            // Se escriben lotes mientras salgan completos (la cola tiene más) y quede presupuesto de tiempo
+            long limite = System.nanoTime() + presupuestoVolcado.toNanos();
+            tiempoVolcado.record(() -> {
+                int escritas;
+                do {
+                    escritas = volcar();
+                } while (escritas == tamanioLote && System.nanoTime() < limite);
+            });
+        } catch (RuntimeException e) {
+            log.error("Error al volcar las vistas de productos; se reintentará en el próximo ciclo", e);
+        } finally {
+            volcadoLock.unlock();
+        }
+    }
+
+    // Vuelca todo lo pendiente antes de cerrar el contexto (el DataSource se cierra después de este bean)
+    @PreDestroy
+    public void alDetener() {
+        volcadoLock.lock();
+        try {
+            while (!historialPendiente.isEmpty() || hayVistasPendientes()) {
+                volcar();
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudieron volcar las vistas pendientes al detener la aplicación", e);
+        } finally {
+            volcadoLock.unlock();
+        }
+    }
+
+    //===============================================================================================================================================
+
+    // Escribe un lote y devuelve la cantidad de filas de historial incluidas
+    private int volcar() {
+        // Se toma una porción de cada contador (sum + add(-delta)) en vez de reiniciarlo, para no perder incrementos concurrentes
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Map.Entry<Long, LongAdder> retirado : contadoresRetirados) {
+            tomarPorcion(retirado.getKey(), retirado.getValue(), deltas);
+        }
+        contadoresRetirados.clear();
+
+        for (Map.Entry<Long, LongAdder> entrada : vistasPendientes.entrySet()) {
+            LongAdder contador = entrada.getValue();
+            if (!tomarPorcion(entrada.getKey(), contador, deltas) && vistasPendientes.remove(entrada.getKey(), contador)) {
+                // Sin vistas desde el volcado anterior: se quita para que el mapa no crezca con todo el catálogo
+                contadoresRetirados.add(Map.entry(entrada.getKey(), contador));
+            }
+        }
+        List<Object[]> incrementos = new ArrayList<>(deltas.size());
+        deltas.forEach((productoId, delta) -> incrementos.add(new Object[]{delta, productoId}));
+        // Orden por ID para que réplicas concurrentes bloqueen las filas en el mismo orden
+        incrementos.sort((a, b) -> Long.compare((Long) a[1], (Long) b[1]));
+
+        List<VistaPendiente> historial = new ArrayList<>(Math.min(historialPendiente.size(), tamanioLote));
+        historialPendiente.drainTo(historial, tamanioLote);
+
+        if (incrementos.isEmpty() && historial.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!incrementos.isEmpty()) {
+                    jdbcTemplate.batchUpdate(SQL_INCREMENTAR_VISTAS, incrementos);
+                }
+                if (!historial.isEmpty()) {
+                    jdbcTemplate.batchUpdate(SQL_INSERTAR_HISTORIAL, historial.stream()
+                            .map(v -> new Object[]{v.usuarioId(), v.productoId(), Timestamp.valueOf(v.fecha())})
+                            .toList());
+                }
+            });
+        } catch (RuntimeException e) {
+            // Se devuelven los incrementos a sus contadores y el historial a la cola (lo que no quepa se descarta)
+            incrementos.forEach(fila -> vistasPendientes.computeIfAbsent((Long) fila[1], id -> new LongAdder()).add((Long) fila[0]));
+            historial.forEach(vista -> {
+                if (!historialPendiente.offer(vista)) {
+                    desindexarPendiente(vista);
+                    historialDescartado.increment();
+                }
+            });
+            throw e;
+        }
+        historial.forEach(this::desindexarPendiente);
+
+        log.debug("Volcadas vistas de {} productos y {} filas de historial.", incrementos.size(), historial.size());
+        return historial.size();
+    }
+
+    // Arma el búfer con las últimas vistas guardadas y las que todavía están en la cola (más recientes)
+    private VistasRecientes cargarVistasRecientes(Long usuarioId) {
+        VistasRecientes recientes = new VistasRecientes(cantidadRecientes);
+
+        List<Long> guardadas = historialNavegacionRepository.findUltimosVistosPorUsuario(usuarioId, PageRequest.of(0, cantidadRecientes));
+        for (int i = guardadas.size() - 1; i >= 0; i--) {
+            recientes.agregar(guardadas.get(i));
+        }
+        List<VistaPendiente> pendientes = new ArrayList<>();
+        pendientesPorUsuario.computeIfPresent(usuarioId, (id, cola) -> {
+            pendientes.addAll(cola);
+            return cola;
+        });
+        pendientes.forEach(vista -> recientes.agregar(vista.productoId()));
+        return recientes;
+    }
+
+    private void indexarPendiente(VistaPendiente vista) {
+        pendientesPorUsuario.compute(vista.usuarioId(), (id, cola) -> {
+            ArrayDeque<VistaPendiente> pendientes = cola != null ? cola : new ArrayDeque<>();
+            pendientes.addLast(vista);
+            return pendientes;
+        });
+    }
+
+    // Quita la vista del índice (ya se insertó o se descartó); la cola del usuario se elimina al quedar vacía
+    private void desindexarPendiente(VistaPendiente vista) {
+        pendientesPorUsuario.computeIfPresent(vista.usuarioId(), (id, cola) -> {
+            // Se vuelcan en orden de llegada, así que casi siempre es la primera
+            if (cola.peekFirst() == vista) {
+                cola.pollFirst();
+            } else {
+                cola.removeFirstOccurrence(vista);
+            }
+            return cola.isEmpty() ? null : cola;
+        });
+    }
+
+    // Acumula en deltas lo que tiene el contador y lo descuenta de él; devuelve false si estaba en cero
+    private static boolean tomarPorcion(Long productoId, LongAdder contador, Map<Long, Long> deltas) {
+        long delta = contador.sum();
+        if (delta <= 0) {
+            return false;
+        }
+        contador.add(-delta);
+        deltas.merge(productoId, delta, Long::sum);
+        return true;
+    }
+
+    private boolean hayVistasPendientes() {
+        return vistasPendientes.values().stream().anyMatch(adder -> adder.sum() > 0)
+                || contadoresRetirados.stream().anyMatch(retirado -> retirado.getValue().sum() > 0);
+    }
+}
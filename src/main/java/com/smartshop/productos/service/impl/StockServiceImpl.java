@@ -0,0 +1,480 @@
+package com.smartshop.productos.service.impl;
+
+import com.smartshop.productos.dto.ItemReservaDTO;
+import com.smartshop.productos.dto.ReservaStockDTO;
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import com.smartshop.productos.event.StockCambiadoEvent;
+import com.smartshop.productos.exception.ProductoNoEncontradoException;
+import com.smartshop.productos.exception.ReservaNoEncontradaException;
+import com.smartshop.productos.exception.StockInsuficienteException;
+import com.smartshop.productos.service.StockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Operaciones de stock sin lecturas previas: cada ajuste es un único UPDATE condicional
+ * ({@code WHERE stock + delta >= 0}) que la base de datos serializa con el bloqueo de la fila,
+ * por lo que no es posible vender más unidades de las existentes aunque haya muchas solicitudes concurrentes.
+ * <p>
+ * {@code disponible} se actualiza en la misma sentencia solo cuando el stock cruza el cero, de modo que una baja
+ * manual del producto no se revierte por un ajuste que deja stock positivo.
+ * <p>
+ * Los productos con stock fragmentado (ventas relámpago) reparten su stock en varias filas de {@code stock_fragmentos}.
+ * Cada ajuste toma un fragmento al azar; si no alcanza, prueba con el fragmento de mayor stock y, como último recurso,
+ * bloquea todos los fragmentos y los rebalancea. La fila del producto solo se toca cuando el total cruza el cero
+ * (para mantener {@code disponible}) y en la sincronización periódica de {@code productos.stock}.
+ */
+@Service
+@Slf4j
+public class StockServiceImpl implements StockService {
+
+    // Parámetros: delta, delta, id, delta
+    private static final String SQL_AJUSTAR_STOCK = """
+            UPDATE productos
+            SET stock = stock + ?,
+                disponible = CASE WHEN stock + ? <= 0 THEN false WHEN stock <= 0 THEN true ELSE disponible END,
+                fecha_actualizacion = LOCALTIMESTAMP
+            WHERE id = ? AND stock + ? >= 0 AND (stock_fragmentado IS NULL OR stock_fragmentado = false)
+            RETURNING stock""";
+
+    private static final String SQL_STOCK_FRAGMENTADO = "SELECT stock_fragmentado FROM productos WHERE id = ?";
+    private static final String SQL_BLOQUEAR_PRODUCTO = "SELECT stock, stock_fragmentado FROM productos WHERE id = ? FOR UPDATE";
+
+    // Stock total: para productos fragmentados es la suma de sus fragmentos
+    private static final String SQL_STOCK_TOTAL = """
+            (CASE WHEN p.stock_fragmentado = true
+                  THEN (SELECT COALESCE(SUM(f.stock), 0) FROM stock_fragmentos f WHERE f.producto_id = p.id)
+                  ELSE p.stock END)""";
+    private static final String SQL_OBTENER_STOCK = "SELECT " + SQL_STOCK_TOTAL + " FROM productos p WHERE p.id = ?";
+    private static final String SQL_ESTA_DISPONIBLE = "SELECT p.disponible AND " + SQL_STOCK_TOTAL + " >= ? FROM productos p WHERE p.id = ?";
+
+    // Fragmentos. Parámetros de SQL_AJUSTAR_FRAGMENTO: delta, producto, fragmento, delta
+    private static final String SQL_AJUSTAR_FRAGMENTO = "UPDATE stock_fragmentos SET stock = stock + ? WHERE producto_id = ? AND fragmento = ? AND stock + ? >= 0 RETURNING stock";
+    private static final String SQL_DESCONTAR_FRAGMENTO_MAYOR = """
+            UPDATE stock_fragmentos SET stock = stock - ?
+            WHERE id = (SELECT id FROM stock_fragmentos WHERE producto_id = ? AND stock >= ? ORDER BY stock DESC LIMIT 1 FOR UPDATE SKIP LOCKED)
+            RETURNING stock""";
+    private static final String SQL_BLOQUEAR_FRAGMENTOS = "SELECT fragmento, stock FROM stock_fragmentos WHERE producto_id = ? ORDER BY fragmento FOR UPDATE";
+    private static final String SQL_CANTIDAD_FRAGMENTOS = "SELECT count(*) FROM stock_fragmentos WHERE producto_id = ?";
+    private static final String SQL_ACTUALIZAR_FRAGMENTO = "UPDATE stock_fragmentos SET stock = ? WHERE producto_id = ? AND fragmento = ?";
+    private static final String SQL_INSERTAR_FRAGMENTO = "INSERT INTO stock_fragmentos (producto_id, fragmento, stock) VALUES (?, ?, ?)";
+    private static final String SQL_BORRAR_FRAGMENTOS = "DELETE FROM stock_fragmentos WHERE producto_id = ?";
+    private static final String SQL_MARCAR_FRAGMENTADO = "UPDATE productos SET stock = ?, stock_fragmentado = ?, fecha_actualizacion = LOCALTIMESTAMP WHERE id = ?";
+
+    // Copia en productos.stock la suma de los fragmentos y ajusta disponible si el total cruzó el cero.
+    // Devuelve cada producto actualizado indicando si cambió su disponibilidad.
+    private static final String SQL_SINCRONIZAR_FRAGMENTADOS = """
+            WITH totales AS (
+                SELECT producto_id, COALESCE(SUM(stock), 0) AS total FROM stock_fragmentos %s GROUP BY producto_id
+            ), cambios AS (
+                SELECT p.id, p.stock AS anterior, t.total
+                FROM productos p JOIN totales t ON t.producto_id = p.id
+                WHERE p.stock_fragmentado = true AND p.stock <> t.total
+                FOR UPDATE OF p
+            )
+            UPDATE productos p
+            SET stock = c.total,
+                disponible = CASE WHEN c.total <= 0 THEN false WHEN c.anterior <= 0 THEN true ELSE p.disponible END
+            FROM cambios c
+            WHERE p.id = c.id
+            RETURNING p.id, (c.anterior > 0) <> (c.total > 0) AS cambio_disponibilidad""";
+    private static final String SQL_SINCRONIZAR_TODOS = SQL_SINCRONIZAR_FRAGMENTADOS.formatted("");
+    private static final String SQL_SINCRONIZAR_PRODUCTO = SQL_SINCRONIZAR_FRAGMENTADOS.formatted("WHERE producto_id = ?");
+
+    private static final String SQL_INSERTAR_RESERVA = "INSERT INTO reservas_stock (id, fecha_creacion, expira_en) VALUES (?, ?, ?)";
+    private static final String SQL_INSERTAR_ITEM = "INSERT INTO reservas_stock_items (reserva_id, producto_id, cantidad) VALUES (?, ?, ?)";
+    // Borrar los ítems con RETURNING garantiza que una reserva se confirme o libere una sola vez aunque haya llamadas concurrentes
+    private static final String SQL_QUITAR_ITEMS = "DELETE FROM reservas_stock_items WHERE reserva_id = ? RETURNING producto_id, cantidad";
+    private static final String SQL_QUITAR_RESERVA = "DELETE FROM reservas_stock WHERE id = ?";
+    private static final String SQL_RESERVAS_VENCIDAS = "SELECT id FROM reservas_stock WHERE expira_en < ? ORDER BY expira_en LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Tiempo que una reserva mantiene el stock descontado sin confirmarse
+    private final Duration duracionReserva;
+    // Cantidad máxima de reservas vencidas que se liberan en cada ejecución del proceso programado
+    private final int loteVencidas;
+
+    // Cantidad de fragmentos por producto fragmentado; si queda desactualizada (otra réplica cambió la fragmentación),
+    // el ajuste falla en el fragmento elegido y continúa por el camino de rebalanceo, que la corrige
+    private final ConcurrentHashMap<Long, Integer> cantidadFragmentos = new ConcurrentHashMap<>();
+
+    public StockServiceImpl(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${productos.stock.reserva.duracion:15m}") Duration duracionReserva,
+                            @Value("${productos.stock.reserva.lote-vencidas:500}") int loteVencidas) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.duracionReserva = duracionReserva;
+        this.loteVencidas = loteVencidas;
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Transactional
+    public int ajustarStock(Long productoId, int cantidad) {
+        log.info("Ajustando stock del producto {} en {}", productoId, cantidad);
+        Integer nuevoStock = aplicarDelta(productoId, cantidad);
+        // En productos fragmentados el ajuste solo conoce el fragmento modificado; el total se suma aparte
+        return nuevoStock != null ? nuevoStock : obtenerStockDisponible(productoId);
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Transactional(readOnly = true)
+    public int obtenerStockDisponible(Long productoId) {
+        return jdbcTemplate.queryForList(SQL_OBTENER_STOCK, Integer.class, productoId)
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new ProductoNoEncontradoException("Producto no encontrado"));
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean estaDisponible(Long productoId, int cantidadDeseada) {
+        return jdbcTemplate.queryForList(SQL_ESTA_DISPONIBLE, Boolean.class, cantidadDeseada, productoId)
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new ProductoNoEncontradoException("Producto no encontrado"));
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Transactional
+    public ReservaStockDTO reservar(List<ItemReservaDTO> items) {
+        // Se agrupan las cantidades por producto y se recorren en orden de ID para que dos reservas concurrentes
+        // bloqueen las filas en el mismo orden y no se produzcan interbloqueos
+        Map<Long, Integer> cantidades = new TreeMap<>();
+        for (ItemReservaDTO item : items) {
+            if (item.cantidad() == null || item.cantidad() <= 0) {
+                throw new IllegalArgumentException("La cantidad a reservar debe ser mayor que cero");
+            }
+            cantidades.merge(item.productoId(), item.cantidad(), Integer::sum);
+        }
+
+        // Si algún producto no tiene stock suficiente, la excepción revierte los descuentos anteriores
+        cantidades.forEach((productoId, cantidad) -> aplicarDelta(productoId, -cantidad));
+
+        String reservaId = UUID.randomUUID().toString();
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime expiraEn = ahora.plus(duracionReserva);
+
+        jdbcTemplate.update(SQL_INSERTAR_RESERVA, reservaId, Timestamp.valueOf(ahora), Timestamp.valueOf(expiraEn));
+        jdbcTemplate.batchUpdate(SQL_INSERTAR_ITEM, cantidades.entrySet().stream()
+                .map(e -> new Object[]{reservaId, e.getKey(), e.getValue()})
+                .toList());
+
+        log.info("Reserva {} creada para {} productos, vence {}", reservaId, cantidades.size(), expiraEn);
+
+        List<ItemReservaDTO> reservados = cantidades.entrySet().stream()
+                .map(e -> new ItemReservaDTO(e.getKey(), e.getValue()))
+                .toList();
+        return new ReservaStockDTO(reservaId, reservados, expiraEn);
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Transactional
+    public void confirmarReserva(String reservaId) {
+        if (quitarReserva(reservaId).isEmpty()) {
+            throw new ReservaNoEncontradaException("Reserva no encontrada o ya finalizada");
+        }
+        log.info("Reserva {} confirmada", reservaId);
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Transactional
+    public void liberarReserva(String reservaId) {
+        if (!devolverStock(reservaId)) {
+            throw new ReservaNoEncontradaException("Reserva no encontrada o ya finalizada");
+        }
+        log.info("Reserva {} liberada", reservaId);
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Transactional
+    public void fragmentarStock(Long productoId, int fragmentos) {
+        if (fragmentos < 1) {
+            throw new IllegalArgumentException("La cantidad de fragmentos debe ser mayor que cero");
+        }
+
+        // El bloqueo de la fila del producto serializa la fragmentación con otros cambios de modo
+        Map<String, Object> producto = bloquearProducto(productoId);
+        int total = Boolean.TRUE.equals(producto.get("stock_fragmentado"))
+                ? sumarFragmentosBloqueados(productoId)
+                : ((Number) producto.get("stock")).intValue();
+
+        jdbcTemplate.update(SQL_BORRAR_FRAGMENTOS, productoId);
+        int[] porciones = repartir(total, fragmentos);
+        List<Object[]> filas = new ArrayList<>(fragmentos);
+        for (int i = 0; i < fragmentos; i++) {
+            filas.add(new Object[]{productoId, i, porciones[i]});
+        }
+        jdbcTemplate.batchUpdate(SQL_INSERTAR_FRAGMENTO, filas);
+        jdbcTemplate.update(SQL_MARCAR_FRAGMENTADO, total, true, productoId);
+
+        cantidadFragmentos.put(productoId, fragmentos);
+        log.info("Stock del producto {} repartido en {} fragmentos (total {})", productoId, fragmentos, total);
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Transactional
+    public void desfragmentarStock(Long productoId) {
+        Map<String, Object> producto = bloquearProducto(productoId);
+        if (!Boolean.TRUE.equals(producto.get("stock_fragmentado"))) {
+            return;
+        }
+
+        int total = sumarFragmentosBloqueados(productoId);
+        jdbcTemplate.update(SQL_BORRAR_FRAGMENTOS, productoId);
+        jdbcTemplate.update(SQL_MARCAR_FRAGMENTADO, total, false, productoId);
+
+        cantidadFragmentos.remove(productoId);
+        log.info("Stock del producto {} unificado (total {})", productoId, total);
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    @Transactional
+    public void repartirStockFragmentado(Long productoId, int stock) {
+        bloquearProducto(productoId);
+        List<int[]> fragmentos = bloquearFragmentos(productoId);
+        if (fragmentos.isEmpty()) {
+            return;
+        }
+        escribirFragmentos(productoId, repartir(stock, fragmentos.size()));
+    }
+
+    //===============================================================================================================================================
+
+    // Copia periódicamente la suma de los fragmentos en productos.stock para listados, filtros y carruseles
+    @Scheduled(fixedDelayString = "${productos.stock.fragmentos.sincronizacion-ms:5000}")
+    public void sincronizarStockFragmentado() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> publicarSincronizados(jdbcTemplate.query(SQL_SINCRONIZAR_TODOS, this::mapearSincronizacion)));
+        } catch (RuntimeException e) {
+            log.error("Error al sincronizar el stock de los productos fragmentados", e);
+        }
+    }
+
+    //===============================================================================================================================================
+
+    // Devuelve el stock de las reservas vencidas; cada reserva se libera en su propia transacción
+    @Scheduled(fixedDelayString = "${productos.stock.reserva.revision-ms:30000}")
+    public void liberarReservasVencidas() {
+        List<String> vencidas = jdbcTemplate.queryForList(SQL_RESERVAS_VENCIDAS, String.class,
+                Timestamp.valueOf(LocalDateTime.now()), loteVencidas);
+
+        int liberadas = 0;
+        for (String reservaId : vencidas) {
+            try {
+                Boolean liberada = transactionTemplate.execute(status -> devolverStock(reservaId));
+                if (Boolean.TRUE.equals(liberada)) {
+                    liberadas++;
+                }
+            } catch (RuntimeException e) {
+                log.error("Error al liberar la reserva vencida {}", reservaId, e);
+            }
+        }
+
+        if (liberadas > 0) {
+            log.info("Se liberaron {} reservas de stock vencidas", liberadas);
+        }
+    }
+
+    //===============================================================================================================================================
+
+    // Aplica el ajuste con un UPDATE condicional y publica un cambio si el producto pasó a estar (o dejar de estar) disponible.
+    // Devuelve el nuevo stock, o null si el producto tiene stock fragmentado.
+    private Integer aplicarDelta(Long productoId, int delta) {
+        List<Integer> resultado = jdbcTemplate.queryForList(SQL_AJUSTAR_STOCK, Integer.class, delta, delta, productoId, delta);
+
+        if (resultado.isEmpty()) {
+            // El UPDATE no modificó filas: el producto no existe, no alcanza el stock o el stock está fragmentado
+            List<Boolean> fragmentado = jdbcTemplate.queryForList(SQL_STOCK_FRAGMENTADO, Boolean.class, productoId);
+            if (fragmentado.isEmpty()) {
+                throw new ProductoNoEncontradoException("Producto no encontrado");
+            }
+            if (Boolean.TRUE.equals(fragmentado.get(0))) {
+                if (aplicarDeltaFragmentado(productoId, delta)) {
+                    return null;
+                }
+                // Otra transacción lo desfragmentó entre la consulta y el rebalanceo; la fila del producto ya está
+                // bloqueada, así que el reintento por el camino normal no puede volver a encontrarlo fragmentado
+                return aplicarDelta(productoId, delta);
+            }
+            throw new StockInsuficienteException("Stock insuficiente para el producto " + productoId);
+        }
+
+        int nuevoStock = resultado.get(0);
+        int stockAnterior = nuevoStock - delta;
+        if ((stockAnterior > 0) != (nuevoStock > 0)) {
+            // Cambia la disponibilidad: carruseles, filtros y cachés deben enterarse
+            eventPublisher.publishEvent(new ProductoCambiadoEvent(productoId));
+        } else {
+            // Solo cambia la cantidad: basta con invalidar las cachés que guardan el stock
+            eventPublisher.publishEvent(new StockCambiadoEvent(productoId));
+        }
+        return nuevoStock;
+    }
+
+    // Devuelve false si al bloquear el producto resultó que ya no tiene el stock fragmentado
+    private boolean aplicarDeltaFragmentado(Long productoId, int delta) {
+        int fragmentos = cantidadFragmentos.computeIfAbsent(productoId,
+                id -> jdbcTemplate.queryForObject(SQL_CANTIDAD_FRAGMENTOS, Integer.class, id));
+
+        // 1. Un fragmento al azar: las solicitudes concurrentes se reparten entre filas distintas
+        Integer restante = null;
+        if (fragmentos > 0) {
+            int fragmento = ThreadLocalRandom.current().nextInt(fragmentos);
+            restante = primero(jdbcTemplate.queryForList(SQL_AJUSTAR_FRAGMENTO, Integer.class, delta, productoId, fragmento, delta));
+        }
+
+        // 2. Si el fragmento elegido no alcanza, el de mayor stock que no esté bloqueado por otra transacción
+        if (restante == null && delta < 0) {
+            restante = primero(jdbcTemplate.queryForList(SQL_DESCONTAR_FRAGMENTO_MAYOR, Integer.class, -delta, productoId, -delta));
+        }
+
+        // 3. Ningún fragmento alcanza por sí solo: se bloquean todos y se reparte el total
+        boolean puedeCruzarCero;
+        if (restante == null) {
+            if (!rebalancear(productoId, delta)) {
+                return false;
+            }
+            puedeCruzarCero = true;
+        } else {
+            // El total solo puede llegar a cero si el fragmento quedó vacío, y solo puede dejar de ser cero si el fragmento lo estaba
+            puedeCruzarCero = delta < 0 ? restante == 0 : restante == delta;
+        }
+
+        if (puedeCruzarCero) {
+            publicarSincronizados(jdbcTemplate.query(SQL_SINCRONIZAR_PRODUCTO, this::mapearSincronizacion, productoId));
+        }
+        return true;
+    }
+
+    // Bloquea el producto (como fragmentar y desfragmentar) antes que sus fragmentos; devuelve false si ya no está fragmentado
+    private boolean rebalancear(Long productoId, int delta) {
+        Map<String, Object> producto = bloquearProducto(productoId);
+        if (!Boolean.TRUE.equals(producto.get("stock_fragmentado"))) {
+            cantidadFragmentos.remove(productoId);
+            return false;
+        }
+        List<int[]> fragmentos = bloquearFragmentos(productoId);
+        if (fragmentos.isEmpty()) {
+            // Marcado como fragmentado pero sin filas: dato inconsistente, no una carrera con desfragmentar
+            cantidadFragmentos.remove(productoId);
+            throw new IllegalStateException("El producto " + productoId + " no tiene fragmentos de stock");
+        }
+        cantidadFragmentos.put(productoId, fragmentos.size());
+
+        long total = (long) fragmentos.stream().mapToInt(f -> f[1]).sum() + delta;
+        if (total < 0) {
+            throw new StockInsuficienteException("Stock insuficiente para el producto " + productoId);
+        }
+        escribirFragmentos(productoId, repartir((int) total, fragmentos.size()));
+        log.debug("Fragmentos del producto {} rebalanceados (total {})", productoId, total);
+        return true;
+    }
+
+    private Map<String, Object> bloquearProducto(Long productoId) {
+        return jdbcTemplate.queryForList(SQL_BLOQUEAR_PRODUCTO, productoId)
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new ProductoNoEncontradoException("Producto no encontrado"));
+    }
+
+    // Bloquea los fragmentos en orden y devuelve pares {fragmento, stock}
+    private List<int[]> bloquearFragmentos(Long productoId) {
+        return jdbcTemplate.query(SQL_BLOQUEAR_FRAGMENTOS, (rs, rowNum) -> new int[]{rs.getInt("fragmento"), rs.getInt("stock")}, productoId);
+    }
+
+    private int sumarFragmentosBloqueados(Long productoId) {
+        return bloquearFragmentos(productoId).stream().mapToInt(f -> f[1]).sum();
+    }
+
+    private void escribirFragmentos(Long productoId, int[] porciones) {
+        List<Object[]> filas = new ArrayList<>(porciones.length);
+        for (int i = 0; i < porciones.length; i++) {
+            filas.add(new Object[]{porciones[i], productoId, i});
+        }
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_FRAGMENTO, filas);
+    }
+
+    // Reparte el total en partes iguales; las primeras porciones reciben el resto
+    private static int[] repartir(int total, int fragmentos) {
+        int[] porciones = new int[fragmentos];
+        for (int i = 0; i < fragmentos; i++) {
+            porciones[i] = total / fragmentos + (i < total % fragmentos ? 1 : 0);
+        }
+        return porciones;
+    }
+
+    // Cambio de disponibilidad: evento de producto; solo cambio de cantidad: evento de stock
+    private Object mapearSincronizacion(ResultSet rs, int rowNum) throws SQLException {
+        long id = rs.getLong("id");
+        return rs.getBoolean("cambio_disponibilidad") ? new ProductoCambiadoEvent(id) : new StockCambiadoEvent(id);
+    }
+
+    private void publicarSincronizados(List<Object> eventos) {
+        eventos.forEach(eventPublisher::publishEvent);
+    }
+
+    private static Integer primero(List<Integer> resultado) {
+        return resultado.isEmpty() ? null : resultado.get(0);
+    }
+
+    // Elimina la reserva y devuelve los ítems que tenía (vacío si ya no existía)
+    private List<ItemReservaDTO> quitarReserva(String reservaId) {
+        List<ItemReservaDTO> items = jdbcTemplate.query(SQL_QUITAR_ITEMS,
+                (rs, rowNum) -> new ItemReservaDTO(rs.getLong("producto_id"), rs.getInt("cantidad")),
+                reservaId);
+        jdbcTemplate.update(SQL_QUITAR_RESERVA, reservaId);
+        return items;
+    }
+
+    private boolean devolverStock(String reservaId) {
+        List<ItemReservaDTO> items = quitarReserva(reservaId);
+        items.stream()
+                .sorted((a, b) -> Long.compare(a.productoId(), b.productoId()))
+                .forEach(item -> aplicarDelta(item.productoId(), item.cantidad()));
+        return !items.isEmpty();
+    }
+}
@@ -0,0 +1,220 @@
+package com.smartshop.productos.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.smartshop.productos.config.FabricaHilos;
+import com.smartshop.productos.dto.FiltroProductos;
+import com.smartshop.productos.dto.ProductoDTO;
+import com.smartshop.productos.repository.ProductoRepository;
+import com.smartshop.productos.service.TransmisionProductosService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Transmisión de resultados de búsqueda para clientes de scroll infinito (SSE o NDJSON).
+ * <p>
+ * Usa el mismo recorrido que la exportación ({@link ProductoRepository#recorrerProductos}), así que los filtros se
+ * interpretan igual que en {@code /filtrar}, pero sin calcular el total. Las filas se envían en orden de ID a medida
+ * que llegan del cursor; si el cliente se desconecta, la siguiente escritura falla, se deja de leer y al cerrarse el
+ * stream se libera el cursor de la base de datos. El ID de cada evento permite reanudar con {@code Last-Event-ID}.
+ * <p>
+ * Cada transmisión ocupa una conexión mientras dura: las SSE se limitan con su ejecutor acotado y las NDJSON (que
+ * corren en el ejecutor asíncrono de Spring MVC) con {@code productos.busqueda.stream.ndjson-simultaneas}; en ambos
+ * casos, si no hay lugar se responde 503 antes de empezar.
+ */
+@Service
+@Slf4j
+public class TransmisionProductosServiceImpl implements TransmisionProductosService {
+
+    private final ProductoRepository productoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectWriter escritorJson;
+    private final int tamanioFetch;
+    private final Duration timeout;
+
+    // Hilos acotados: cada transmisión SSE ocupa un hilo y una conexión a la base de datos mientras dura
+    private final ThreadPoolExecutor transmisores;
+    // Transmisiones NDJSON en curso
+    private final Semaphore transmisionesNdjson;
+
+    private final Counter productosEnviados;
+    private final Counter cancelaciones;
+
+    public TransmisionProductosServiceImpl(ProductoRepository productoRepository,
+                                           PlatformTransactionManager transactionManager,
+                                           ObjectMapper objectMapper,
+                                           MeterRegistry meterRegistry,
+                                           FabricaHilos fabricaHilos,
+                                           @Value("${productos.busqueda.stream.tamanio-fetch:100}") int tamanioFetch,
+                                           @Value("${productos.busqueda.stream.timeout:5m}") Duration timeout,
+                                           @Value("${productos.busqueda.stream.hilos:8}") int hilos,
+                                           @Value("${productos.busqueda.stream.cola:32}") int capacidadCola,
+                                           @Value("${productos.busqueda.stream.ndjson-simultaneas:4}") int ndjsonSimultaneas) {
+        this.productoRepository = productoRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.escritorJson = objectMapper.writerFor(ProductoDTO.class);
+        this.tamanioFetch = tamanioFetch;
+        this.timeout = timeout;
+
+        this.transmisores = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola), fabricaHilos.crear("transmision-productos"));
+        this.transmisionesNdjson = new Semaphore(ndjsonSimultaneas);
+
+        this.productosEnviados = Counter.builder("productos.busqueda.stream.filas")
+                .description("Productos enviados por la búsqueda en streaming")
+                .register(meterRegistry);
+        this.cancelaciones = Counter.builder("productos.busqueda.stream.cancelaciones")
+                .description("Transmisiones cortadas porque el cliente se desconectó o venció el tiempo")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void detener() {
+        transmisores.shutdownNow();
+    }
+
+    //===============================================================================================================================================
+
+    @Override
+    public SseEmitter transmitirEventos(FiltroProductos filtro, Long despuesDeId, Integer limite) {
+        SseEmitter emisor = new SseEmitter(timeout.toMillis());
+        AtomicBoolean cancelado = new AtomicBoolean();
+        emisor.onCompletion(() -> cancelado.set(true));
+        emisor.onTimeout(() -> cancelado.set(true));
+        emisor.onError(error -> cancelado.set(true));
+
+        try {
+            transmisores.execute(() -> transmitir(emisor, cancelado, filtro, despuesDeId, limite));
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Demasiadas transmisiones de productos en curso");
+        }
+        return emisor;
+    }
+
+    @Override
+    public StreamingResponseBody transmitirNdjson(FiltroProductos filtro, Long despuesDeId, Integer limite) {
+        // Se reserva antes de responder: el cuerpo corre después, cuando el estado de la respuesta ya no se puede cambiar
+        if (!transmisionesNdjson.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Demasiadas transmisiones de productos en curso");
+        }
+        return salida -> {
+            try {
+                transmitirNdjson(filtro, despuesDeId, limite, salida);
+            } finally {
+                transmisionesNdjson.release();
+            }
+        };
+    }
+
+    //===============================================================================================================================================
+
+    private long transmitirNdjson(FiltroProductos filtro, Long despuesDeId, Integer limite, OutputStream salida) throws IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+        try {
+            long enviados = recorrer(filtro, despuesDeId, limite, new AtomicBoolean(), new Consumidor() {
+                @Override
+                public void enviar(ProductoDTO producto) throws IOException {
+                    escritor.write(escritorJson.writeValueAsString(producto));
+                    escritor.write('\n');
+                }
+
+                // Se vacía una vez por viaje a la base de datos: el cliente recibe cada bloque en cuanto llega
+                @Override
+                public void bloqueCompleto() throws IOException {
+                    escritor.flush();
+                }
+            });
+            escritor.flush();
+            return enviados;
+        } catch (UncheckedIOException e) {
+            cancelaciones.increment();
+            throw e.getCause();
+        }
+    }
+
+    //===============================================================================================================================================
+
+    private void transmitir(SseEmitter emisor, AtomicBoolean cancelado, FiltroProductos filtro, Long despuesDeId, Integer limite) {
+        try {
+            long enviados = recorrer(filtro, despuesDeId, limite, cancelado, producto -> emisor.send(SseEmitter.event()
+                    .id(String.valueOf(producto.getId()))
+                    .name("producto")
+                    .data(producto, MediaType.APPLICATION_JSON)));
+
+            if (cancelado.get()) {
+                cancelaciones.increment();
+                return;
+            }
+            emisor.send(SseEmitter.event().name("fin").data(Map.of("enviados", enviados), MediaType.APPLICATION_JSON));
+            emisor.complete();
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            // El cliente cerró la conexión o el emisor ya terminó por timeout: el cursor ya se cerró al salir del recorrido
+            cancelaciones.increment();
+            log.debug("Transmisión de productos cancelada: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Error en la transmisión de productos", e);
+            emisor.completeWithError(e);
+        }
+    }
+
+    private long recorrer(FiltroProductos filtro, Long despuesDeId, Integer limite, AtomicBoolean cancelado, Consumidor consumidor) {
+        // PostgreSQL solo usa el cursor (fetch size) con autocommit desactivado, es decir, dentro de una transacción
+        Long enviados = transactionTemplate.execute(status -> {
+            try (Stream<ProductoDTO> productos = productoRepository.recorrerProductos(filtro, despuesDeId, tamanioFetch)) {
+                Iterator<ProductoDTO> iterador = productos.iterator();
+                long cantidad = 0;
+                while (!cancelado.get() && (limite == null || cantidad < limite) && iterador.hasNext()) {
+                    consumidor.enviar(iterador.next());
+                    cantidad++;
+                    if (cantidad % tamanioFetch == 0) {
+                        consumidor.bloqueCompleto();
+                    }
+                }
+                productosEnviados.increment(cantidad);
+                return cantidad;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return enviados == null ? 0 : enviados;
+    }
+
+    @FunctionalInterface
+    private interface Consumidor {
+
+        void enviar(ProductoDTO producto) throws IOException;
+
+        default void bloqueCompleto() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,22 @@
+-- Búsqueda de texto completo sobre productos (PostgreSQL).
+-- El script es idempotente: se ejecuta en cada arranque después de que Hibernate actualiza el esquema.
+
+CREATE EXTENSION IF NOT EXISTS unaccent;
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- unaccent no es IMMUTABLE, por lo que no puede usarse directamente en columnas generadas ni índices
+CREATE OR REPLACE FUNCTION productos_unaccent(texto text) RETURNS text
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+AS $$ SELECT public.unaccent('public.unaccent'::regdictionary, texto) $$;
+
+-- Vector de búsqueda mantenido por PostgreSQL: el nombre pesa más (A) que la descripción (B)
+ALTER TABLE productos ADD COLUMN IF NOT EXISTS busqueda tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('spanish', productos_unaccent(coalesce(nombre, ''))), 'A') ||
+        setweight(to_tsvector('spanish', productos_unaccent(coalesce(descripcion, ''))), 'B')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_productos_busqueda ON productos USING GIN (busqueda);
+
+-- Índice de trigramas para la búsqueda por nombre con LIKE (lower(nombre) like '%texto%'), que se mantiene como alternativa
+CREATE INDEX IF NOT EXISTS idx_productos_nombre_trgm ON productos USING GIN (lower(nombre) gin_trgm_ops);
@@ -0,0 +1,26 @@
+-- Nombres de etiqueta únicos (PostgreSQL): el etiquetado automático inserta con ON CONFLICT (nombre).
+-- ddl-auto=update no agrega la restricción a una tabla que ya existe (y fallaría si hay nombres repetidos),
+-- así que primero se unifican las etiquetas repetidas en la de menor ID. El script es idempotente y se
+-- ejecuta en una sola transacción; el bloqueo evita que se creen etiquetas mientras se unifican.
+
+LOCK TABLE etiquetas IN SHARE ROW EXCLUSIVE MODE;
+
+-- 1. Los productos de cada etiqueta repetida pasan a la etiqueta que se conserva
+INSERT INTO producto_etiqueta (producto_id, etiqueta_id)
+SELECT pe.producto_id, d.conservar
+FROM producto_etiqueta pe
+JOIN (SELECT id, MIN(id) OVER (PARTITION BY nombre) AS conservar FROM etiquetas) d ON d.id = pe.etiqueta_id
+WHERE d.id <> d.conservar
+ON CONFLICT DO NOTHING;
+
+-- 2. Se quitan los vínculos y las etiquetas repetidas
+DELETE FROM producto_etiqueta pe
+USING (SELECT id, MIN(id) OVER (PARTITION BY nombre) AS conservar FROM etiquetas) d
+WHERE pe.etiqueta_id = d.id AND d.id <> d.conservar;
+
+DELETE FROM etiquetas e
+USING (SELECT id, MIN(id) OVER (PARTITION BY nombre) AS conservar FROM etiquetas) d
+WHERE e.id = d.id AND d.id <> d.conservar;
+
+-- 3. Índice único con el nombre de la restricción de la entidad (si Hibernate ya la creó, no se repite)
+CREATE UNIQUE INDEX IF NOT EXISTS uk_etiquetas_nombre ON etiquetas (nombre);
@@ -0,0 +1,5 @@
+-- Secuencia de IDs de productos con asignacion en bloques (allocationSize = 50 en la entidad Producto).
+-- Se adelanta por encima del mayor ID existente para no chocar con las filas creadas con IDENTITY.
+CREATE SEQUENCE IF NOT EXISTS productos_seq INCREMENT BY 50;
+ALTER SEQUENCE productos_seq INCREMENT BY 50;
+SELECT setval('productos_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM productos) + 51, (SELECT last_value FROM productos_seq)));
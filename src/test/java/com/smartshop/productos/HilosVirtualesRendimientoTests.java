@@ -0,0 +1,145 @@
+package com.smartshop.productos;
+
+import com.smartshop.productos.config.FabricaHilos;
+import com.smartshop.productos.entity.Categoria;
+import com.smartshop.productos.entity.Producto;
+import com.smartshop.productos.repository.CategoriaRepository;
+import com.smartshop.productos.repository.ProductoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Prueba de carga del servidor con tamaños de pool fijos (Tomcat y Hikari), para comparar hilos de plataforma con
+ * hilos virtuales: muchos clientes concurrentes piden páginas de {@code /filtrar/cursor} (sin caché de respuestas, una
+ * consulta por solicitud) y se informan el rendimiento y la latencia p50/p99.
+ * <p>
+ * Fuera de la compilación habitual y requiere Docker. Se ejecuta dos veces y se comparan las líneas del informe:
+ * <pre>
+ * mvn test -Prendimiento -Dtest=HilosVirtualesRendimientoTests
+ * mvn test -Pjava21,rendimiento -Dtest=HilosVirtualesRendimientoTests -Dspring.threads.virtual.enabled=true
+ * </pre>
+ */
+@Tag("rendimiento")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=50",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.smartshop.productos=WARN"
+})
+@Import(PostgresContenedorConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+@Slf4j
+class HilosVirtualesRendimientoTests {
+
+    private static final int PRODUCTOS = 5_000;
+    private static final int CLIENTES = 400;
+    private static final Duration CALENTAMIENTO = Duration.ofSeconds(10);
+    private static final Duration MEDICION = Duration.ofSeconds(30);
+
+    @LocalServerPort
+    private int puerto;
+    @Autowired
+    private ProductoRepository productoRepository;
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+    @Autowired
+    private FabricaHilos fabricaHilos;
+
+    //===============================================================================================================================================
+
+    @Test
+    void rendimientoYLatenciaConPoolsFijos() throws Exception {
+        cargarCatalogo();
+        HttpClient cliente = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+        ejecutarClientes(cliente, CALENTAMIENTO);
+        List<long[]> latencias = ejecutarClientes(cliente, MEDICION);
+
+        long[] todas = latencias.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        assertThat(todas).isNotEmpty();
+        log.info("Hilos {}: {} clientes, Tomcat 50 hilos, Hikari 20 conexiones -> {} solicitudes/s, p50 {} ms, p99 {} ms",
+                fabricaHilos.usaHilosVirtuales() ? "virtuales" : "de plataforma", CLIENTES,
+                Math.round(todas.length / (double) MEDICION.toSeconds()),
+                percentil(todas, 0.50) / 1_000_000.0, percentil(todas, 0.99) / 1_000_000.0);
+    }
+
+    //===============================================================================================================================================
+
+    // Cada cliente repite solicitudes durante el tiempo indicado y devuelve la latencia de cada una en nanosegundos
+    private List<long[]> ejecutarClientes(HttpClient cliente, Duration duracion) throws Exception {
+        long fin = System.nanoTime() + duracion.toNanos();
+        ExecutorService clientes = Executors.newFixedThreadPool(CLIENTES);
+        try {
+            List<Future<long[]>> resultados = new ArrayList<>(CLIENTES);
+            for (int i = 0; i < CLIENTES; i++) {
+                resultados.add(clientes.submit(() -> {
+                    long[] latencias = new long[1024];
+                    int cantidad = 0;
+                    while (System.nanoTime() < fin) {
+                        int precioMin = ThreadLocalRandom.current().nextInt(10, 500);
+                        HttpRequest solicitud = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto
+                                + "/api/v1/productos/filtrar/cursor?precioMin=" + precioMin + "&tamanio=20&ordenarPor=precio")).build();
+                        long inicio = System.nanoTime();
+                        HttpResponse<Void> respuesta = cliente.send(solicitud, HttpResponse.BodyHandlers.discarding());
+                        long latencia = System.nanoTime() - inicio;
+                        assertThat(respuesta.statusCode()).isEqualTo(200);
+                        if (cantidad == latencias.length) {
+                            latencias = Arrays.copyOf(latencias, cantidad * 2);
+                        }
+                        latencias[cantidad++] = latencia;
+                    }
+                    return Arrays.copyOf(latencias, cantidad);
+                }));
+            }
+            List<long[]> latencias = new ArrayList<>(CLIENTES);
+            for (Future<long[]> resultado : resultados) {
+                latencias.add(resultado.get());
+            }
+            return latencias;
+        } finally {
+            clientes.shutdownNow();
+        }
+    }
+
+    private static long percentil(long[] ordenadas, double fraccion) {
+        return ordenadas[Math.min(ordenadas.length - 1, (int) Math.ceil(fraccion * ordenadas.length) - 1)];
+    }
+
+    private void cargarCatalogo() {
+        Categoria categoria = categoriaRepository.save(Categoria.builder().nombre("Carga " + System.nanoTime()).build());
+        List<Producto> productos = new ArrayList<>(PRODUCTOS);
+        for (int i = 0; i < PRODUCTOS; i++) {
+            productos.add(Producto.builder()
+                    .nombre("Producto " + i)
+                    .precio(BigDecimal.valueOf(10 + i % 500))
+                    .stock(1 + i % 20)
+                    .disponible(true)
+                    .stockFragmentado(false)
+                    .categoria(categoria)
+                    .build());
+        }
+        productoRepository.saveAll(productos);
+    }
+}
@@ -0,0 +1,21 @@
+package com.smartshop.productos;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * PostgreSQL en un contenedor para las pruebas de integración; la URL y las credenciales reemplazan a las de
+ * application.properties. Las clases que lo importan se anotan con {@code @Testcontainers(disabledWithoutDocker = true)}
+ * para omitirse (en lugar de fallar) donde no hay Docker.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class PostgresContenedorConfig {
+
+    @Bean
+    @ServiceConnection
+    PostgreSQLContainer<?> postgres() {
+        return new PostgreSQLContainer<>("postgres:16-alpine");
+    }
+}
@@ -2,8 +2,12 @@ package com.smartshop.productos;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.junit.jupiter.Testcontainers;
 
 @SpringBootTest
+@Import(PostgresContenedorConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
 class ProductosApplicationTests {
 
 	@Test
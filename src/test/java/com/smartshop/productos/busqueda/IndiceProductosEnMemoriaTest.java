@@ -0,0 +1,117 @@
+package com.smartshop.productos.busqueda;
+
+import com.smartshop.productos.dto.ProductoDTO;
+import com.smartshop.productos.mapper.ProductoMapper;
+import com.smartshop.productos.projection.ProductoCarruselFila;
+import com.smartshop.productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IndiceProductosEnMemoriaTest {
+
+    private final ProductoRepository productoRepository = mock(ProductoRepository.class);
+    private final ProductoMapper productoMapper = mock(ProductoMapper.class);
+    private IndiceProductosEnMemoria indice;
+
+    @BeforeEach
+    void construir() {
+        List<ProductoCarruselFila> filas = List.of(
+                fila(1L, "Televisor LED", "Pantalla 4K", "499.90", 5, 10L, true),
+                fila(2L, "Teléfono móvil", "Doble SIM", "199.00", 0, 10L, false),
+                fila(3L, "Lámpara de escritorio", null, "25.50", 12, 20L, true));
+        when(productoRepository.findTodosConCategoria()).thenReturn(filas);
+        when(productoRepository.findNombresEtiquetas()).thenReturn(List.<Object[]>of(new Object[]{3L, "iluminación"}));
+        when(productoMapper.toDto(any(ProductoCarruselFila.class))).thenAnswer(inv -> {
+            ProductoCarruselFila f = inv.getArgument(0);
+            return ProductoDTO.builder()
+                    .id(f.getId())
+                    .nombre(f.getNombre())
+                    .descripcion(f.getDescripcion())
+                    .precio(f.getPrecio())
+                    .stock(f.getStock())
+                    .disponible(f.getDisponible())
+                    .build();
+        });
+
+        indice = new IndiceProductosEnMemoria(productoRepository, productoMapper, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), true);
+        indice.inicializar();
+    }
+
+    @Test
+    void tokenizarIgnoraMayusculasYAcentos() {
+        List<String> tokens = new ArrayList<>();
+        IndiceProductosEnMemoria.tokenizar("Teléfono MÓVIL-5G", tokens);
+
+        assertThat(tokens).containsExactly("telefono", "movil", "5g");
+    }
+
+    @Test
+    void buscaPorPrefijoEnNombreDescripcionYEtiquetas() {
+        assertThat(ids(indice.buscarProductos("tele", null, null, null, null))).containsExactly(1L, 2L);
+        assertThat(ids(indice.buscarProductos("pantalla", null, null, null, null))).containsExactly(1L);
+        assertThat(ids(indice.buscarProductos("ILUMIN", null, null, null, null))).containsExactly(3L);
+    }
+
+    @Test
+    void combinaCategoriaDisponibilidadYRangoDePrecio() {
+        assertThat(ids(indice.buscarProductos(null, 10L, null, null, true))).containsExactly(1L);
+        assertThat(ids(indice.buscarProductos(null, null, null, null, false))).containsExactly(2L);
+        assertThat(ids(indice.buscarProductos(null, null, new BigDecimal("25.50"), new BigDecimal("199.00"), null)))
+                .containsExactly(2L, 3L);
+    }
+
+    @Test
+    void paginaOrdenadaConElTotalDeCoincidencias() {
+        Page<ProductoDTO> pagina = indice.buscarProductosPaginado(null, null, null, null, null,
+                PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "precio")));
+
+        assertThat(ids(pagina.getContent())).containsExactly(1L, 2L);
+        assertThat(pagina.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    void entregaCopiasYRefrescaLosContadores() {
+        indice.buscarProductos("televisor", null, null, null, null).get(0).setStock(-1);
+        assertThat(indice.buscarProductos("televisor", null, null, null, null).get(0).getStock()).isEqualTo(5);
+
+        when(productoRepository.findContadores()).thenReturn(List.<Object[]>of(new Object[]{1L, 3, 42}));
+        indice.refrescarContadores();
+
+        ProductoDTO televisor = indice.buscarProductos("televisor", null, null, null, null).get(0);
+        assertThat(televisor.getStock()).isEqualTo(3);
+        assertThat(televisor.getVecesVisto()).isEqualTo(42);
+    }
+
+    //===============================================================================================================================================
+
+    private static List<Long> ids(List<ProductoDTO> productos) {
+        return productos.stream().map(ProductoDTO::getId).toList();
+    }
+
+    private static ProductoCarruselFila fila(Long id, String nombre, String descripcion, String precio, int stock, Long categoriaId, boolean disponible) {
+        ProductoCarruselFila fila = mock(ProductoCarruselFila.class);
+        when(fila.getId()).thenReturn(id);
+        when(fila.getNombre()).thenReturn(nombre);
+        when(fila.getDescripcion()).thenReturn(descripcion);
+        when(fila.getPrecio()).thenReturn(new BigDecimal(precio));
+        when(fila.getStock()).thenReturn(stock);
+        when(fila.getCategoriaId()).thenReturn(categoriaId);
+        when(fila.getDisponible()).thenReturn(disponible);
+        return fila;
+    }
+}
@@ -0,0 +1,52 @@
+package com.smartshop.productos.cache;
+
+import com.smartshop.productos.dto.FiltroProductos;
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConteoProductosCacheTest {
+
+    private final ConteoProductosCache cache = new ConteoProductosCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(10));
+
+    @Test
+    void filtrosEquivalentesCompartenElTotal() {
+        AtomicInteger conteos = new AtomicInteger();
+
+        cache.obtener(new FiltroProductos(" TV ", null, null, null, null), () -> (long) conteos.incrementAndGet());
+        long total = cache.obtener(new FiltroProductos("tv", null, null, null, null), () -> (long) conteos.incrementAndGet());
+
+        assertThat(total).isEqualTo(1);
+        assertThat(conteos).hasValue(1);
+    }
+
+    @Test
+    void noGuardaUnTotalCalculadoAntesDeUnaInvalidacion() {
+        FiltroProductos filtro = new FiltroProductos("tv", null, null, null, null);
+
+        // El cambio se confirma mientras se cuenta: ese total no debe quedar en caché
+        long total = cache.obtener(filtro, () -> {
+            cache.alCambiarProducto(new ProductoCambiadoEvent(1L));
+            return 10L;
+        });
+        assertThat(total).isEqualTo(10);
+
+        assertThat(cache.obtener(filtro, () -> 11L)).isEqualTo(11);
+    }
+
+    @Test
+    void guardarDescartaTotalesDeUnaGeneracionAnterior() {
+        FiltroProductos filtro = new FiltroProductos(null, 3L, null, null, null);
+        long generacion = cache.generacion();
+        cache.alCambiarProducto(new ProductoCambiadoEvent(1L));
+
+        cache.guardar(filtro, 5, generacion);
+
+        assertThat(cache.obtener(filtro, () -> 6L)).isEqualTo(6);
+    }
+}
@@ -0,0 +1,100 @@
+package com.smartshop.productos.cache;
+
+import com.smartshop.productos.dto.ProductoDTO;
+import com.smartshop.productos.event.StockCambiadoEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductoCacheTest {
+
+    private final CacheCompartidaEnMemoria compartida = new CacheCompartidaEnMemoria();
+    private final ProductoCache cache = new ProductoCache(new SimpleMeterRegistry(), proveedor(compartida),
+            100, Duration.ofMinutes(5), Duration.ofMinutes(30));
+
+    @Test
+    void guardaLaCargaEnAmbosNiveles() {
+        AtomicInteger cargas = new AtomicInteger();
+
+        cache.obtener(1L, id -> cargar(id, 5, cargas));
+        cache.obtener(1L, id -> cargar(id, 5, cargas));
+
+        assertThat(cargas).hasValue(1);
+        assertThat(compartida.obtener(1L)).isPresent();
+    }
+
+    @Test
+    void noGuardaEnElNivelCompartidoUnaCargaInvalidadaMientrasSeLeia() {
+        // El cambio se confirma mientras se lee la versión anterior: esa lectura no debe llegar al nivel compartido
+        Optional<ProductoCacheado> leido = cache.obtener(1L, id -> {
+            cache.alCambiarStock(new StockCambiadoEvent(id));
+            return cargar(id, 5, new AtomicInteger());
+        });
+
+        assertThat(leido).isPresent();
+        assertThat(compartida.obtener(1L)).isEmpty();
+    }
+
+    @Test
+    void unCambioDeStockInvalidaElProducto() {
+        cache.obtener(1L, id -> cargar(id, 5, new AtomicInteger()));
+
+        cache.alCambiarStock(new StockCambiadoEvent(1L));
+
+        assertThat(cache.obtener(1L, id -> cargar(id, 4, new AtomicInteger())))
+                .map(p -> p.producto().getStock())
+                .contains(4);
+    }
+
+    @Test
+    void entregaCopias() {
+        cache.obtener(1L, id -> cargar(id, 5, new AtomicInteger())).orElseThrow().producto().setStock(0);
+
+        assertThat(cache.obtener(1L, id -> Optional.empty()))
+                .map(p -> p.producto().getStock())
+                .contains(5);
+    }
+
+    @Test
+    void obtenerVariosCargaLosFaltantesEnUnSoloLote() {
+        cache.obtener(2L, id -> cargar(id, 5, new AtomicInteger()));
+        List<Set<Long>> lotes = new ArrayList<>();
+
+        Map<Long, ProductoCacheado> productos = cache.obtenerVarios(List.of(3L, 2L, 9L, 1L), ids -> {
+            lotes.add(Set.copyOf(ids));
+            // El 9 no existe
+            return Map.of(1L, cargar(1L, 1, new AtomicInteger()).orElseThrow(), 3L, cargar(3L, 3, new AtomicInteger()).orElseThrow());
+        });
+
+        assertThat(lotes).containsExactly(Set.of(1L, 3L, 9L));
+        assertThat(productos.keySet()).containsExactly(3L, 2L, 1L);
+        // Lo cargado en lote queda en la caché
+        assertThat(cache.obtenerVarios(List.of(1L, 3L), ids -> Map.of())).containsOnlyKeys(1L, 3L);
+    }
+
+    //===============================================================================================================================================
+
+    private static Optional<ProductoCacheado> cargar(Long id, int stock, AtomicInteger cargas) {
+        cargas.incrementAndGet();
+        return Optional.of(new ProductoCacheado(ProductoDTO.builder().id(id).nombre("Producto " + id).stock(stock).build(), 1L));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<CacheCompartida> proveedor(CacheCompartida compartida) {
+        ObjectProvider<CacheCompartida> proveedor = mock(ObjectProvider.class);
+        when(proveedor.getIfAvailable()).thenReturn(compartida);
+        return proveedor;
+    }
+}
@@ -0,0 +1,182 @@
+package com.smartshop.productos.cache;
+
+import com.smartshop.productos.event.ProductoCambiadoEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RespuestasCacheFilterTest {
+
+    private static final String CARRUSELES = "/api/v1/productos/carruseles";
+    private static final String LISTADO = "/api/v1/productos/categoria/5";
+
+    private RespuestasCacheFilter filtro;
+
+    // Cuántas veces la solicitud llegó al "controlador"
+    private final AtomicInteger llamadas = new AtomicInteger();
+
+    // Cuerpo que devuelve el controlador de prueba; por encima de 1 KB se guarda también la variante gzip
+    private String cuerpo = "{\"id\":1}";
+
+    // Acción que se ejecuta mientras el controlador calcula la respuesta
+    private Runnable duranteLaSolicitud = () -> {
+    };
+
+    @BeforeEach
+    void construir() {
+        filtro = new RespuestasCacheFilter(new SimpleMeterRegistry(), true, 1024 * 1024,
+                Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofMinutes(1));
+    }
+
+    @Test
+    void coincideEtagAdmiteDebilesComodinYListas() {
+        assertThat(RespuestasCacheFilter.coincideEtag("\"abc\"", "\"abc\"")).isTrue();
+        assertThat(RespuestasCacheFilter.coincideEtag("W/\"abc\"", "\"abc\"")).isTrue();
+        assertThat(RespuestasCacheFilter.coincideEtag("\"abc\"", "W/\"abc\"")).isTrue();
+        assertThat(RespuestasCacheFilter.coincideEtag("*", "\"abc\"")).isTrue();
+        assertThat(RespuestasCacheFilter.coincideEtag("\"xyz\", W/\"abc\"", "\"abc\"")).isTrue();
+        assertThat(RespuestasCacheFilter.coincideEtag("\"xyz\", \"abcd\"", "\"abc\"")).isFalse();
+    }
+
+    @Test
+    void elSegundoGetSeRespondeDesdeLaCache() throws Exception {
+        MockHttpServletResponse primera = ejecutar(solicitud(CARRUSELES));
+        MockHttpServletResponse segunda = ejecutar(solicitud(CARRUSELES));
+
+        assertThat(llamadas).hasValue(1);
+        assertThat(segunda.getStatus()).isEqualTo(200);
+        assertThat(segunda.getContentAsString()).isEqualTo(cuerpo);
+        assertThat(segunda.getHeader(HttpHeaders.ETAG)).isEqualTo(primera.getHeader(HttpHeaders.ETAG)).isNotNull();
+    }
+
+    @Test
+    void respondeNoModificadoSiElEtagCoincide() throws Exception {
+        String etag = ejecutar(solicitud(CARRUSELES)).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletRequest condicional = solicitud(CARRUSELES);
+        condicional.addHeader(HttpHeaders.IF_NONE_MATCH, "\"otro\", W/" + etag);
+        MockHttpServletResponse respuesta = ejecutar(condicional);
+
+        assertThat(respuesta.getStatus()).isEqualTo(304);
+        assertThat(respuesta.getContentAsByteArray()).isEmpty();
+        assertThat(respuesta.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+    }
+
+    @Test
+    void eligeLaVarianteGzipSoloSiElClienteLaAcepta() throws Exception {
+        cuerpo = "{\"nombre\":\"" + "x".repeat(2048) + "\"}";
+        ejecutar(solicitud(CARRUSELES));
+
+        MockHttpServletRequest conGzip = solicitud(CARRUSELES);
+        conGzip.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        MockHttpServletResponse comprimida = ejecutar(conGzip);
+        MockHttpServletResponse plana = ejecutar(solicitud(CARRUSELES));
+
+        assertThat(comprimida.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(comprimida.getContentLength()).isLessThan(cuerpo.length());
+        assertThat(descomprimir(comprimida.getContentAsByteArray())).isEqualTo(cuerpo);
+        assertThat(plana.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(plana.getContentAsString()).isEqualTo(cuerpo);
+        assertThat(llamadas).hasValue(1);
+    }
+
+    @Test
+    void lasRespuestasPequeniasNoTienenVarianteGzip() throws Exception {
+        ejecutar(solicitud(CARRUSELES));
+
+        MockHttpServletRequest conGzip = solicitud(CARRUSELES);
+        conGzip.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        MockHttpServletResponse respuesta = ejecutar(conGzip);
+
+        assertThat(respuesta.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(respuesta.getContentAsString()).isEqualTo(cuerpo);
+    }
+
+    @Test
+    void noGuardaLaRespuestaSiHuboUnaInvalidacionMientrasSeCalculaba() throws Exception {
+        duranteLaSolicitud = () -> filtro.alCambiarProducto(ProductoCambiadoEvent.catalogo());
+        MockHttpServletResponse primera = ejecutar(solicitud(CARRUSELES));
+
+        duranteLaSolicitud = () -> {
+        };
+        ejecutar(solicitud(CARRUSELES));
+
+        // La primera respuesta se entrega igual, pero no queda en la caché
+        assertThat(primera.getContentAsString()).isEqualTo(cuerpo);
+        assertThat(llamadas).hasValue(2);
+    }
+
+    @Test
+    void laInvalidacionBorraLasEntradasDelGrupo() throws Exception {
+        ejecutar(solicitud(CARRUSELES));
+        filtro.alCambiarProducto(ProductoCambiadoEvent.catalogo());
+        ejecutar(solicitud(CARRUSELES));
+
+        assertThat(llamadas).hasValue(2);
+    }
+
+    @Test
+    void soloSeGuardaLaPrimeraPaginaDeCadaCategoria() throws Exception {
+        ejecutar(solicitud(LISTADO, "pagina", "0", "tamanio", "20"));
+        ejecutar(solicitud(LISTADO, "tamanio", "20", "pagina", "0"));
+        assertThat(llamadas).hasValue(1);
+
+        ejecutar(solicitud(LISTADO, "pagina", "1", "tamanio", "20"));
+        ejecutar(solicitud(LISTADO, "pagina", "1", "tamanio", "20"));
+        assertThat(llamadas).hasValue(3);
+    }
+
+    @Test
+    void soloFiltraGetSobreRutasConocidas() throws Exception {
+        ejecutar(new MockHttpServletRequest("POST", CARRUSELES));
+        ejecutar(new MockHttpServletRequest("POST", CARRUSELES));
+        ejecutar(solicitud("/api/v1/productos/7"));
+        ejecutar(solicitud("/api/v1/productos/7"));
+
+        assertThat(llamadas).hasValue(4);
+    }
+
+    //===============================================================================================================================================
+
+    private MockHttpServletResponse ejecutar(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain cadena = (req, res) -> {
+            llamadas.incrementAndGet();
+            duranteLaSolicitud.run();
+            res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            res.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            res.getOutputStream().write(cuerpo.getBytes(StandardCharsets.UTF_8));
+        };
+        filtro.doFilter(request, response, cadena);
+        return response;
+    }
+
+    private static MockHttpServletRequest solicitud(String uri, String... parametros) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        for (int i = 0; i < parametros.length; i += 2) {
+            request.addParameter(parametros[i], parametros[i + 1]);
+        }
+        return request;
+    }
+
+    private static String descomprimir(byte[] bytes) throws IOException {
+        try (InputStream entrada = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.smartshop.productos.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BloqueoEntreReplicasTest {
+
+    private final Connection conexion = mock(Connection.class);
+    private final PreparedStatement tomar = mock(PreparedStatement.class);
+    private final PreparedStatement liberar = mock(PreparedStatement.class);
+    private final ResultSet resultadoTomar = mock(ResultSet.class);
+    private BloqueoEntreReplicas bloqueo;
+
+    @BeforeEach
+    void conexion() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(conexion);
+        when(conexion.prepareStatement(anyString())).thenAnswer(invocacion ->
+                invocacion.<String>getArgument(0).contains("pg_try_advisory_lock") ? tomar : liberar);
+        ResultSet resultadoLiberar = mock(ResultSet.class);
+        when(resultadoLiberar.next()).thenReturn(true);
+        when(resultadoLiberar.getBoolean(1)).thenReturn(true);
+        when(liberar.executeQuery()).thenReturn(resultadoLiberar);
+        when(tomar.executeQuery()).thenReturn(resultadoTomar);
+        when(resultadoTomar.next()).thenReturn(true);
+        bloqueo = new BloqueoEntreReplicas(new JdbcTemplate(dataSource));
+    }
+
+    @Test
+    void ejecutaYLiberaEnLaMismaConexion() throws Exception {
+        when(resultadoTomar.getBoolean(1)).thenReturn(true);
+        AtomicBoolean ejecutada = new AtomicBoolean();
+
+        assertThat(bloqueo.ejecutarSiLibre("purga", () -> ejecutada.set(true))).isTrue();
+
+        assertThat(ejecutada).isTrue();
+        verify(tomar).setString(1, "purga");
+        verify(liberar).setString(1, "purga");
+        verify(liberar).executeQuery();
+    }
+
+    @Test
+    void noEjecutaSiOtraReplicaTieneElBloqueo() throws Exception {
+        when(resultadoTomar.getBoolean(1)).thenReturn(false);
+        AtomicBoolean ejecutada = new AtomicBoolean();
+
+        assertThat(bloqueo.ejecutarSiLibre("purga", () -> ejecutada.set(true))).isFalse();
+
+        assertThat(ejecutada).isFalse();
+        verify(liberar, never()).executeQuery();
+    }
+
+    @Test
+    void liberaAunqueLaTareaFalle() throws Exception {
+        when(resultadoTomar.getBoolean(1)).thenReturn(true);
+
+        assertThatThrownBy(() -> bloqueo.ejecutarSiLibre("purga", () -> {
+            throw new IllegalStateException("falla");
+        })).isInstanceOf(IllegalStateException.class);
+
+        verify(liberar).executeQuery();
+    }
+}
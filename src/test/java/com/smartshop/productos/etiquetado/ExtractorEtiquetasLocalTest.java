@@ -0,0 +1,79 @@
+package com.smartshop.productos.etiquetado;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExtractorEtiquetasLocalTest {
+
+    @Test
+    void cortaEnPuntuacionYPalabrasVacias() {
+        assertThat(ExtractorEtiquetasLocal.frasesCandidatas("Auriculares inalámbricos con cancelación de ruido. Batería larga"))
+                .containsExactly(
+                        List.of("auriculares", "inalámbricos"),
+                        List.of("cancelación"),
+                        List.of("ruido"),
+                        List.of("batería", "larga"));
+    }
+
+    @Test
+    void descartaNumerosYPalabrasDeUnaLetra() {
+        assertThat(ExtractorEtiquetasLocal.frasesCandidatas("Pack x 12 pilas AA"))
+                .containsExactly(List.of("pack"), List.of("pilas", "aa"));
+    }
+
+    @Test
+    void limitaLasFrasesATresPalabras() {
+        assertThat(ExtractorEtiquetasLocal.frasesCandidatas("teclado mecánico retroiluminado inalámbrico compacto"))
+                .containsExactly(List.of("teclado", "mecánico", "retroiluminado"), List.of("inalámbrico", "compacto"));
+    }
+
+    @Test
+    void textoVacioNoTieneFrases() {
+        assertThat(ExtractorEtiquetasLocal.frasesCandidatas(null)).isEmpty();
+        assertThat(ExtractorEtiquetasLocal.frasesCandidatas("  ")).isEmpty();
+        assertThat(ExtractorEtiquetasLocal.frasesCandidatas("de la y con 2024")).isEmpty();
+    }
+
+    @Test
+    void terminosSonLasPalabrasDistintasDeLasFrases() {
+        assertThat(ExtractorEtiquetasLocal.terminos("Silla de oficina. Silla ergonómica"))
+                .containsExactly("silla", "oficina", "ergonómica");
+    }
+
+    @Test
+    void prefiereLasFrasesLargasYRespetaElMaximo() {
+        EstadisticasCorpus corpus = mock(EstadisticasCorpus.class);
+        when(corpus.idf(anyString())).thenReturn(1.0);
+        ExtractorEtiquetasLocal extractor = new ExtractorEtiquetasLocal(corpus, 2);
+
+        List<List<String>> etiquetas = extractor.extraer(List.of("Cafetera espresso automática, para cápsulas y molido", ""));
+
+        assertThat(etiquetas.get(0)).containsExactly("cafetera espresso automática", "cápsulas");
+        assertThat(etiquetas.get(1)).isEmpty();
+    }
+
+    @Test
+    void losLotesGrandesConservanElOrden() {
+        EstadisticasCorpus corpus = mock(EstadisticasCorpus.class);
+        when(corpus.idf(anyString())).thenReturn(1.0);
+        ExtractorEtiquetasLocal extractor = new ExtractorEtiquetasLocal(corpus, 1);
+
+        // Más textos que el umbral de división: se procesan con fork-join
+        List<String> textos = new ArrayList<>(Collections.nCopies(600, "lámpara"));
+        textos.set(599, "escritorio");
+
+        List<List<String>> etiquetas = extractor.extraer(textos);
+
+        assertThat(etiquetas).hasSize(600);
+        assertThat(etiquetas.get(0)).containsExactly("lámpara");
+        assertThat(etiquetas.get(599)).containsExactly("escritorio");
+    }
+}
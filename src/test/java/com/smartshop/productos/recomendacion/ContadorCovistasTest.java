@@ -0,0 +1,53 @@
+package com.smartshop.productos.recomendacion;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContadorCovistasTest {
+
+    @Test
+    void acumulaLosPesosDeCadaProducto() {
+        ContadorCovistas contador = new ContadorCovistas();
+        contador.sumar(7L, 1f);
+        contador.sumar(7L, 0.5f);
+        contador.sumar(-3L, 2f);
+
+        assertThat(contador.obtener(7L)).isEqualTo(1.5f);
+        assertThat(contador.obtener(-3L)).isEqualTo(2f);
+        assertThat(contador.obtener(8L)).isZero();
+        assertThat(contador.tamanio()).isEqualTo(2);
+    }
+
+    @Test
+    void conservaLasEntradasAlCrecer() {
+        ContadorCovistas contador = new ContadorCovistas();
+        // Claves que caen en posiciones vecinas y varias duplicaciones del arreglo
+        for (long id = 1; id <= 1000; id++) {
+            contador.sumar(id * 1024, id);
+        }
+        contador.sumar(1024L, 1f);
+
+        assertThat(contador.tamanio()).isEqualTo(1000);
+        assertThat(contador.obtener(1024L)).isEqualTo(2f);
+        assertThat(contador.obtener(1000L * 1024)).isEqualTo(1000f);
+        assertThat(contador.obtener(1001L * 1024)).isZero();
+    }
+
+    @Test
+    void recorreCadaEntradaUnaVez() {
+        ContadorCovistas contador = new ContadorCovistas();
+        for (long id = 0; id < 50; id++) {
+            contador.sumar(id, 1f);
+            contador.sumar(id, 1f);
+        }
+
+        Map<Long, Float> recorridas = new HashMap<>();
+        contador.recorrer((id, peso) -> assertThat(recorridas.put(id, peso)).isNull());
+
+        assertThat(recorridas).hasSize(50).allSatisfy((id, peso) -> assertThat(peso).isEqualTo(2f));
+    }
+}
@@ -0,0 +1,87 @@
+package com.smartshop.productos.recomendacion;
+
+import com.smartshop.productos.projection.ProductoCarruselFila;
+import com.smartshop.productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecomendadorEtiquetasTest {
+
+    private final ProductoRepository productoRepository = mock(ProductoRepository.class);
+    private final List<Object[]> etiquetas = new ArrayList<>();
+
+    @BeforeEach
+    void catalogo() {
+        // Las filas se crean antes de stubbear el repositorio (Mockito no admite stubs anidados)
+        List<ProductoCarruselFila> filas = List.of(
+                fila(1L, 10L, "100.00", true),
+                fila(2L, 10L, "110.00", true),
+                fila(3L, 20L, "500.00", true),
+                fila(4L, 10L, "100.00", false),
+                fila(5L, 10L, "100.00", true),
+                fila(6L, 10L, "100.00", true),
+                fila(7L, 10L, "100.00", true));
+        when(productoRepository.findTodosConCategoria()).thenReturn(filas);
+        etiquetar(1L, "Café", "espresso", "acero");
+        etiquetar(2L, "café", "espresso");
+        etiquetar(3L, "café");
+        etiquetar(4L, "café", "espresso", "acero");
+        etiquetar(5L, "jardín");
+        etiquetar(6L, "acero");
+        when(productoRepository.findNombresEtiquetas()).thenReturn(etiquetas);
+    }
+
+    @Test
+    void ordenaPorEtiquetasCompartidasPrecioYCategoria() {
+        RecomendadorEtiquetas recomendador = recomendador(true, 10);
+
+        // El 4 comparte todo pero no está disponible; el 5 y el 7 no comparten etiquetas
+        assertThat(recomendador.similares(1L)).hasValue(List.of(2L, 6L, 3L));
+    }
+
+    @Test
+    void devuelveComoMaximoKVecinos() {
+        assertThat(recomendador(true, 1).similares(1L)).hasValue(List.of(2L));
+    }
+
+    @Test
+    void sinEtiquetasOSinIndiceNoHayRecomendacion() {
+        assertThat(recomendador(true, 10).similares(7L)).isEmpty();
+        assertThat(recomendador(true, 10).similares(99L)).isEmpty();
+        assertThat(recomendador(false, 10).similares(1L)).isEmpty();
+    }
+
+    //===============================================================================================================================================
+
+    private RecomendadorEtiquetas recomendador(boolean habilitado, int vecinos) {
+        RecomendadorEtiquetas recomendador = new RecomendadorEtiquetas(productoRepository, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), habilitado, vecinos, 0.2, 0.1, 5000, 1000);
+        recomendador.inicializar();
+        return recomendador;
+    }
+
+    private void etiquetar(Long productoId, String... nombres) {
+        for (String nombre : nombres) {
+            etiquetas.add(new Object[]{productoId, nombre});
+        }
+    }
+
+    private static ProductoCarruselFila fila(Long id, Long categoriaId, String precio, boolean disponible) {
+        ProductoCarruselFila fila = mock(ProductoCarruselFila.class);
+        when(fila.getId()).thenReturn(id);
+        when(fila.getCategoriaId()).thenReturn(categoriaId);
+        when(fila.getPrecio()).thenReturn(new BigDecimal(precio));
+        when(fila.getDisponible()).thenReturn(disponible);
+        return fila;
+    }
+}
@@ -0,0 +1,139 @@
+package com.smartshop.productos.repository;
+
+import com.smartshop.productos.PostgresContenedorConfig;
+import com.smartshop.productos.entity.Categoria;
+import com.smartshop.productos.entity.Producto;
+import com.smartshop.productos.mapper.ProductoMapper;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Costo de una página del listado de productos con el recorrido anterior (entidades + {@link ProductoMapper#toDto},
+ * que inicializa la categoría de cada fila) y con la proyección a {@code ProductoDTO}: sentencias SQL por página
+ * (estadísticas de Hibernate), bytes asignados por página en el hilo y tiempo medio.
+ * <p>
+ * Fuera de la compilación habitual: {@code mvn test -Prendimiento -Dtest=ListadoProductosRendimientoTests} (requiere Docker).
+ */
+@Tag("rendimiento")
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@Import(PostgresContenedorConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+@Slf4j
+class ListadoProductosRendimientoTests {
+
+    private static final int CATEGORIAS = 50;
+    private static final int PRODUCTOS = 5_000;
+    private static final int TAMANIO_PAGINA = 50;
+    private static final int PAGINAS = 100;
+    private static final int CALENTAMIENTO = 50;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+    @Autowired
+    private ProductoMapper productoMapper;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private record Medicion(double sentenciasPorPagina, long bytesPorPagina, double microsPorPagina) {
+    }
+
+    //===============================================================================================================================================
+
+    @Test
+    void proyeccionUsaUnaConsultaPorPagina() {
+        cargarCatalogo();
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        transaccion.setReadOnly(true);
+        int paginasCatalogo = PRODUCTOS / TAMANIO_PAGINA;
+
+        Medicion entidades = medir(transaccion, pagina -> productoRepository
+                .findAll(PageRequest.of(pagina % paginasCatalogo, TAMANIO_PAGINA))
+                .map(productoMapper::toDto)
+                .getContent());
+        Medicion proyeccion = medir(transaccion, pagina -> productoRepository
+                .buscarProductosPaginado(null, null, null, null, null, PageRequest.of(pagina % paginasCatalogo, TAMANIO_PAGINA))
+                .getContent());
+
+        log.info("Página de {} productos, entidades + MapStruct: {}", TAMANIO_PAGINA, entidades);
+        log.info("Página de {} productos, proyección a DTO:    {}", TAMANIO_PAGINA, proyeccion);
+
+        // Página + conteo, sin cargas de categoría por fila
+        assertThat(proyeccion.sentenciasPorPagina()).isLessThanOrEqualTo(2);
+        assertThat(proyeccion.sentenciasPorPagina()).isLessThan(entidades.sentenciasPorPagina());
+    }
+
+    //===============================================================================================================================================
+
+    private Medicion medir(TransactionTemplate transaccion, IntConsumer leerPagina) {
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            int pagina = i;
+            transaccion.executeWithoutResult(status -> leerPagina.accept(pagina));
+        }
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        long bytesAntes = bytesAsignados();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < PAGINAS; i++) {
+            int pagina = i;
+            transaccion.executeWithoutResult(status -> leerPagina.accept(pagina));
+        }
+        long nanos = System.nanoTime() - inicio;
+        long bytes = bytesAsignados() - bytesAntes;
+
+        return new Medicion((double) estadisticas.getPrepareStatementCount() / PAGINAS, bytes / PAGINAS, nanos / 1_000.0 / PAGINAS);
+    }
+
+    private static long bytesAsignados() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private void cargarCatalogo() {
+        List<Categoria> categorias = new ArrayList<>(CATEGORIAS);
+        for (int i = 0; i < CATEGORIAS; i++) {
+            categorias.add(Categoria.builder().nombre("Rendimiento " + i + " " + System.nanoTime()).build());
+        }
+        categorias = categoriaRepository.saveAll(categorias);
+
+        List<Producto> productos = new ArrayList<>(PRODUCTOS);
+        for (int i = 0; i < PRODUCTOS; i++) {
+            productos.add(Producto.builder()
+                    .nombre("Producto " + i)
+                    .descripcion("Descripción del producto " + i)
+                    .precio(BigDecimal.valueOf(10 + i % 500))
+                    .stock(i % 20)
+                    .disponible(i % 20 > 0)
+                    .stockFragmentado(false)
+                    // Filas vecinas en categorías distintas, como en un catálogo real ordenado por ID
+                    .categoria(categorias.get(i % CATEGORIAS))
+                    .build());
+        }
+        productoRepository.saveAll(productos);
+    }
+}
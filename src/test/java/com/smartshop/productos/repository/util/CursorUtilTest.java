@@ -0,0 +1,54 @@
+package com.smartshop.productos.repository.util;
+
+import com.smartshop.productos.exception.CursorInvalidoException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CursorUtilTest {
+
+    @Test
+    void codificaYDecodificaLaPosicion() {
+        String cursor = CursorUtil.codificar("precio", true, "19.90", 42L);
+
+        CursorUtil.Posicion posicion = CursorUtil.decodificar(cursor, "precio", true);
+
+        assertThat(posicion.valor()).isEqualTo("19.90");
+        assertThat(posicion.id()).isEqualTo(42L);
+    }
+
+    @Test
+    void elValorPuedeContenerElSeparador() {
+        String cursor = CursorUtil.codificar("nombre", false, "TV | 4K | 55\"", 7L);
+
+        assertThat(CursorUtil.decodificar(cursor, "nombre", false).valor()).isEqualTo("TV | 4K | 55\"");
+    }
+
+    @Test
+    void rechazaUnCursorDeOtroOrdenamiento() {
+        String cursor = CursorUtil.codificar("precio", true, "10", 1L);
+
+        assertThatThrownBy(() -> CursorUtil.decodificar(cursor, "nombre", true)).isInstanceOf(CursorInvalidoException.class);
+        assertThatThrownBy(() -> CursorUtil.decodificar(cursor, "precio", false)).isInstanceOf(CursorInvalidoException.class);
+    }
+
+    @Test
+    void rechazaCursoresMalFormados() {
+        String sinId = Base64.getUrlEncoder().encodeToString("precio|asc|abc|10".getBytes(StandardCharsets.UTF_8));
+        String incompleto = Base64.getUrlEncoder().encodeToString("precio|asc".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> CursorUtil.decodificar("%%no-es-base64%%", "precio", true)).isInstanceOf(CursorInvalidoException.class);
+        assertThatThrownBy(() -> CursorUtil.decodificar(sinId, "precio", true)).isInstanceOf(CursorInvalidoException.class);
+        assertThatThrownBy(() -> CursorUtil.decodificar(incompleto, "precio", true)).isInstanceOf(CursorInvalidoException.class);
+    }
+
+    @Test
+    void rechazaUnPrecioNoNumericoEnElCursor() {
+        assertThatThrownBy(() -> QuerydslUtil.getSeekPredicateForProducto("precio", true, "diez", 1L))
+                .isInstanceOf(CursorInvalidoException.class);
+    }
+}
@@ -0,0 +1,50 @@
+package com.smartshop.productos.repository.util;
+
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.smartshop.productos.entity.QProducto;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QuerydslUtilTest {
+
+    @Test
+    void admiteLosCamposSimplesDelProducto() {
+        for (String campo : new String[]{"id", "nombre", "descripcion", "precio", "stock", "vecesVisto", "disponible", "fechaCreacion"}) {
+            assertThat(QuerydslUtil.esCampoOrdenableProducto(campo)).as(campo).isTrue();
+            assertThat(QuerydslUtil.getOrderSpecifiersForProducto(Sort.by(campo))).as(campo).hasSize(1);
+        }
+        assertThat(QuerydslUtil.esCampoOrdenableProducto("categoria")).isFalse();
+        assertThat(QuerydslUtil.esCampoOrdenableProducto("etiquetas")).isFalse();
+    }
+
+    @Test
+    void traduceCampoYDireccion() {
+        OrderSpecifier<?>[] orden = QuerydslUtil.getOrderSpecifiersForProducto(Sort.by(Sort.Order.desc("fechaCreacion"), Sort.Order.asc("id")));
+
+        assertThat(orden).hasSize(2);
+        assertThat(orden[0].getTarget()).isEqualTo(QProducto.producto.fechaCreacion);
+        assertThat(orden[0].getOrder()).isEqualTo(Order.DESC);
+        assertThat(orden[1].getTarget()).isEqualTo(QProducto.producto.id);
+        assertThat(orden[1].getOrder()).isEqualTo(Order.ASC);
+    }
+
+    @Test
+    void elCursorSoloAdmiteCamposConContinuacion() {
+        for (String campo : new String[]{"id", "nombre", "precio"}) {
+            assertThat(QuerydslUtil.esCampoCursorProducto(campo)).as(campo).isTrue();
+            assertThat(QuerydslUtil.getSeekOrderSpecifiersForProducto(campo, true)).as(campo).isNotEmpty();
+        }
+        assertThat(QuerydslUtil.esCampoCursorProducto("stock")).isFalse();
+        assertThat(QuerydslUtil.esCampoCursorProducto("fechaCreacion")).isFalse();
+    }
+
+    @Test
+    void rechazaCamposNoPermitidos() {
+        assertThatThrownBy(() -> QuerydslUtil.getOrderSpecifiersForProducto(Sort.by("categoria")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,107 @@
+package com.smartshop.productos.security;
+
+import com.smartshop.productos.security.annotations.RequiresAuth;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RutasProtegidasRegistryTest {
+
+    private RutasProtegidasRegistry registry;
+
+    // Handlers de prueba: solo importan sus anotaciones
+    static class Productos {
+        public void detalle() {
+        }
+
+        public void filtrar() {
+        }
+
+        @RequiresAuth
+        public void actualizar() {
+        }
+
+        @RequiresAuth
+        public void cargarLote() {
+        }
+    }
+
+    @RequiresAuth
+    static class Stock {
+        public void ajustar() {
+        }
+    }
+
+    @BeforeEach
+    void construir() throws Exception {
+        // El orden de inserción no debe importar: el registro ordena por especificidad
+        Map<RequestMappingInfo, HandlerMethod> mapeos = new LinkedHashMap<>();
+        mapeos.put(info("/api/v1/productos/{id}", RequestMethod.GET), handler(new Productos(), "detalle"));
+        mapeos.put(info("/api/v1/productos/{id}", RequestMethod.PUT), handler(new Productos(), "actualizar"));
+        mapeos.put(info("/api/v1/productos/filtrar", RequestMethod.GET), handler(new Productos(), "filtrar"));
+        mapeos.put(info("/api/v1/productos/lote", RequestMethod.POST), handler(new Productos(), "cargarLote"));
+        mapeos.put(info("/api/v1/stock/**"), handler(new Stock(), "ajustar"));
+
+        RequestMappingHandlerMapping handlerMapping = mock(RequestMappingHandlerMapping.class);
+        when(handlerMapping.getHandlerMethods()).thenReturn(mapeos);
+        registry = new RutasProtegidasRegistry(handlerMapping);
+        registry.alRefrescarContexto();
+    }
+
+    @Test
+    void distingueElMetodoHttpDeUnaMismaRuta() {
+        assertThat(registry.requiereAutenticacion(solicitud("GET", "/api/v1/productos/7"))).isFalse();
+        assertThat(registry.requiereAutenticacion(solicitud("PUT", "/api/v1/productos/7"))).isTrue();
+    }
+
+    @Test
+    void laRutaLiteralGanaALaVariable() {
+        assertThat(registry.requiereAutenticacion(solicitud("GET", "/api/v1/productos/filtrar"))).isFalse();
+        assertThat(registry.requiereAutenticacion(solicitud("POST", "/api/v1/productos/lote"))).isTrue();
+    }
+
+    @Test
+    void respetaLaAnotacionDeLaClaseYElComodin() {
+        assertThat(registry.requiereAutenticacion(solicitud("POST", "/api/v1/stock/3/ajuste"))).isTrue();
+        assertThat(registry.requiereAutenticacion(solicitud("DELETE", "/api/v1/stock"))).isTrue();
+    }
+
+    @Test
+    void headSeTrataComoGetYLasRutasDesconocidasNoSeProtegen() {
+        assertThat(registry.requiereAutenticacion(solicitud("HEAD", "/api/v1/productos/7"))).isFalse();
+        assertThat(registry.requiereAutenticacion(solicitud("GET", "/api/v1/desconocida"))).isFalse();
+    }
+
+    @Test
+    void ignoraElContextPath() {
+        MockHttpServletRequest request = solicitud("PUT", "/tienda/api/v1/productos/7");
+        request.setContextPath("/tienda");
+
+        assertThat(registry.requiereAutenticacion(request)).isTrue();
+    }
+
+    //===============================================================================================================================================
+
+    private static RequestMappingInfo info(String ruta, RequestMethod... metodos) {
+        return RequestMappingInfo.paths(ruta).methods(metodos).build();
+    }
+
+    private static HandlerMethod handler(Object controlador, String metodo) throws NoSuchMethodException {
+        return new HandlerMethod(controlador, controlador.getClass().getMethod(metodo));
+    }
+
+    private static MockHttpServletRequest solicitud(String metodo, String uri) {
+        return new MockHttpServletRequest(metodo, uri);
+    }
+}
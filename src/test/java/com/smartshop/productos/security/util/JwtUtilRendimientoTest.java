@@ -0,0 +1,92 @@
+package com.smartshop.productos.security.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.function.ToLongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Costo de autenticar una solicitud con el JWT: el recorrido anterior (tres parseos por solicitud, cada uno con un
+ * parser y una clave nuevos), un solo parseo con el parser reutilizado y {@link JwtUtil#validarToken} con la caché de
+ * claims verificados. Informa nanosegundos y bytes asignados por solicitud, rotando entre varios usuarios.
+ * <p>
+ * Fuera de la compilación habitual: {@code mvn test -Prendimiento -Dtest=JwtUtilRendimientoTest}.
+ */
+@Tag("rendimiento")
+@Slf4j
+class JwtUtilRendimientoTest {
+
+    private static final int USUARIOS = 1_000;
+    private static final int CALENTAMIENTO = 5_000;
+    private static final int SOLICITUDES = 20_000;
+
+    private record Medicion(double nanosPorSolicitud, long bytesPorSolicitud) {
+    }
+
+    //===============================================================================================================================================
+
+    @Test
+    void unParseoConCacheCuestaMenosQueTresParseos() {
+        JwtUtil jwtUtil = new JwtUtil(new SimpleMeterRegistry(), 10_000);
+        String[] tokens = new String[USUARIOS];
+        for (int i = 0; i < USUARIOS; i++) {
+            tokens[i] = jwtUtil.generateToken((long) i);
+        }
+        byte[] secreto = ((String) ReflectionTestUtils.getField(JwtUtil.class, "SECRET_KEY")).getBytes();
+        JwtParser parserReutilizado = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(secreto)).build();
+
+        // extractUsername en el filtro y extractUsername + isTokenExpired en isTokenValid, con parser y clave nuevos cada vez
+        Medicion tresParseos = medir(tokens, token -> {
+            long total = 0;
+            for (int i = 0; i < 3; i++) {
+                Claims claims = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(secreto)).build().parseClaimsJws(token).getBody();
+                total += claims.getSubject().length() + (claims.getExpiration().before(new Date()) ? 1 : 0);
+            }
+            return total;
+        });
+        Medicion unParseo = medir(tokens, token -> parserReutilizado.parseClaimsJws(token).getBody().getSubject().length());
+        Medicion conCache = medir(tokens, token -> jwtUtil.validarToken(token).orElseThrow().getSubject().length());
+
+        log.info("Autenticación por solicitud, 3 parseos sin reutilizar: {}", tresParseos);
+        log.info("Autenticación por solicitud, 1 parseo reutilizado:    {}", unParseo);
+        log.info("Autenticación por solicitud, validarToken con caché:  {}", conCache);
+
+        assertThat(conCache.nanosPorSolicitud()).isLessThan(tresParseos.nanosPorSolicitud());
+    }
+
+    //===============================================================================================================================================
+
+    private static Medicion medir(String[] tokens, ToLongFunction<String> autenticar) {
+        long sumidero = 0;
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            sumidero += autenticar.applyAsLong(tokens[i % tokens.length]);
+        }
+
+        long bytesAntes = bytesAsignados();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < SOLICITUDES; i++) {
+            sumidero += autenticar.applyAsLong(tokens[i % tokens.length]);
+        }
+        long nanos = System.nanoTime() - inicio;
+        long bytes = bytesAsignados() - bytesAntes;
+
+        // El resultado se usa para que el JIT no elimine el trabajo medido
+        assertThat(sumidero).isPositive();
+        return new Medicion((double) nanos / SOLICITUDES, bytes / SOLICITUDES);
+    }
+
+    private static long bytesAsignados() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,85 @@
+package com.smartshop.productos.service.impl;
+
+import com.smartshop.productos.PostgresContenedorConfig;
+import com.smartshop.productos.dto.ProductoCreateDTO;
+import com.smartshop.productos.dto.ResultadoCargaDTO;
+import com.smartshop.productos.entity.Categoria;
+import com.smartshop.productos.repository.CategoriaRepository;
+import com.smartshop.productos.service.CargaProductosService;
+import com.smartshop.productos.service.ProductoService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rendimiento del alta masiva ({@link CargaProductosService}, NDJSON en bloques con lotes JDBC) frente al alta de a
+ * un producto con {@link ProductoService#crearProducto}, en productos por segundo.
+ * <p>
+ * Fuera de la compilación habitual: {@code mvn test -Prendimiento -Dtest=CargaProductosRendimientoTests} (requiere Docker).
+ */
+@Tag("rendimiento")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "productos.carga.tamanio-lote=500"
+})
+@Import(PostgresContenedorConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+@Slf4j
+class CargaProductosRendimientoTests {
+
+    private static final int PRODUCTOS_DE_A_UNO = 2_000;
+    private static final int PRODUCTOS_EN_LOTE = 50_000;
+
+    @Autowired
+    private CargaProductosService cargaProductosService;
+    @Autowired
+    private ProductoService productoService;
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    //===============================================================================================================================================
+
+    @Test
+    void cargaMasivaSuperaAlAltaDeAUno() {
+        Long categoriaId = categoriaRepository.save(Categoria.builder().nombre("Carga " + System.nanoTime()).build()).getId();
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < PRODUCTOS_DE_A_UNO; i++) {
+            productoService.crearProducto(ProductoCreateDTO.builder()
+                    .nombre("Unitario " + i)
+                    .descripcion("Alta de a un producto")
+                    .precio(BigDecimal.valueOf(10 + i % 100))
+                    .stock(i % 50)
+                    .categoriaId(categoriaId)
+                    .build());
+        }
+        double deAUnoPorSegundo = PRODUCTOS_DE_A_UNO * 1_000_000_000.0 / (System.nanoTime() - inicio);
+
+        StringBuilder ndjson = new StringBuilder(PRODUCTOS_EN_LOTE * 120);
+        for (int i = 0; i < PRODUCTOS_EN_LOTE; i++) {
+            ndjson.append("{\"nombre\":\"Lote ").append(i)
+                    .append("\",\"descripcion\":\"Alta masiva\",\"precio\":").append(10 + i % 100)
+                    .append(",\"stock\":").append(i % 50)
+                    .append(",\"categoriaId\":").append(categoriaId).append("}\n");
+        }
+        ResultadoCargaDTO resultado = cargaProductosService.cargarProductos(
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+
+        log.info("Alta de a un producto: {} productos/s", Math.round(deAUnoPorSegundo));
+        log.info("Alta masiva NDJSON: {} productos en {} ms, {} productos/s",
+                resultado.creados(), resultado.duracionMs(), Math.round(resultado.productosPorSegundo()));
+
+        assertThat(resultado.creados()).isEqualTo(PRODUCTOS_EN_LOTE);
+        assertThat(resultado.productosPorSegundo()).isGreaterThan(deAUnoPorSegundo);
+    }
+}
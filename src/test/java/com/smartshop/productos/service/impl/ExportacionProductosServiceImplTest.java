@@ -0,0 +1,28 @@
+package com.smartshop.productos.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportacionProductosServiceImplTest {
+
+    @Test
+    void camposSimplesSeEscribenTalCual() {
+        assertThat(ExportacionProductosServiceImpl.campoCsv("Cafetera italiana")).isEqualTo("Cafetera italiana");
+        assertThat(ExportacionProductosServiceImpl.campoCsv("")).isEmpty();
+        assertThat(ExportacionProductosServiceImpl.campoCsv(null)).isEmpty();
+    }
+
+    @Test
+    void separadoresYSaltosDeLineaVanEntreComillas() {
+        assertThat(ExportacionProductosServiceImpl.campoCsv("Taza, 300 ml")).isEqualTo("\"Taza, 300 ml\"");
+        assertThat(ExportacionProductosServiceImpl.campoCsv("línea 1\nlínea 2")).isEqualTo("\"línea 1\nlínea 2\"");
+        assertThat(ExportacionProductosServiceImpl.campoCsv("fin\r")).isEqualTo("\"fin\r\"");
+    }
+
+    @Test
+    void lasComillasInternasSeDuplican() {
+        assertThat(ExportacionProductosServiceImpl.campoCsv("Monitor 27\"")).isEqualTo("\"Monitor 27\"\"\"");
+        assertThat(ExportacionProductosServiceImpl.campoCsv("\"a\",\"b\"")).isEqualTo("\"\"\"a\"\",\"\"b\"\"\"");
+    }
+}
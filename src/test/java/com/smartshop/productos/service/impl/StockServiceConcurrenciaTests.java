@@ -0,0 +1,198 @@
+package com.smartshop.productos.service.impl;
+
+import com.smartshop.productos.PostgresContenedorConfig;
+import com.smartshop.productos.dto.ItemReservaDTO;
+import com.smartshop.productos.dto.ReservaStockDTO;
+import com.smartshop.productos.entity.Categoria;
+import com.smartshop.productos.entity.Producto;
+import com.smartshop.productos.exception.StockInsuficienteException;
+import com.smartshop.productos.repository.CategoriaRepository;
+import com.smartshop.productos.repository.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cientos de hilos compiten por un stock fijo: el stock final nunca es negativo y coincide exactamente con el
+ * inicial menos las operaciones que tuvieron éxito (no hay sobreventa ni descuentos perdidos).
+ */
+@SpringBootTest(properties = {
+        // Los procesos programados no deben liberar reservas ni sincronizar fragmentos durante la prueba
+        "productos.stock.reserva.revision-ms=3600000",
+        "productos.stock.fragmentos.sincronizacion-ms=3600000",
+        "spring.datasource.hikari.maximum-pool-size=50"
+})
+@Import(PostgresContenedorConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+class StockServiceConcurrenciaTests {
+
+    private static final int STOCK_INICIAL = 100;
+    private static final int HILOS = 200;
+    private static final int INTENTOS = 500;
+
+    @Autowired
+    private StockServiceImpl stockService;
+    @Autowired
+    private ProductoRepository productoRepository;
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long productoId;
+
+    @BeforeEach
+    void crearProducto() {
+        Categoria categoria = categoriaRepository.save(Categoria.builder().nombre("Stock " + System.nanoTime()).build());
+        Producto producto = productoRepository.save(Producto.builder()
+                .nombre("Producto de prueba")
+                .precio(BigDecimal.TEN)
+                .stock(STOCK_INICIAL)
+                .disponible(true)
+                .stockFragmentado(false)
+                .categoria(categoria)
+                .build());
+        productoId = producto.getId();
+    }
+
+    //===============================================================================================================================================
+
+    @Test
+    void ajustesConcurrentesNoSobrevenden() throws Exception {
+        int exitos = ejecutarEnParalelo(() -> stockService.ajustarStock(productoId, -1));
+
+        assertThat(exitos).isEqualTo(STOCK_INICIAL);
+        assertThat(stockEnBaseDeDatos()).isEqualTo(STOCK_INICIAL - exitos).isZero();
+        assertThat(disponible()).isFalse();
+    }
+
+    @Test
+    void reservasConcurrentesNoSobrevenden() throws Exception {
+        int exitos = ejecutarEnParalelo(() -> stockService.reservar(List.of(new ItemReservaDTO(productoId, 1))));
+
+        int stock = stockEnBaseDeDatos();
+        assertThat(stock).isGreaterThanOrEqualTo(0);
+        assertThat(stock).isEqualTo(STOCK_INICIAL - exitos);
+        assertThat(exitos).isEqualTo(STOCK_INICIAL);
+        assertThat(unidadesReservadas()).isEqualTo(exitos);
+    }
+
+    @Test
+    void reservasVencidasDevuelvenElStock() {
+        ReservaStockDTO reserva = stockService.reservar(List.of(new ItemReservaDTO(productoId, 30)));
+        assertThat(stockEnBaseDeDatos()).isEqualTo(STOCK_INICIAL - 30);
+
+        jdbcTemplate.update("UPDATE reservas_stock SET expira_en = TIMESTAMP '2000-01-01 00:00:00' WHERE id = ?", reserva.id());
+        stockService.liberarReservasVencidas();
+
+        assertThat(stockEnBaseDeDatos()).isEqualTo(STOCK_INICIAL);
+        assertThat(unidadesReservadas()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM reservas_stock WHERE id = ?", Integer.class, reserva.id())).isZero();
+    }
+
+    @Test
+    void stockFragmentadoNoSobrevende() throws Exception {
+        stockService.fragmentarStock(productoId, 8);
+
+        AtomicInteger reservas = new AtomicInteger();
+        int exitos = ejecutarEnParalelo(() -> {
+            // Se alternan descuentos directos y reservas sobre los mismos fragmentos
+            if (reservas.incrementAndGet() % 2 == 0) {
+                return stockService.reservar(List.of(new ItemReservaDTO(productoId, 1)));
+            }
+            return stockService.ajustarStock(productoId, -1);
+        });
+
+        assertThat(exitos).isEqualTo(STOCK_INICIAL);
+        assertThat(jdbcTemplate.queryForObject("SELECT min(stock) FROM stock_fragmentos WHERE producto_id = ?", Integer.class, productoId))
+                .isGreaterThanOrEqualTo(0);
+        assertThat(stockService.obtenerStockDisponible(productoId)).isEqualTo(STOCK_INICIAL - exitos);
+
+        // La sincronización copia el total en productos.stock y marca el producto como no disponible
+        stockService.sincronizarStockFragmentado();
+        assertThat(stockEnBaseDeDatos()).isZero();
+        assertThat(disponible()).isFalse();
+    }
+
+    @Test
+    void desfragmentarDuranteLosAjustesNoFalla() throws Exception {
+        stockService.fragmentarStock(productoId, 8);
+
+        // A mitad de los descuentos otro hilo unifica el stock; los ajustes que estaban rebalanceando siguen por el camino normal
+        AtomicInteger intento = new AtomicInteger();
+        int exitos = ejecutarEnParalelo(() -> {
+            if (intento.incrementAndGet() == INTENTOS / 4) {
+                stockService.desfragmentarStock(productoId);
+                return null;
+            }
+            return stockService.ajustarStock(productoId, -1);
+        });
+
+        assertThat(exitos).isEqualTo(STOCK_INICIAL + 1);
+        assertThat(stockService.obtenerStockDisponible(productoId)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT stock_fragmentado FROM productos WHERE id = ?", Boolean.class, productoId)).isFalse();
+        assertThat(stockEnBaseDeDatos()).isZero();
+    }
+
+    //===============================================================================================================================================
+
+    // Ejecuta INTENTOS veces la operación desde HILOS hilos que arrancan a la vez; devuelve la cantidad de éxitos
+    private int ejecutarEnParalelo(Callable<?> operacion) throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicInteger exitos = new AtomicInteger();
+        try {
+            List<Future<?>> futuros = new ArrayList<>(INTENTOS);
+            for (int i = 0; i < INTENTOS; i++) {
+                futuros.add(hilos.submit(() -> {
+                    largada.await();
+                    try {
+                        operacion.call();
+                        exitos.incrementAndGet();
+                    } catch (StockInsuficienteException e) {
+                        // Esperado cuando se agota el stock
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> futuro : futuros) {
+                // Cualquier otra excepción (interbloqueo, error de SQL) hace fallar la prueba
+                futuro.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            hilos.shutdownNow();
+        }
+        return exitos.get();
+    }
+
+    private int stockEnBaseDeDatos() {
+        return jdbcTemplate.queryForObject("SELECT stock FROM productos WHERE id = ?", Integer.class, productoId);
+    }
+
+    private boolean disponible() {
+        return jdbcTemplate.queryForObject("SELECT disponible FROM productos WHERE id = ?", Boolean.class, productoId);
+    }
+
+    private int unidadesReservadas() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(cantidad), 0) FROM reservas_stock_items WHERE producto_id = ?",
+                Integer.class, productoId);
+    }
+}
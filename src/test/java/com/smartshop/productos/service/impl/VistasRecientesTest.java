@@ -0,0 +1,68 @@
+package com.smartshop.productos.service.impl;
+
+import com.smartshop.productos.service.impl.RegistroVistasServiceImpl.VistasRecientes;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VistasRecientesTest {
+
+    @Test
+    void devuelveDelMasRecienteAlMasAntiguo() {
+        VistasRecientes recientes = new VistasRecientes(5);
+        recientes.agregar(1L);
+        recientes.agregar(2L);
+        recientes.agregar(3L);
+
+        assertThat(recientes.ultimos(10)).containsExactly(3L, 2L, 1L);
+        assertThat(recientes.ultimos(2)).containsExactly(3L, 2L);
+        assertThat(new VistasRecientes(5).ultimos(10)).isEmpty();
+    }
+
+    @Test
+    void alLlenarseDescartaLosMasAntiguos() {
+        VistasRecientes recientes = new VistasRecientes(3);
+        for (long id = 1; id <= 7; id++) {
+            recientes.agregar(id);
+        }
+
+        assertThat(recientes.ultimos(10)).containsExactly(7L, 6L, 5L);
+    }
+
+    @Test
+    void unaVistaRepetidaPasaAlFrenteSinDuplicarse() {
+        VistasRecientes recientes = new VistasRecientes(4);
+        // Da la vuelta al arreglo para que el movimiento cruce el final
+        for (long id = 1; id <= 6; id++) {
+            recientes.agregar(id);
+        }
+        recientes.agregar(4L);
+        recientes.agregar(6L);
+        recientes.agregar(3L);
+
+        assertThat(recientes.ultimos(10)).containsExactly(3L, 6L, 4L, 5L);
+    }
+
+    @Test
+    void mantieneLosDistintosConVistasConcurrentes() throws InterruptedException {
+        VistasRecientes recientes = new VistasRecientes(8);
+        List<Thread> hilos = new ArrayList<>();
+        for (int h = 0; h < 4; h++) {
+            Thread hilo = new Thread(() -> {
+                for (long i = 0; i < 10_000; i++) {
+                    recientes.agregar(i % 20);
+                }
+            });
+            hilos.add(hilo);
+            hilo.start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        assertThat(recientes.ultimos(10)).hasSize(8).doesNotHaveDuplicates().allMatch(id -> id >= 0 && id < 20);
+    }
+}